@@ -7,6 +7,7 @@ plugins {
     `maven-publish`
     kotlin("jvm") version "1.6.20-RC"
     id("org.jetbrains.dokka") version "1.5.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 val meepMeepVersion = "1.0-SNAPSHOT"
@@ -51,6 +52,21 @@ sourceSets["main"].java {
     srcDir("src/main/kotlin")
 }
 
+// Benchmarks live in src/jmh/kotlin and run with ./gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+
+    // Publish results as JSON so they can be compared across releases
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+
+    // Report allocation rates alongside throughput
+    profilers.add("gc")
+
+    // Benchmarks render offscreen
+    jvmArgsAppend.add("-Djava.awt.headless=true")
+}
+
 // Create sources Jar from main kotlin sources
 val sourcesJar by tasks.creating(Jar::class) {
     archiveClassifier.set("sources")
@@ -93,4 +109,8 @@ compileKotlin.kotlinOptions {
 val compileTestKotlin: KotlinCompile by tasks
 compileTestKotlin.kotlinOptions {
     jvmTarget = "1.8"
-}
\ No newline at end of file
+}
+val compileJmhKotlin: KotlinCompile by tasks
+compileJmhKotlin.kotlinOptions {
+    jvmTarget = "1.8"
+}
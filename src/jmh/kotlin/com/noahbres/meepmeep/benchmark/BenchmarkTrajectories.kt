@@ -0,0 +1,44 @@
+package com.noahbres.meepmeep.benchmark
+
+import com.acmerobotics.roadrunner.geometry.Pose2d
+import com.acmerobotics.roadrunner.geometry.Vector2d
+import com.noahbres.meepmeep.roadrunner.Constraints
+import com.noahbres.meepmeep.roadrunner.DriveShim
+import com.noahbres.meepmeep.roadrunner.DriveTrainType
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
+
+/** The constraints shared by every benchmark, matching the default bot. */
+val BENCHMARK_CONSTRAINTS = Constraints(30.0, 30.0, Math.toRadians(60.0), Math.toRadians(60.0), 15.0)
+
+/**
+ * Creates a drive shim with the benchmark constraints.
+ *
+ * @return The created [DriveShim].
+ */
+fun createBenchmarkDrive() = DriveShim(DriveTrainType.MECANUM, BENCHMARK_CONSTRAINTS, Pose2d())
+
+/**
+ * Builds a representative autonomous routine: splines, straight lines,
+ * turns and waits, with temporal, displacement and spatial markers so
+ * marker projection is exercised.
+ *
+ * @param drive The drive shim to build the trajectory sequence with.
+ * @return The built trajectory sequence.
+ */
+fun buildBenchmarkSequence(drive: DriveShim): TrajectorySequence =
+    drive.trajectorySequenceBuilder(Pose2d(-36.0, -60.0, Math.toRadians(90.0)))
+        .forward(24.0)
+        .addDisplacementMarker {}
+        .splineTo(Vector2d(0.0, -12.0), 0.0)
+        .addTemporalMarker(1.0) {}
+        .turn(Math.toRadians(90.0))
+        .lineTo(Vector2d(0.0, 24.0))
+        .addSpatialMarker(Vector2d(0.0, 12.0)) {}
+        .waitSeconds(0.5)
+        .splineToLinearHeading(Pose2d(36.0, 36.0, Math.toRadians(180.0)), 0.0)
+        .addDisplacementMarker(10.0) {}
+        .back(12.0)
+        .strafeLeft(12.0)
+        .splineTo(Vector2d(48.0, -36.0), Math.toRadians(-90.0))
+        .addTemporalMarker(0.5, 0.0) {}
+        .build()
@@ -0,0 +1,63 @@
+package com.noahbres.meepmeep.benchmark
+
+import com.acmerobotics.roadrunner.geometry.Pose2d
+import com.noahbres.meepmeep.MeepMeep
+import com.noahbres.meepmeep.roadrunner.DefaultBotBuilder
+import com.noahbres.meepmeep.roadrunner.entity.RoadRunnerBotEntity
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks a single update of a [RoadRunnerBotEntity] playing back a
+ * looping trajectory sequence: the segment lookup and pose evaluation run
+ * every frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class BotPlaybackBenchmark {
+    /** Whether the bot plays back baked pose samples instead of evaluating the sequence. */
+    @Param("false", "true")
+    @JvmField
+    var baked = false
+
+    /** The bot being updated. */
+    private lateinit var bot: RoadRunnerBotEntity
+
+    /** The simulation time every update advances by, one frame at 60 fps. */
+    private val frameTime = 1_000_000_000L / 60
+
+    @Setup
+    fun setup() {
+        val meepMeep = MeepMeep(800, 800, 60, true)
+
+        val builder = DefaultBotBuilder(meepMeep)
+        if (baked) builder.setBakedPlayback(240.0)
+
+        bot = builder.followTrajectorySequence { buildBenchmarkSequence(it) }
+
+        // Start the bot and get it past its skipped startup loops
+        bot.start()
+        repeat(RoadRunnerBotEntity.SKIP_LOOPS) { bot.update(0) }
+    }
+
+    @Benchmark
+    fun update(): Pose2d {
+        bot.update(frameTime)
+
+        return bot.pose
+    }
+}
@@ -0,0 +1,45 @@
+package com.noahbres.meepmeep.benchmark
+
+import com.acmerobotics.roadrunner.geometry.Vector2d
+import com.noahbres.meepmeep.core.util.FieldUtil
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks the [FieldUtil] coordinate conversions used by every entity when drawing. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class FieldUtilBenchmark {
+    /** A point in field coordinates. */
+    private val fieldPoint = Vector2d(12.5, -30.0)
+
+    /** A point in screen coordinates. */
+    private val screenPoint = Vector2d(420.0, 180.0)
+
+    @Setup
+    fun setup() {
+        FieldUtil.CANVAS_WIDTH = 800.0
+        FieldUtil.CANVAS_HEIGHT = 800.0
+    }
+
+    @Benchmark
+    fun fieldToScreen(): Vector2d = FieldUtil.fieldCoordsToScreenCoords(fieldPoint)
+
+    @Benchmark
+    fun screenToField(): Vector2d = FieldUtil.screenCoordsToFieldCoords(screenPoint)
+
+    @Benchmark
+    fun scaleInchesToPixel(): Double = FieldUtil.scaleInchesToPixel(18.0)
+}
@@ -0,0 +1,35 @@
+package com.noahbres.meepmeep.benchmark
+
+import com.noahbres.meepmeep.roadrunner.DriveShim
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks building a trajectory sequence, including marker projection. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class TrajectoryBuildBenchmark {
+    /** The drive shim the trajectory sequences are built with. */
+    private lateinit var drive: DriveShim
+
+    @Setup
+    fun setup() {
+        drive = createBenchmarkDrive()
+    }
+
+    @Benchmark
+    fun build(): TrajectorySequence = buildBenchmarkSequence(drive)
+}
@@ -0,0 +1,59 @@
+package com.noahbres.meepmeep.benchmark
+
+import com.noahbres.meepmeep.MeepMeep
+import com.noahbres.meepmeep.core.colorscheme.scheme.ColorSchemeBlueDark
+import com.noahbres.meepmeep.core.colorscheme.scheme.ColorSchemeRedDark
+import com.noahbres.meepmeep.roadrunner.entity.TrajectorySequenceEntity
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks redrawing the path of a [TrajectorySequenceEntity], which
+ * happens on every theme switch and canvas resize. Switching the theme also
+ * switches the theme of its indicator entity, which is measured along with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class TrajectoryRedrawBenchmark {
+    /** The trajectory sequence whose path is redrawn. */
+    private lateinit var sequence: TrajectorySequence
+
+    /** The entity whose path is redrawn. */
+    private lateinit var entity: TrajectorySequenceEntity
+
+    /** The two color schemes alternated between, as switching to the current scheme does not redraw. */
+    private val schemes = listOf(ColorSchemeRedDark(), ColorSchemeBlueDark())
+
+    /** The number of redraws so far. */
+    private var redraws = 0
+
+    // Redraws leave nothing behind, so a single entity serves the whole trial
+    @Setup(Level.Trial)
+    fun setupTrial() {
+        sequence = buildBenchmarkSequence(createBenchmarkDrive())
+
+        val meepMeep = MeepMeep(800, 800, 60, true)
+
+        entity = TrajectorySequenceEntity(meepMeep, sequence, schemes[0])
+    }
+
+    @Benchmark
+    fun redrawPath() {
+        entity.switchScheme(schemes[++redraws % 2])
+    }
+}
@@ -4,50 +4,85 @@ import com.acmerobotics.roadrunner.geometry.Vector2d
 import com.noahbres.meepmeep.core.colorscheme.ColorManager
 import com.noahbres.meepmeep.core.colorscheme.ColorScheme
 import com.noahbres.meepmeep.core.entity.AxesEntity
+import com.noahbres.meepmeep.core.entity.BotEntity
 import com.noahbres.meepmeep.core.entity.CompassEntity
 import com.noahbres.meepmeep.core.entity.Entity
 import com.noahbres.meepmeep.core.entity.EntityEventListener
+import com.noahbres.meepmeep.core.entity.ResizableEntity
 import com.noahbres.meepmeep.core.entity.ThemedEntity
 import com.noahbres.meepmeep.core.entity.ZIndexManager
+import com.noahbres.meepmeep.core.ui.Camera
+import com.noahbres.meepmeep.core.ui.LayerCompositor
+import com.noahbres.meepmeep.core.ui.MainCanvas
 import com.noahbres.meepmeep.core.ui.WindowFrame
+import com.noahbres.meepmeep.core.util.AssetManager
+import com.noahbres.meepmeep.core.util.BotSpriteCache
 import com.noahbres.meepmeep.core.util.FieldUtil
+import com.noahbres.meepmeep.core.util.FrameProfiler
+import com.noahbres.meepmeep.core.util.ImagePyramid
 import com.noahbres.meepmeep.core.util.LoopManager
+import com.noahbres.meepmeep.core.util.ScaledImageCache
+import com.noahbres.meepmeep.core.util.SimulationClock
 import com.noahbres.meepmeep.roadrunner.entity.RoadRunnerBotEntity
 import com.noahbres.meepmeep.roadrunner.ui.TrajectoryProgressSliderMaster
-import java.awt.AlphaComposite
 import java.awt.Desktop
 import java.awt.Font
 import java.awt.Graphics2D
+import java.awt.GraphicsEnvironment
 import java.awt.Image
 import java.awt.RenderingHints
 import java.awt.Toolkit
 import java.awt.datatransfer.StringSelection
+import java.awt.event.ComponentAdapter
+import java.awt.event.ComponentEvent
 import java.awt.event.KeyEvent
 import java.awt.event.KeyListener
+import java.awt.event.MouseAdapter
 import java.awt.event.MouseEvent
 import java.awt.event.MouseListener
 import java.awt.event.MouseMotionListener
+import java.awt.image.BufferedImage
 import java.net.URI
-import javax.imageio.ImageIO
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
 import javax.swing.BorderFactory
 import javax.swing.Box
 import javax.swing.BoxLayout
+import javax.swing.ImageIcon
 import javax.swing.JButton
 import javax.swing.JOptionPane
 import javax.swing.JPanel
+import javax.swing.SwingUtilities
 import javax.swing.UIManager
 import javax.swing.border.EtchedBorder
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.pow
+import kotlin.math.roundToInt
 
 /**
  * The [MeepMeep] class is the main entry point for the Meep Meep
  * application. It handles the initialization and management of
  * the application window, rendering, and entity management.
  *
+ * When running headless, no window or Swing components are created.
+ * Instead, the entity list is rendered into an offscreen [BufferedImage]
+ * one frame at a time through [renderFrame].
+ *
+ * The window can be resized. The canvas follows it at the [renderScale]
+ * once it stops resizing, with its cached layers rendered in the background
+ * so the loop keeps running smoothly. The field is square, so the canvas is
+ * the largest square fitting the window, centered in it.
+ *
  * @constructor Creates a [MeepMeep] instance with specified window
- *    dimensions and optional fps.
- * @property windowX The width of the application window.
- * @property windowY The height of the application window.
+ *    dimensions, optional fps and optional headless mode.
+ * @property windowX The initial width of the application window.
+ * @property windowY The initial height of the application window.
  * @property fps The frames per second for the application loop.
+ * @property isHeadless Whether to render offscreen without creating a
+ *    window. Defaults to [GraphicsEnvironment.isHeadless].
  * @see [WindowFrame]
  * @see [ColorManager]
  * @see [Entity]
@@ -59,7 +94,10 @@ import javax.swing.border.EtchedBorder
  */
 @Suppress("unused", "MemberVisibilityCanBePrivate", "SpellCheckingInspection")
 class MeepMeep @JvmOverloads constructor(
-    private val windowX: Int, private val windowY: Int, private val fps: Int = 60
+    private val windowX: Int,
+    private val windowY: Int,
+    private val fps: Int = 60,
+    val isHeadless: Boolean = GraphicsEnvironment.isHeadless()
 ) {
     /**
      * Companion object to hold default entities and fonts used in the MeepMeep
@@ -80,19 +118,65 @@ class MeepMeep @JvmOverloads constructor(
 
         /** Roboto bold italic font. */
         lateinit var FONT_ROBOTO_BOLD_ITALIC: Font
+
+        /** Time the window has to stop resizing for before the canvas is resized, in milliseconds. */
+        const val RESIZE_DEBOUNCE_MILLIS = 150L
+
+        /** Distance from a path the mouse has to be within for the time along it to be shown, in inches. */
+        const val PATH_PICK_DISTANCE = 3.0
     }
 
-    /** The main application window frame. */
-    val windowFrame = WindowFrame("MeepMeep", windowX, windowY)
+    /** The main application window frame. Not available when headless. */
+    val windowFrame: WindowFrame by lazy { WindowFrame("MeepMeep", windowX, windowY) }
+
+    /** The canvas where all rendering occurs. Not available when headless. */
+    val canvas: MainCanvas by lazy { windowFrame.canvas }
 
-    /** The canvas where all rendering occurs. */
-    val canvas = windowFrame.canvas
+    /**
+     * The offscreen image frames are rendered into when headless, recreated
+     * when the canvas is resized.
+     */
+    private var offscreenImage: BufferedImage? = null
 
     /** Manages the color scheme of the application. */
     val colorManager = ColorManager()
 
-    /** The background image of the application. */
-    private var bg: Image? = null
+    /**
+     * The background image of the application, scaled to the window with its
+     * alpha transparency level baked in.
+     */
+    @Volatile
+    private var bg: BufferedImage? = null
+
+    /** The key identifying the source of the background image. */
+    private var bgSourceKey: Any? = null
+
+    /** Loads the unscaled source of the background image. */
+    private var bgSource: (() -> CompletableFuture<out Image>)? = null
+
+    /**
+     * Counts the background changes, so a background that finishes loading
+     * after it was replaced is discarded.
+     */
+    @Volatile
+    private var bgGeneration = 0
+
+    /** Cache of scaled background images. */
+    private val backgroundCache = ScaledImageCache()
+
+    /**
+     * The pyramid of the unscaled background image, which zoomed in views
+     * are rasterized from, or null until it is built.
+     */
+    @Volatile
+    private var bgPyramid: ImagePyramid? = null
+
+    /** The key of the background source the [bgPyramid] is built from. */
+    @Volatile
+    private var bgPyramidKey: Any? = null
+
+    /** Cache of bot sprites pre-rendered at quantized headings, shared by all bots. */
+    val botSpriteCache = BotSpriteCache()
 
     /** The alpha transparency level of the background image. */
     private var bgAlpha = 1.0f
@@ -106,42 +190,127 @@ class MeepMeep @JvmOverloads constructor(
     /** List of entities requested to be removed from the application. */
     private val requestedRemoveEntityList = mutableListOf<Entity>()
 
+    /** Tasks queued from other threads, run on the loop thread before the next update. */
+    private val loopThreadTasks = ConcurrentLinkedQueue<Runnable>()
+
+    /** Entities that are still being built asynchronously. */
+    private val pendingEntities: MutableSet<CompletableFuture<*>> = ConcurrentHashMap.newKeySet()
+
+    /** Flag indicating if the application was started. */
+    @Volatile
+    private var isStarted = false
+
     /** Manages the z-index of entities for rendering order. */
     private val zIndexManager = ZIndexManager()
 
+    /** Caches the background and the static entity layers between frames. */
+    private val layerCompositor = LayerCompositor()
+
+    /**
+     * The camera the canvas is rendered through, zooming into, panning
+     * across or following a bot on the field.
+     *
+     * Only change it from the loop thread, through [runOnLoopThread] once
+     * the application is started. In the window, the mouse wheel zooms at
+     * the cursor, dragging with the right mouse button pans, F cycles
+     * through the bots to follow and R resets the camera.
+     */
+    val camera = Camera()
+
     /** Panel containing the middle buttons. */
-    private var middleButtonPanel = JPanel()
+    private val middleButtonPanel by lazy { JPanel() }
 
     /** Button for standard cursor mode. */
-    private val standardCursorButton = JButton("test")
+    private val standardCursorButton by lazy { JButton("test") }
 
     /** Button for path selection mode. */
-    private val pathSelectionButton = JButton("test 2")
+    private val pathSelectionButton by lazy { JButton("test 2") }
 
     /** List of buttons in the middle panel. */
-    private val middleButtonList = mutableListOf(standardCursorButton, pathSelectionButton)
+    private val middleButtonList by lazy { mutableListOf(standardCursorButton, pathSelectionButton) }
 
     /** The x-coordinate for displaying mouse coordinates. */
     private var mouseCoordinateDisplayX = 10
 
-    /** The y-coordinate for displaying mouse coordinates. */
-    private var mouseCoordinateDisplayY = canvas.height - 8
+    /**
+     * The y-coordinate for displaying mouse coordinates, or null to display
+     * them at the bottom of the window.
+     */
+    private var mouseCoordinateDisplayY: Int? = null
 
-    /** X-coordinate of the mouse on the canvas. */
+    /** X-coordinate of the mouse in the window. */
     private var canvasMouseX = 0
 
-    /** Y-coordinate of the mouse on the canvas. */
+    /** Y-coordinate of the mouse in the window. */
     private var canvasMouseY = 0
 
-    /** The width of the canvas, publicly accessible. */
-    val canvasWidth = canvas.width
+    /** The field position of the mouse the paths were last picked at. */
+    private var pickedMousePosition: Vector2d? = null
 
-    /** The height of the canvas, publicly accessible. */
-    val canvasHeight = canvas.height
+    /** Flag indicating that the paths are being picked in the background. */
+    @Volatile
+    private var isPickingPaths = false
+
+    /** The time along the path closest to the mouse, or null if the mouse is not near any path. */
+    @Volatile
+    private var hoveredPathTime: Double? = null
+
+    /** X-coordinate of the mouse in the window when the camera was last panned. */
+    private var panMouseX = 0
+
+    /** Y-coordinate of the mouse in the window when the camera was last panned. */
+    private var panMouseY = 0
+
+    /**
+     * The width of the canvas in pixels, publicly accessible. This is the
+     * shorter side of the window scaled by the [renderScale].
+     */
+    @Volatile
+    var canvasWidth = min(windowX, windowY)
+        private set
+
+    /**
+     * The height of the canvas in pixels, publicly accessible. This is the
+     * shorter side of the window scaled by the [renderScale].
+     */
+    @Volatile
+    var canvasHeight = min(windowX, windowY)
+        private set
+
+    /**
+     * The number of canvas pixels rendered per window pixel.
+     *
+     * @see [setRenderScale]
+     */
+    @Volatile
+    var renderScale = 1.0
+        private set
+
+    /** The render scale set through [setRenderScale], or null to match the display. */
+    @Volatile
+    private var requestedRenderScale: Double? = null
+
+    /**
+     * Counts the canvas resizes, so a resize that settles after it was
+     * replaced is discarded.
+     */
+    @Volatile
+    private var resizeGeneration = 0
 
     /** Control visibility of FPS display. */
     private var showFPS: Boolean = false
 
+    /** Control visibility of the profiler overlay. */
+    private var showProfiler: Boolean = false
+
+    /**
+     * Records per-phase frame timings, per-tag entity render times and the
+     * loop thread's allocation rate. Only records while enabled.
+     *
+     * @see [setShowProfiler]
+     */
+    val profiler = FrameProfiler(fps)
+
     /**
      * Initializes the [TrajectoryProgressSliderMaster] panel.
      *
@@ -182,18 +351,9 @@ class MeepMeep @JvmOverloads constructor(
             Font.TRUETYPE_FONT, classLoader.getResourceAsStream("font/Roboto-BoldItalic.ttf")
         )
 
-        // Set the look and feel of the UI to the system's default
-        UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName())
-
-        // Set the background color of the main content pane
-        windowFrame.contentPane.background = colorManager.theme.uiMainBG
-
-        // Set the background color of the canvas panel
-        windowFrame.canvasPanel.background = colorManager.theme.uiMainBG
-
         // Set canvas width and height in FieldUtil
-        FieldUtil.CANVAS_WIDTH = windowX.toDouble()
-        FieldUtil.CANVAS_HEIGHT = windowY.toDouble()
+        FieldUtil.CANVAS_WIDTH = canvasWidth.toDouble()
+        FieldUtil.CANVAS_HEIGHT = canvasHeight.toDouble()
 
         // Initialize axes entity
         DEFAULT_AXES_ENTITY = AxesEntity(
@@ -205,6 +365,39 @@ class MeepMeep @JvmOverloads constructor(
             this, colorManager.theme, 30.0, 30.0, Vector2d(-54.0, 54.0)
         )
 
+        // Only set up the window and its Swing components when not headless
+        if (!isHeadless) initWindow()
+
+        // Set the z-index hierarchy for entities
+        zIndexManager.setTagHierarchy(
+            "RR_BOT_ENTITY",
+            "TRAJECTORY_INDICATOR_ENTITY",
+            "TRAJECTORY_SEQUENCE_ENTITY",
+            "COMPASS_ENTITY",
+            "AXES_ENTITY",
+        )
+
+        // Add default entities to the entity list
+        addEntity(DEFAULT_AXES_ENTITY)
+        addEntity(DEFAULT_COMPASS_ENTITY)
+    }
+
+    /**
+     * Sets up the application window, its Swing components and the canvas
+     * input listeners.
+     *
+     * This is skipped entirely when running headless.
+     */
+    private fun initWindow() {
+        // Set the look and feel of the UI to the system's default
+        UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName())
+
+        // Set the background color of the main content pane
+        windowFrame.contentPane.background = colorManager.theme.uiMainBG
+
+        // Set the background color of the canvas panel
+        windowFrame.canvasPanel.background = colorManager.theme.uiMainBG
+
         // Set alignment and background color for each button in the middle button list
         middleButtonList.forEach {
             it.alignmentX = 0.5f
@@ -230,9 +423,30 @@ class MeepMeep @JvmOverloads constructor(
         // Pack the window frame to fit the preferred sizes of its components
         windowFrame.pack()
 
+        // Resize the canvas once the window stops resizing or moves to a display with another scale
+        canvas.addComponentListener(object: ComponentAdapter() {
+            override fun componentResized(e: ComponentEvent) {
+                requestCanvasResize()
+            }
+        })
+        canvas.addPropertyChangeListener("graphicsConfiguration") { requestCanvasResize() }
+
         // Add mouse motion listener to the canvas
         canvas.addMouseMotionListener(object: MouseMotionListener {
-            override fun mouseDragged(p0: MouseEvent?) {}
+            override fun mouseDragged(e: MouseEvent) {
+                canvasMouseX = e.x
+                canvasMouseY = e.y
+
+                // Pan the camera while dragging with the right mouse button
+                if (SwingUtilities.isRightMouseButton(e)) {
+                    val deltaX = (e.x - panMouseX) * renderScale
+                    val deltaY = (e.y - panMouseY) * renderScale
+                    runOnLoopThread { camera.panBy(deltaX, deltaY) }
+
+                    panMouseX = e.x
+                    panMouseY = e.y
+                }
+            }
 
             override fun mouseMoved(e: MouseEvent) {
                 canvasMouseX = e.x
@@ -240,6 +454,22 @@ class MeepMeep @JvmOverloads constructor(
             }
         })
 
+        // Remember where a drag starts, so the camera pans relative to it
+        canvas.addMouseListener(object: MouseAdapter() {
+            override fun mousePressed(e: MouseEvent) {
+                panMouseX = e.x
+                panMouseY = e.y
+            }
+        })
+
+        // Zoom the camera at the cursor with the mouse wheel
+        canvas.addMouseWheelListener { e ->
+            val factor = 1.15.pow(-e.preciseWheelRotation)
+            val viewX = (e.x - canvasOffsetX()) * renderScale
+            val viewY = (e.y - canvasOffsetY()) * renderScale
+            runOnLoopThread { camera.zoomAt(viewX, viewY, factor) }
+        }
+
         // Add key listener to the canvas
         canvas.addKeyListener(object: KeyListener {
             /**
@@ -259,11 +489,9 @@ class MeepMeep @JvmOverloads constructor(
             override fun keyPressed(e: KeyEvent) {
                 // Check if the 'C' or 'COPY' (Often `Ctrl/CMD + C`) key is pressed
                 if (e.keyCode == KeyEvent.VK_C || e.keyCode == KeyEvent.VK_COPY) {
-                    // Convert mouse coordinates from screen to field coordinates
+                    // Convert mouse coordinates from screen to field coordinates through the camera
                     val mouseToFieldCoords = FieldUtil.screenCoordsToFieldCoords(
-                        Vector2d(
-                            canvasMouseX.toDouble(), canvasMouseY.toDouble()
-                        )
+                        mouseToCanvasCoords(canvasMouseX, canvasMouseY)
                     )
 
                     // Format the coordinates as a string
@@ -278,6 +506,15 @@ class MeepMeep @JvmOverloads constructor(
                     val clipboard = Toolkit.getDefaultToolkit().systemClipboard
                     clipboard.setContents(stringSelection, null)
                 }
+
+                // Reset the camera to show the whole field
+                if (e.keyCode == KeyEvent.VK_R) runOnLoopThread { camera.reset() }
+
+                // Follow the next bot, or stop following after the last one
+                if (e.keyCode == KeyEvent.VK_F) runOnLoopThread {
+                    val bots = entityList.filterIsInstance<BotEntity>()
+                    camera.follow(bots.getOrNull(bots.indexOf(camera.followTarget) + 1))
+                }
             }
 
             /**
@@ -288,27 +525,46 @@ class MeepMeep @JvmOverloads constructor(
              */
             override fun keyReleased(p0: KeyEvent?) {}
         })
+    }
 
-        // Set the z-index hierarchy for entities
-        zIndexManager.setTagHierarchy(
-            "RR_BOT_ENTITY",
-            "TURN_INDICATOR_ENTITY",
-            "MARKER_INDICATOR_ENTITY",
-            "TRAJECTORY_SEQUENCE_ENTITY",
-            "COMPASS_ENTITY",
-            "AXES_ENTITY",
-        )
-
-        // Add default entities to the entity list
-        addEntity(DEFAULT_AXES_ENTITY)
-        addEntity(DEFAULT_COMPASS_ENTITY)
+    /**
+     * Finds the time along the bot path closest to the mouse, through the
+     * spatial index of each bot's trajectory sequence, and stores it in
+     * [hoveredPathTime] for the mouse readout.
+     *
+     * The paths are picked off the loop thread, as the first pick builds the
+     * spatial index and lazy sequences may rebuild evicted chunks. Called on
+     * the loop thread every frame, but only picks again once the mouse moved
+     * and the previous pick finished.
+     *
+     * @param mousePosition The field position of the mouse.
+     */
+    private fun pickPaths(mousePosition: Vector2d) {
+        if (isPickingPaths || mousePosition == pickedMousePosition) return
+        pickedMousePosition = mousePosition
+        isPickingPaths = true
+
+        // Snapshot the sequences, the entity list is only read on the loop thread
+        val sequences = entityList.filterIsInstance<RoadRunnerBotEntity>().mapNotNull { it.currentTrajectorySequence }
+
+        CompletableFuture.supplyAsync {
+            sequences.mapNotNull { it.getSpatialIndex().pick(mousePosition, PATH_PICK_DISTANCE) }
+                .minByOrNull { it.distance }?.time
+        }.whenComplete { time, error ->
+            if (error != null) error.printStackTrace()
+
+            hoveredPathTime = time
+            isPickingPaths = false
+        }
     }
 
     /**
      * Renders the current state of the application onto the canvas.
      *
      * This function handles the rendering of the background image, all
-     * entities, the FPS counter, and the mouse coordinates. It uses
+     * entities, the FPS counter, and the mouse coordinates. The background
+     * and static entity layers are composited through the [LayerCompositor],
+     * so they are only redrawn when they change. It uses
      * [Graphics2D] for rendering and applies anti-aliasing for smoother
      * visuals.
      *
@@ -318,32 +574,40 @@ class MeepMeep @JvmOverloads constructor(
      * @see [LoopManager]
      */
     private val render: () -> Unit = {
-        // Get the graphics context from the canvas buffer strategy
-        val g = canvas.bufferStrat.drawGraphics as Graphics2D
+        // Get the graphics context from the offscreen image or the canvas buffer strategy
+        val g = if (isHeadless) {
+            var image = offscreenImage
+            if (image == null || image.width != canvasWidth || image.height != canvasHeight) {
+                image = BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_RGB)
+                offscreenImage = image
+            }
+
+            image.createGraphics().apply { background = colorManager.theme.uiMainBG }
+        } else {
+            canvas.bufferStrat.drawGraphics as Graphics2D
+        }
 
         // Enable anti-aliasing for smoother visuals
         g.apply {
             setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
-            clearRect(0, 0, canvas.width, canvas.height)
+
+            // Until a resize settles, the window may be larger than the canvas
+            if (isHeadless) clearRect(0, 0, canvasWidth, canvasHeight)
+            else clearRect(0, 0, canvas.width, canvas.height)
         }
 
-        // Render the background image if it exists
-        bg?.let {
-            if (bgAlpha < 1.0f) {
-                // Apply alpha transparency to the background image
-                val resetComposite = g.composite
-                val alphaComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, bgAlpha)
-
-                g.composite = alphaComposite
-                g.drawImage(it, 0, 0, null)
-                g.composite = resetComposite
-            } else {
-                g.drawImage(it, 0, 0, null)
-            }
+        // Render in canvas pixels, which are shown at the render scale, and draw the overlays in window pixels
+        val windowTransform = g.transform
+        if (isHeadless) {
+            windowTransform.scale(renderScale, renderScale)
+        } else {
+            g.translate(canvasOffsetX(), canvasOffsetY())
+            g.scale(1 / renderScale, 1 / renderScale)
         }
 
-        // Render all entities in the entity list
-        entityList.forEach { it.render(g, canvas.width, canvas.height) }
+        // Render the cached background and static layers, then the dynamic entities on top
+        layerCompositor.render(g, entityList, bg, canvasWidth, canvasHeight, profiler, camera, bgPyramid, bgAlpha)
+        g.transform = windowTransform
 
         if (showFPS) {
             g.font = FONT_ROBOTO_BOLD_ITALIC.deriveFont(20f)
@@ -351,24 +615,38 @@ class MeepMeep @JvmOverloads constructor(
             g.drawString("%.1f FPS".format(loopManager.fps), 10, 20)
         }
 
-        // Convert mouse coordinates from screen to field coordinates
-        val mouseToFieldCoords = FieldUtil.screenCoordsToFieldCoords(
-            Vector2d(canvasMouseX.toDouble(), canvasMouseY.toDouble())
-        )
+        if (showProfiler) profiler.renderOverlay(g, FONT_ROBOTO_REGULAR.deriveFont(12f), 10, 28)
+
+        // There is no mouse to track when headless
+        if (!isHeadless) {
+            // Convert mouse coordinates from screen to field coordinates through the camera
+            val mouseToFieldCoords = FieldUtil.screenCoordsToFieldCoords(
+                mouseToCanvasCoords(canvasMouseX, canvasMouseY)
+            )
+
+            pickPaths(mouseToFieldCoords)
+
+            // Draw the mouse coordinates, followed by the time along the path under the mouse
+            val pathTime = hoveredPathTime
+            g.font = FONT_ROBOTO_BOLD.deriveFont(14f)
+            g.color =
+                    if (colorManager.isDarkMode) ColorManager.COLOR_PALETTE.gray100 else ColorManager.COLOR_PALETTE.gray800
+            g.drawString(
+                "(%.1f, %.1f)".format(mouseToFieldCoords.x, mouseToFieldCoords.y) +
+                        if (pathTime != null) "  %.2fs".format(pathTime) else "",
+                mouseCoordinateDisplayX,
+                mouseCoordinateDisplayY ?: (canvas.height - 8)
+            )
+        }
 
-        // Draw the mouse coordinates
-        g.font = FONT_ROBOTO_BOLD.deriveFont(14f)
-        g.color =
-                if (colorManager.isDarkMode) ColorManager.COLOR_PALETTE.gray100 else ColorManager.COLOR_PALETTE.gray800
-        g.drawString(
-            "(%.1f, %.1f)".format(mouseToFieldCoords.x, mouseToFieldCoords.y),
-            mouseCoordinateDisplayX,
-            mouseCoordinateDisplayY
-        )
+        profiler.endPhase(FrameProfiler.Phase.OVERLAY)
 
         // Dispose of the graphics context and show the buffer
         g.dispose()
-        canvas.bufferStrat.show()
+        if (!isHeadless) canvas.bufferStrat.show()
+
+        profiler.endPhase(FrameProfiler.Phase.SHOW)
+        profiler.endFrame()
     }
 
     // Secondary constructor that initializes the window size with equal width and height
@@ -385,6 +663,11 @@ class MeepMeep @JvmOverloads constructor(
      * @see [ZIndexManager]
      */
     private val update: (deltaTime: Long) -> Unit = { deltaTime ->
+        profiler.beginFrame()
+
+        // Run the tasks queued from other threads, such as adding asynchronously built entities
+        runLoopThreadTasks()
+
         // Check if the entity list needs to be updated
         if (entityListDirty) {
             // Remove entities that are requested to be removed
@@ -402,13 +685,31 @@ class MeepMeep @JvmOverloads constructor(
 
         // Update each entity in the entity list
         entityList.forEach { it.update(deltaTime) }
+
+        // Stop following removed bots, then move the camera to the updated pose of the followed one
+        val followTarget = camera.followTarget
+        if (followTarget != null && followTarget !in entityList) camera.follow(null)
+        camera.update()
+
+        profiler.endPhase(FrameProfiler.Phase.UPDATE)
     }
 
+    /**
+     * The clock providing simulation time to the entities.
+     *
+     * Defaults to the wall clock, or to a fixed step at the configured fps
+     * when headless so offscreen frames are reproducible.
+     *
+     * @see [setClock]
+     */
+    var clock: SimulationClock = if (isHeadless) SimulationClock.asFastAsPossible(fps) else SimulationClock.realTime()
+        private set
+
     /**
      * Manages the application loop with the specified fps and update and
      * render functions.
      */
-    private val loopManager = LoopManager(fps, update, render)
+    private val loopManager = LoopManager(fps, update, render).apply { clock = this@MeepMeep.clock }
 
     /**
      * Function to show a warning dialog when the application is started.
@@ -447,11 +748,17 @@ class MeepMeep @JvmOverloads constructor(
      */
     fun start(): MeepMeep {
         // Show the warning dialog that the repository has moved
-        showWarningDialog()
+        if (!isHeadless) showWarningDialog()
 
         // Set the default background if none is set
-        if (bg == null) setBackground(Background.GRID_BLUE)
-        windowFrame.isVisible = true
+        if (bgSourceKey == null) setBackground(Background.GRID_BLUE)
+        if (!isHeadless) windowFrame.isVisible = true
+
+        // Frames are stepped deterministically when headless, so wait for every entity to be built
+        if (isHeadless) CompletableFuture.allOf(*pendingEntities.toTypedArray()).handle { _, _ -> null }.join()
+
+        // Add the entities that finished building before the loop started
+        runLoopThreadTasks()
 
         // Default added entities are initialized before color schemes are set
         // Thus make sure to reset them
@@ -460,62 +767,144 @@ class MeepMeep @JvmOverloads constructor(
             if (it is RoadRunnerBotEntity) it.start()
         }
 
-        // Adjust the canvas size
-        onCanvasResize()
+        // Size the canvas to the window. The loop is not running yet, so the layers are redrawn right away
+        val size = targetCanvasSize()
+        applyCanvasSize(size, size, targetRenderScale(), emptyList())
+        isStarted = true
 
-        // Start the application loop
-        loopManager.start()
+        // Start the application loop. Headless frames are stepped through renderFrame instead
+        if (!isHeadless) loopManager.start()
 
         return this
     }
 
+    /**
+     * Steps the application by a single frame and renders it offscreen.
+     *
+     * This runs the same update and render functions as the application loop,
+     * but as fast as the caller drives it instead of at the loop's fps. The
+     * returned image is reused between frames, so copy it if it has to
+     * outlive the next call.
+     *
+     * @param deltaTime The time to advance the entities by, in nanoseconds.
+     *    Defaults to a single tick of the [clock].
+     * @return The offscreen image containing the rendered frame.
+     * @throws IllegalStateException If not running headless.
+     */
+    @JvmOverloads
+    fun renderFrame(deltaTime: Long = clock.tick()): BufferedImage {
+        check(isHeadless) { "Frames can only be rendered offscreen when running headless" }
+
+        update(deltaTime)
+        render()
+
+        return offscreenImage!!
+    }
+
     /**
      * Sets the background of the MeepMeep application.
      *
+     * The background image is decoded asynchronously by the shared
+     * [AssetManager], so this returns without waiting for it unless running
+     * headless.
+     *
      * @param background The [Background] enum representing the background.
      * @return The [MeepMeep] instance for method chaining.
      */
     fun setBackground(background: Background): MeepMeep {
-        val classLoader = Thread.currentThread().contextClassLoader
+        // Switch the theme to match the brightness of the background
+        colorManager.isDarkMode = background.isDark
 
-        val backgroundMap = Background.values().associateWith { bg ->
-            val path = when (bg) {
-                Background.GRID_BLUE -> "background/misc/field-grid-blue.jpg"
-                Background.GRID_GREEN -> "background/misc/field-grid-green.jpg"
-                Background.GRID_GRAY -> "background/misc/field-grid-gray.jpg"
-                Background.FIELD_SKYSTONE_OFFICIAL -> "background/season-2019-skystone/field-2019-skystone-official.png"
-                Background.FIELD_SKYSTONE_GF_DARK -> "background/season-2019-skystone/field-2019-skystone-gf-dark.png"
-                Background.FIELD_SKYSTONE_INNOV8RZ_LIGHT -> "background/season-2019-skystone/field-2019-skystone-innov8rz-light.jpg"
-                Background.FIELD_SKYSTONE_INNOV8RZ_DARK -> "background/season-2019-skystone/field-2019-skystone-innov8rz-dark.jpg"
-                Background.FIELD_SKYSTONE_STARWARS_DARK -> "background/season-2019-skystone/field-2019-skystone-starwars.png"
-                Background.FIELD_ULTIMATEGOAL_INNOV8RZ_DARK -> "background/season-2020-ultimategoal/field-2020-innov8rz-dark.jpg"
-                Background.FIELD_FREIGHTFRENZY_OFFICIAL -> "background/season-2021-freightfrenzy/field-2021-official.png"
-                Background.FIELD_FREIGHTFRENZY_ADI_DARK -> "background/season-2021-freightfrenzy/field-2021-adi-dark.png"
-                Background.FIELD_POWERPLAY_OFFICIAL -> "background/season-2022-powerplay/field-2022-official.png"
-                Background.FIELD_POWERPLAY_KAI_DARK -> "background/season-2022-powerplay/field-2022-kai-dark.png"
-                Background.FIELD_POWERPLAY_KAI_LIGHT -> "background/season-2022-powerplay/field-2022-kai-light.png"
-                Background.FIELD_CENTERSTAGE_OFFICIAL -> "background/season-2023-centerstage/field-2023-official.png"
-                Background.FIELD_CENTERSTAGE_JUICE_DARK -> "background/season-2023-centerstage/field-2023-juice-dark.png"
-                Background.FIELD_CENTERSTAGE_JUICE_LIGHT -> "background/season-2023-centerstage/field-2023-juice-light.png"
-                Background.FIELD_INTOTHEDEEP_OFFICIAL -> "background/season-2024-intothedeep/field-2024-official.png"
-                Background.FIELD_INTOTHEDEEP_JUICE_DARK -> "background/season-2024-intothedeep/field-2024-juice-dark.png"
-                Background.FIELD_INTOTHEDEEP_JUICE_LIGHT -> "background/season-2024-intothedeep/field-2024-juice-light.png"
-                Background.FIELD_INTOTHEDEEP_JUICE_GREYSCALE -> "background/season-2024-intothedeep/field-2024-juice-greyscale.png"
-                Background.FIELD_INTOTHEDEEP_JUICE_BLACK -> "background/season-2024-intothedeep/field-2024-juice-black.png"
-            }
+        // The image is only decoded if it is not already cached at the current size
+        bgSourceKey = background
+        bgSource = { AssetManager.shared.load(background.path) }
+        updateBackground()
+
+        // Refresh the theme for all entities
+        refreshTheme()
+
+        return this
+    }
+
+    /**
+     * Updates the scaled background image from the current background source
+     * and alpha transparency level.
+     *
+     * Scaled images are kept in the [backgroundCache], so switching back to a
+     * previously used background does not decode or scale it again. Other
+     * backgrounds are decoded and scaled in the background, showing a blank
+     * canvas until they are ready. When headless, the background is loaded
+     * before returning so rendered frames do not depend on timing.
+     */
+    private fun updateBackground() {
+        val sourceKey = bgSourceKey ?: return
+        val alpha = bgAlpha
+        val generation = ++bgGeneration
+
+        val width = canvasWidth
+        val height = canvasHeight
+
+        // Zoomed in views are rasterized from the unscaled image, which does not depend on the size or alpha
+        if (sourceKey != bgPyramidKey) updateBackgroundPyramid(sourceKey)
 
-            val isDarkMode = path.contains("dark", ignoreCase = true)
-            Pair(path, isDarkMode)
+        // Use the scaled image straight away if it is cached
+        backgroundCache.getIfPresent(sourceKey, width, height, alpha)?.let {
+            bg = it
+            return
         }
 
-        // Get the path and dark mode boolean from the background map
-        val (path, isDarkMode) = backgroundMap[background]!!
-        colorManager.isDarkMode = isDarkMode
-        bg = ImageIO.read(classLoader.getResourceAsStream(path))
-            .getScaledInstance(windowX, windowY, Image.SCALE_SMOOTH)
+        // Decode and scale the image off the calling thread, even if the decoded image is already cached
+        val scaled = bgSource!!().thenApplyAsync { source ->
+            backgroundCache.get(sourceKey, width, height, alpha) { source }
+        }
 
-        // Refresh the theme for all entities
-        refreshTheme()
+        if (isHeadless) {
+            bg = scaled.join()
+            return
+        }
+
+        // Show a blank canvas until the image is ready, unless it was replaced in the meantime
+        bg = null
+        scaled.whenComplete { image, error ->
+            if (error != null) error.printStackTrace()
+            else if (generation == bgGeneration) bg = image
+        }
+    }
+
+    /**
+     * Builds the [bgPyramid] of the current background source off the
+     * calling thread, scaling up the scaled background in the meantime. When
+     * headless, the pyramid is built before returning.
+     *
+     * @param sourceKey The key of the current background source.
+     */
+    private fun updateBackgroundPyramid(sourceKey: Any) {
+        bgPyramidKey = sourceKey
+        bgPyramid = null
+
+        val pyramid = bgSource!!().thenApplyAsync { ImagePyramid(it) }
+
+        if (isHeadless) {
+            bgPyramid = pyramid.join()
+            return
+        }
+
+        // Discard the pyramid if the background was replaced in the meantime
+        pyramid.whenComplete { image, error ->
+            if (error != null) error.printStackTrace()
+            else if (sourceKey == bgPyramidKey) bgPyramid = image
+        }
+    }
+
+    /**
+     * Starts decoding the given backgrounds in the background, so switching
+     * to them later does not have to wait for them to load.
+     *
+     * @param backgrounds The backgrounds to prefetch.
+     * @return The [MeepMeep] instance for method chaining.
+     */
+    fun prefetchBackgrounds(vararg backgrounds: Background): MeepMeep {
+        AssetManager.shared.prefetch(*backgrounds.map { it.path }.toTypedArray())
 
         return this
     }
@@ -531,8 +920,13 @@ class MeepMeep @JvmOverloads constructor(
      * @return The [MeepMeep] instance for method chaining.
      */
     fun setBackground(image: Image): MeepMeep {
+        // Wait for toolkit images to finish loading so they can be scaled
+        val loadedImage = if (image is BufferedImage) image else ImageIcon(image).image
+
         // Scale the provided image to fit the window dimensions
-        bg = image.getScaledInstance(windowX, windowY, Image.SCALE_SMOOTH)
+        bgSourceKey = image
+        bgSource = { CompletableFuture.completedFuture(loadedImage) }
+        updateBackground()
 
         // Return the current instance for method chaining
         return this
@@ -556,6 +950,29 @@ class MeepMeep @JvmOverloads constructor(
         mouseCoordinateDisplayY = y
     }
 
+    /**
+     * Sets the clock providing simulation time to the entities.
+     *
+     * Use a fixed step clock for reproducible runs, a scaled clock to speed
+     * the simulation up, or an unthrottled clock to step the loop as fast as
+     * possible. Must be called before [start].
+     *
+     * @param clock The [SimulationClock] to use.
+     * @return The [MeepMeep] instance for method chaining.
+     * @throws IllegalStateException If the application was already started.
+     * @see [SimulationClock]
+     */
+    fun setClock(clock: SimulationClock): MeepMeep {
+        // The loop picks between fixed rate scheduling and stepping back to back when it starts
+        check(!isStarted) { "The clock must be set before the application is started" }
+
+        // Drive both the loop and offscreen frames from the new clock
+        this.clock = clock
+        loopManager.clock = clock
+
+        return this
+    }
+
     /**
      * Sets the visibility of the FPS display.
      *
@@ -570,6 +987,27 @@ class MeepMeep @JvmOverloads constructor(
         return this
     }
 
+    /**
+     * Sets the visibility of the profiler overlay, which lists the frame
+     * time percentiles, phase timings, dropped frames, allocation rate and
+     * the most expensive entity tags.
+     *
+     * Showing the overlay enables the [profiler]. Hiding it leaves the
+     * profiler recording, so it can still be queried or exported.
+     *
+     * @param showProfiler A boolean indicating whether the profiler overlay
+     *    should be shown.
+     * @return The [MeepMeep] instance for method chaining.
+     */
+    fun setShowProfiler(showProfiler: Boolean): MeepMeep {
+        this.showProfiler = showProfiler
+
+        // The overlay needs recorded frames to show
+        if (showProfiler) profiler.isEnabled = true
+
+        return this
+    }
+
     /**
      * Sets the theme for the MeepMeep application.
      *
@@ -613,6 +1051,9 @@ class MeepMeep @JvmOverloads constructor(
             if (it is ThemedEntity) it.switchScheme(colorManager.theme)
         }
 
+        // There are no UI components to refresh when headless
+        if (isHeadless) return
+
         // Update the background color of the main content pane and canvas panel
         windowFrame.contentPane.background = colorManager.theme.uiMainBG
         windowFrame.canvasPanel.background = colorManager.theme.uiMainBG
@@ -647,26 +1088,190 @@ class MeepMeep @JvmOverloads constructor(
     }
 
     /**
-     * Adjusts the canvas dimensions to match the window size and updates all
-     * entities with the new dimensions.
+     * Sets the number of canvas pixels rendered per window pixel.
      *
-     * This method sets the canvas width and height in [FieldUtil] to the
-     * current window dimensions. It then iterates through the [entityList]
-     * and calls [Entity.setCanvasDimensions] on each entity to update their
-     * dimensions accordingly.
+     * By default, the canvas matches the scale of the display the window is
+     * on, so it stays sharp on HiDPI displays instead of being scaled up by
+     * the operating system. A lower render scale trades sharpness for
+     * speed. Headless frames default to a render scale of 1, so offscreen
+     * images are as large as the shorter side of the window.
      *
+     * @param renderScale The render scale, or null to match the display.
+     * @return The [MeepMeep] instance for method chaining.
+     * @throws IllegalArgumentException If the render scale is not positive.
+     */
+    fun setRenderScale(renderScale: Double?): MeepMeep {
+        require(renderScale == null || renderScale > 0) { "The render scale must be positive" }
+
+        requestedRenderScale = renderScale
+        if (isStarted) requestCanvasResize()
+
+        return this
+    }
+
+    /**
+     * Maps a point of the window, such as the mouse position, to the canvas
+     * through its offset in the window, the render scale and the camera.
+     *
+     * @param mouseX The x coordinate of the point in the window.
+     * @param mouseY The y coordinate of the point in the window.
+     * @return The point in canvas coordinates.
+     */
+    fun mouseToCanvasCoords(mouseX: Int, mouseY: Int): Vector2d =
+        camera.viewToCanvas((mouseX - canvasOffsetX()) * renderScale, (mouseY - canvasOffsetY()) * renderScale)
+
+    /**
+     * The x coordinate of the left edge of the canvas in the window, which
+     * centers it horizontally. Until a resize settles, the canvas may be
+     * wider than the window and is aligned to its left edge instead.
+     */
+    private fun canvasOffsetX(): Double =
+        if (isHeadless) 0.0 else max(0.0, (canvas.width - canvasWidth / renderScale) / 2)
+
+    /**
+     * The y coordinate of the top edge of the canvas in the window, which
+     * centers it vertically. Until a resize settles, the canvas may be
+     * taller than the window and is aligned to its top edge instead.
+     */
+    private fun canvasOffsetY(): Double =
+        if (isHeadless) 0.0 else max(0.0, (canvas.height - canvasHeight / renderScale) / 2)
+
+    /** The render scale to resize the canvas to, as set or matching the display. */
+    private fun targetRenderScale(): Double {
+        requestedRenderScale?.let { return it }
+        if (isHeadless) return 1.0
+
+        return canvas.graphicsConfiguration?.defaultTransform?.scaleX ?: 1.0
+    }
+
+    /**
+     * The width and height to resize the canvas to, the shorter side of the
+     * window at the target render scale.
+     *
+     * The field is mapped into a square canvas, so a window of another
+     * aspect ratio shows the canvas with empty bars along its longer side.
+     */
+    private fun targetCanvasSize(): Int {
+        val width = if (isHeadless || canvas.width <= 0) windowX else canvas.width
+        val height = if (isHeadless || canvas.height <= 0) windowY else canvas.height
+
+        return (min(width, height) * targetRenderScale()).roundToInt()
+    }
+
+    /**
+     * Resizes the canvas once the window stops resizing.
+     *
+     * Nothing is redrawn in the resize event. Each request restarts a
+     * [RESIZE_DEBOUNCE_MILLIS] delay, after which [resizeCanvas] renders the
+     * layers at the new size in the background. The loop keeps rendering the
+     * previous layers in the meantime. When headless, the canvas is resized
+     * before the next frame, so rendered frames do not depend on timing.
+     */
+    private fun requestCanvasResize() {
+        val generation = ++resizeGeneration
+
+        if (isHeadless) {
+            runOnLoopThread { resizeCanvas(generation) }
+            return
+        }
+
+        CompletableFuture.delayedExecutor(RESIZE_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS).execute {
+            if (generation == resizeGeneration) runOnLoopThread { resizeCanvas(generation) }
+        }
+    }
+
+    /**
+     * Renders the cached layers of every [ResizableEntity] and the
+     * background at the target canvas size off the loop thread, then swaps
+     * them in together with the new size on the loop thread.
+     *
+     * Called on the loop thread, as the entity list is snapshotted.
+     *
+     * @param generation The [resizeGeneration] the resize was requested at.
+     */
+    private fun resizeCanvas(generation: Int) {
+        // Canvases resized before the start are sized by it
+        if (!isStarted || generation != resizeGeneration) return
+
+        val width = targetCanvasSize()
+        val height = width
+        val scale = targetRenderScale()
+        if (width == canvasWidth && height == canvasHeight && scale == renderScale) return
+
+        // Snapshot what the layers are rendered from, the loop thread keeps using them in the meantime
+        val entities = entityList.filterIsInstance<ResizableEntity>()
+        val sourceKey = bgSourceKey
+        val source = bgSource
+        val alpha = bgAlpha
+
+        // Render the entity layers and scale the background into its cache in parallel
+        val prepared = CompletableFuture.supplyAsync {
+            entities.map { it.prepareCanvasDimensions(width.toDouble(), height.toDouble(), scale) }
+        }
+        val background: CompletableFuture<*> = if (sourceKey == null || source == null) {
+            CompletableFuture.completedFuture(null)
+        } else {
+            source().thenApplyAsync { image -> backgroundCache.get(sourceKey, width, height, alpha) { image } }
+        }
+        val ready = prepared.thenCombine(background) { installs, _ -> installs }
+
+        if (isHeadless) {
+            applyCanvasSize(width, height, scale, ready.join())
+            return
+        }
+
+        ready.whenComplete { installs, error ->
+            // Layers that failed to render are redrawn once the size is set instead
+            if (error != null) error.printStackTrace()
+
+            runOnLoopThread {
+                if (generation == resizeGeneration) applyCanvasSize(width, height, scale, installs ?: emptyList())
+            }
+        }
+    }
+
+    /**
+     * Sets the size of the canvas and updates all entities with it.
+     *
+     * This method sets the canvas width and height in [FieldUtil], then
+     * iterates through the [entityList] and calls
+     * [Entity.setCanvasDimensions] on each entity to update their
+     * dimensions accordingly. Entities whose layers were rendered in the
+     * background have them swapped in first, so they have nothing left to
+     * redraw.
+     *
+     * @param width The width of the canvas in pixels.
+     * @param height The height of the canvas in pixels.
+     * @param scale The render scale.
+     * @param installs The tasks swapping in the layers rendered by
+     *    [ResizableEntity.prepareCanvasDimensions].
      * @see FieldUtil
      * @see Entity.setCanvasDimensions
      */
-    private fun onCanvasResize() {
-        // Set the canvas width and height in FieldUtil to the current window dimensions
-        FieldUtil.CANVAS_WIDTH = windowX.toDouble()
-        FieldUtil.CANVAS_HEIGHT = windowY.toDouble()
+    private fun applyCanvasSize(width: Int, height: Int, scale: Double, installs: List<Runnable>) {
+        val isResized = width != canvasWidth || height != canvasHeight
+
+        // Swap in the layers rendered in the background
+        installs.forEach { it.run() }
+
+        canvasWidth = width
+        canvasHeight = height
+        renderScale = scale
+
+        // Set the canvas width and height in FieldUtil to the new canvas size
+        FieldUtil.CANVAS_WIDTH = width.toDouble()
+        FieldUtil.CANVAS_HEIGHT = height.toDouble()
+
+        // The camera views the whole canvas at its lowest zoom
+        camera.setViewSize(FieldUtil.CANVAS_WIDTH, FieldUtil.CANVAS_HEIGHT)
 
         // Update the canvas dimensions for each entity in the entityList
         entityList.forEach {
             it.setCanvasDimensions(FieldUtil.CANVAS_WIDTH, FieldUtil.CANVAS_HEIGHT)
         }
+
+        // The background was scaled to the new size in the background, unless it changed in the meantime
+        if (isResized) updateBackground()
     }
 
     /**
@@ -711,14 +1316,16 @@ class MeepMeep @JvmOverloads constructor(
         entityList.add(entity)
         entityListDirty = true
 
-        // Register the entity for mouse events if it implements MouseListener
-        if (entity is MouseListener) canvas.addMouseListener(entity)
+        if (!isHeadless) {
+            // Register the entity for mouse events if it implements MouseListener
+            if (entity is MouseListener) canvas.addMouseListener(entity)
 
-        // Register the entity for mouse motion events if it implements MouseMotionListener
-        if (entity is MouseMotionListener) canvas.addMouseMotionListener(entity)
+            // Register the entity for mouse motion events if it implements MouseMotionListener
+            if (entity is MouseMotionListener) canvas.addMouseMotionListener(entity)
 
-        // Add the entity to the progress slider panel if it is a RoadRunnerBotEntity
-        if (entity is RoadRunnerBotEntity) progressSliderMasterPanel.addRoadRunnerBot(entity)
+            // Add the entity to the progress slider panel if it is a RoadRunnerBotEntity
+            if (entity is RoadRunnerBotEntity) progressSliderMasterPanel.addRoadRunnerBot(entity)
+        }
 
         // Trigger the onAddToEntityList method if the entity implements EntityEventListener
         if (entity is EntityEventListener) entity.onAddToEntityList()
@@ -727,6 +1334,76 @@ class MeepMeep @JvmOverloads constructor(
         return this
     }
 
+    /**
+     * Adds an [Entity] that is still being built to the MeepMeep application.
+     *
+     * The entity is added on the loop thread as soon as the future
+     * completes, and initialized like the entities added before [start]. When
+     * headless, [start] waits for all such entities. Entities that fail to
+     * build are reported and skipped.
+     *
+     * @param entity The future completing with the [Entity] to be added.
+     * @return The [MeepMeep] instance for method chaining.
+     * @see [com.noahbres.meepmeep.roadrunner.DefaultBotBuilder.followTrajectorySequenceAsync]
+     */
+    fun addEntity(entity: CompletableFuture<out Entity>): MeepMeep {
+        val added = entity.whenComplete { result, error ->
+            if (error != null) {
+                error.printStackTrace()
+                return@whenComplete
+            }
+
+            runOnLoopThread {
+                addEntity(result)
+
+                // Entities added before the start are initialized by it
+                if (isStarted) initializeEntity(result)
+            }
+        }
+
+        // Track the future until its entity is queued, so a headless start can wait for it
+        pendingEntities.add(added)
+        added.whenComplete { _, _ -> pendingEntities.remove(added) }
+
+        return this
+    }
+
+    /**
+     * Runs a task on the loop thread before the next update.
+     *
+     * The entity list may only be changed from the loop thread once the
+     * application is started, so other threads queue their changes here.
+     * Before [start], queued tasks run when it is called.
+     *
+     * @param task The task to run.
+     * @return The [MeepMeep] instance for method chaining.
+     */
+    fun runOnLoopThread(task: Runnable): MeepMeep {
+        loopThreadTasks.add(task)
+
+        return this
+    }
+
+    /** Runs the tasks queued through [runOnLoopThread]. */
+    private fun runLoopThreadTasks() {
+        while (true) {
+            val task = loopThreadTasks.poll() ?: break
+            task.run()
+        }
+    }
+
+    /**
+     * Initializes an entity added after the application was started, as
+     * [start] does for the entities added before it.
+     *
+     * @param entity The added entity.
+     */
+    private fun initializeEntity(entity: Entity) {
+        if (entity is ThemedEntity) entity.switchScheme(colorManager.theme)
+        entity.setCanvasDimensions(FieldUtil.CANVAS_WIDTH, FieldUtil.CANVAS_HEIGHT)
+        if (entity is RoadRunnerBotEntity) entity.start()
+    }
+
     /**
      * Removes an [Entity] from the MeepMeep application.
      *
@@ -749,14 +1426,16 @@ class MeepMeep @JvmOverloads constructor(
         // Mark the entity list as dirty to indicate it needs to be sorted
         entityListDirty = true
 
-        // Unregister the entity from mouse events if it implements MouseListener
-        if (entity is MouseListener) canvas.removeMouseListener(entity)
+        if (!isHeadless) {
+            // Unregister the entity from mouse events if it implements MouseListener
+            if (entity is MouseListener) canvas.removeMouseListener(entity)
 
-        // Unregister the entity from mouse motion events if it implements MouseMotionListener
-        if (entity is MouseMotionListener) canvas.removeMouseMotionListener(entity)
+            // Unregister the entity from mouse motion events if it implements MouseMotionListener
+            if (entity is MouseMotionListener) canvas.removeMouseMotionListener(entity)
 
-        // Remove the entity from the progress slider panel if it is a RoadRunnerBotEntity
-        if (entity is RoadRunnerBotEntity) progressSliderMasterPanel.removeRoadRunnerBot(entity)
+            // Remove the entity from the progress slider panel if it is a RoadRunnerBotEntity
+            if (entity is RoadRunnerBotEntity) progressSliderMasterPanel.removeRoadRunnerBot(entity)
+        }
 
         // Trigger the onRemoveFromEntityList method if the entity implements EntityEventListener
         if (entity is EntityEventListener) entity.onRemoveFromEntityList()
@@ -792,7 +1471,8 @@ class MeepMeep @JvmOverloads constructor(
      * This method adds the specified [Entity] to the
      * [requestedRemoveEntityList], marks the [entityList] as dirty to indicate
      * it needs to be sorted, and returns the current [MeepMeep] instance for
-     * method chaining.
+     * method chaining. A pending request to add the entity is cancelled, as
+     * removals are applied before additions.
      *
      * @param entity The [Entity] to be removed from the application.
      * @return The [MeepMeep] instance for method chaining.
@@ -800,6 +1480,9 @@ class MeepMeep @JvmOverloads constructor(
      * @see [removeEntity]
      */
     fun requestToRemoveEntity(entity: Entity): MeepMeep {
+        // Cancel a pending addition, which would otherwise be applied after the removal
+        requestedAddEntityList.remove(entity)
+
         // Add the entity to the requested remove entity list
         requestedRemoveEntityList.add(entity)
 
@@ -826,6 +1509,9 @@ class MeepMeep @JvmOverloads constructor(
         // Set the alpha transparency level for the background image
         bgAlpha = alpha
 
+        // Bake the alpha transparency level into the scaled background image
+        updateBackground()
+
         // Return the current instance for method chaining
         return this
     }
@@ -839,31 +1525,37 @@ class MeepMeep @JvmOverloads constructor(
      * include grid patterns, official field images from different seasons, and
      * custom themes.
      *
+     * @property path The resource path of the background image.
+     *
      * @see [MeepMeep.setBackground]
      * @see [MeepMeep.setBackgroundAlpha]
      */
-    enum class Background {
-        GRID_BLUE,
-        GRID_GREEN,
-        GRID_GRAY,
-        FIELD_SKYSTONE_OFFICIAL,
-        FIELD_SKYSTONE_GF_DARK,
-        FIELD_SKYSTONE_INNOV8RZ_LIGHT,
-        FIELD_SKYSTONE_INNOV8RZ_DARK,
-        FIELD_SKYSTONE_STARWARS_DARK,
-        FIELD_ULTIMATEGOAL_INNOV8RZ_DARK,
-        FIELD_FREIGHTFRENZY_OFFICIAL,
-        FIELD_FREIGHTFRENZY_ADI_DARK,
-        FIELD_POWERPLAY_OFFICIAL,
-        FIELD_POWERPLAY_KAI_DARK,
-        FIELD_POWERPLAY_KAI_LIGHT,
-        FIELD_CENTERSTAGE_OFFICIAL,
-        FIELD_CENTERSTAGE_JUICE_DARK,
-        FIELD_CENTERSTAGE_JUICE_LIGHT,
-        FIELD_INTOTHEDEEP_OFFICIAL,
-        FIELD_INTOTHEDEEP_JUICE_DARK,
-        FIELD_INTOTHEDEEP_JUICE_LIGHT,
-        FIELD_INTOTHEDEEP_JUICE_GREYSCALE,
-        FIELD_INTOTHEDEEP_JUICE_BLACK
+    enum class Background(val path: String) {
+        GRID_BLUE("background/misc/field-grid-blue.jpg"),
+        GRID_GREEN("background/misc/field-grid-green.jpg"),
+        GRID_GRAY("background/misc/field-grid-gray.jpg"),
+        FIELD_SKYSTONE_OFFICIAL("background/season-2019-skystone/field-2019-skystone-official.png"),
+        FIELD_SKYSTONE_GF_DARK("background/season-2019-skystone/field-2019-skystone-gf-dark.png"),
+        FIELD_SKYSTONE_INNOV8RZ_LIGHT("background/season-2019-skystone/field-2019-skystone-innov8rz-light.jpg"),
+        FIELD_SKYSTONE_INNOV8RZ_DARK("background/season-2019-skystone/field-2019-skystone-innov8rz-dark.jpg"),
+        FIELD_SKYSTONE_STARWARS_DARK("background/season-2019-skystone/field-2019-skystone-starwars.png"),
+        FIELD_ULTIMATEGOAL_INNOV8RZ_DARK("background/season-2020-ultimategoal/field-2020-innov8rz-dark.jpg"),
+        FIELD_FREIGHTFRENZY_OFFICIAL("background/season-2021-freightfrenzy/field-2021-official.png"),
+        FIELD_FREIGHTFRENZY_ADI_DARK("background/season-2021-freightfrenzy/field-2021-adi-dark.png"),
+        FIELD_POWERPLAY_OFFICIAL("background/season-2022-powerplay/field-2022-official.png"),
+        FIELD_POWERPLAY_KAI_DARK("background/season-2022-powerplay/field-2022-kai-dark.png"),
+        FIELD_POWERPLAY_KAI_LIGHT("background/season-2022-powerplay/field-2022-kai-light.png"),
+        FIELD_CENTERSTAGE_OFFICIAL("background/season-2023-centerstage/field-2023-official.png"),
+        FIELD_CENTERSTAGE_JUICE_DARK("background/season-2023-centerstage/field-2023-juice-dark.png"),
+        FIELD_CENTERSTAGE_JUICE_LIGHT("background/season-2023-centerstage/field-2023-juice-light.png"),
+        FIELD_INTOTHEDEEP_OFFICIAL("background/season-2024-intothedeep/field-2024-official.png"),
+        FIELD_INTOTHEDEEP_JUICE_DARK("background/season-2024-intothedeep/field-2024-juice-dark.png"),
+        FIELD_INTOTHEDEEP_JUICE_LIGHT("background/season-2024-intothedeep/field-2024-juice-light.png"),
+        FIELD_INTOTHEDEEP_JUICE_GREYSCALE("background/season-2024-intothedeep/field-2024-juice-greyscale.png"),
+        FIELD_INTOTHEDEEP_JUICE_BLACK("background/season-2024-intothedeep/field-2024-juice-black.png");
+
+        /** Whether the background is dark, which switches the theme to dark mode. */
+        val isDark: Boolean
+            get() = path.contains("dark", ignoreCase = true)
     }
 }
@@ -8,13 +8,17 @@ import kotlin.math.min
  * a value towards a target value over a specified time using a given
  * easing function. The animation can be clipped to a specified range.
  *
+ * Time is advanced through the delta passed to [update], so animations
+ * follow the simulation clock rather than the wall clock.
+ *
  * @property value The current value of the animation.
  */
 class AnimationController(var value: Double) {
-    private var isAnimating = false
+    /** Whether an animation is running. */
+    var isAnimating = false
+        private set
 
-    private var currentStartTime = 0.0
-    private var currentEndTime = 0.0
+    private var currentElapsedTime = 0.0
     private var currentTotalTime = 0.0
 
     private var currentTargetStart = 0.0
@@ -31,15 +35,18 @@ class AnimationController(var value: Double) {
      * the animation and updates the value accordingly. If clipping is enabled,
      * the value is clipped to the specified bounds. The animation stops if it
      * has reached the end.
+     *
+     * @param deltaTime The simulation time since the last update in
+     *    nanoseconds.
      */
-    fun update() {
+    fun update(deltaTime: Long) {
         if (!isAnimating) return
 
-        // Calculate elapsed time since the animation started
-        val elapsedTime = System.currentTimeMillis() - currentStartTime
+        // Advance the elapsed time since the animation started, in milliseconds
+        currentElapsedTime += deltaTime / 1_000_000.0
 
         // Calculate the progress of the animation using the current ease function
-        val progress = currentEase(elapsedTime / currentTotalTime)
+        val progress = currentEase(min(currentElapsedTime / currentTotalTime, 1.0))
 
         // Calculate the new value of the animation based on the progress
         value = currentTargetStart + progress * currentTargetDelta
@@ -72,10 +79,9 @@ class AnimationController(var value: Double) {
         currentTargetStart = value
         currentTargetDelta = target - value
 
-        // Set the start and end times for the animation
-        currentStartTime = System.currentTimeMillis().toDouble()
-        currentEndTime = currentStartTime + timeMs
-        currentTotalTime = currentEndTime - currentStartTime
+        // Restart the elapsed time and set the length of the animation
+        currentElapsedTime = 0.0
+        currentTotalTime = timeMs
 
         // Set the ease function for the animation
         currentEase = ease
@@ -6,16 +6,17 @@ import com.noahbres.meepmeep.core.anim.AnimationController
 import com.noahbres.meepmeep.core.anim.Ease
 import com.noahbres.meepmeep.core.colorscheme.ColorScheme
 import com.noahbres.meepmeep.core.scaleInToPixel
-import com.noahbres.meepmeep.core.toScreenCoord
 import com.noahbres.meepmeep.core.util.FieldUtil
+import com.noahbres.meepmeep.core.util.ImageUtil
 import java.awt.AlphaComposite
 import java.awt.Font
 import java.awt.Graphics2D
-import java.awt.GraphicsEnvironment
+import java.awt.Rectangle
 import java.awt.RenderingHints
 import java.awt.Transparency
 import java.awt.event.MouseEvent
 import java.awt.event.MouseMotionListener
+import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
 
 /** Length of the ticks on the axes. */
@@ -87,7 +88,7 @@ class AxesEntity
 
     private var font: Font? = null,
     private var fontSize: Float = 20f
-): ThemedEntity, MouseMotionListener {
+): ThemedEntity, StaticLayerEntity, ResizableEntity, MouseMotionListener {
     /** Tag for the axes entity. */
     override val tag = "AXES_ENTITY"
 
@@ -100,9 +101,28 @@ class AxesEntity
     /** Canvas height. */
     private var canvasHeight = FieldUtil.CANVAS_HEIGHT
 
+    /** The render scale the labels are sized for. */
+    private var renderScale = meepMeep.renderScale
+
     /** Buffered image for rendering the axes. */
     private lateinit var baseBufferedImage: BufferedImage
 
+    /**
+     * Image the axes are rasterized into at the zoom of the camera before
+     * being faded, reused between frames.
+     */
+    private var zoomedBufferedImage: BufferedImage? = null
+
+    /** Bounds of the X-axis with its ticks and labels, in canvas coordinates. */
+    private val xAxisBounds = Rectangle2D.Double()
+
+    /** Bounds of the Y-axis with its ticks and labels, in canvas coordinates. */
+    private val yAxisBounds = Rectangle2D.Double()
+
+    /** The version of the static layer, bumped whenever the axes are redrawn or faded. */
+    override var staticLayerVersion = 0
+        private set
+
     /** Current opacity of the axes. */
     private var currentOpacity = colorScheme.axisNormalOpacity
 
@@ -120,25 +140,86 @@ class AxesEntity
      * @param deltaTime The time since the last update.
      */
     override fun update(deltaTime: Long) {
+        // Only redraw the static layer while the opacity is animating
+        if (currentOpacity != animationController.value) staticLayerVersion++
         currentOpacity = animationController.value
         // TODO: fix issue that necessitates the controller needing a clip
         // Starts at like 30 or 28 for some reason
         //        println(currentOpacity)
-        animationController.update()
+        animationController.update(deltaTime)
     }
 
     /** Redraws the axes on the buffered image. */
     private fun redraw() {
-        // Get the default screen device and configuration
-        val environment = GraphicsEnvironment.getLocalGraphicsEnvironment()
-        val device = environment.defaultScreenDevice
-        val config = device.defaultConfiguration
+        // Invalidate the cached static layer
+        staticLayerVersion++
+
+        baseBufferedImage = renderAxes(canvasWidth, canvasHeight, renderScale, colorScheme, xAxisBounds, yAxisBounds)
+    }
 
+    /**
+     * Renders the axes into a new image covering the canvas.
+     *
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     * @param renderScale The render scale the labels are sized for.
+     * @param scheme The color scheme to draw with.
+     * @param xBounds Set to the bounds of the X-axis.
+     * @param yBounds Set to the bounds of the Y-axis.
+     * @return The image.
+     */
+    private fun renderAxes(
+        canvasWidth: Double,
+        canvasHeight: Double,
+        renderScale: Double,
+        scheme: ColorScheme,
+        xBounds: Rectangle2D,
+        yBounds: Rectangle2D
+    ): BufferedImage {
         // Create a compatible image for the axes
-        baseBufferedImage = config.createCompatibleImage(
-            canvasWidth.toInt(), canvasHeight.toInt(), Transparency.TRANSLUCENT
-        )
-        val gfx = baseBufferedImage.createGraphics()
+        val image = ImageUtil.createCompatibleImage(canvasWidth.toInt(), canvasHeight.toInt(), Transparency.TRANSLUCENT)
+        val gfx = image.createGraphics()
+
+        drawAxes(gfx, canvasWidth, canvasHeight, renderScale, scheme, xBounds, yBounds)
+        gfx.dispose()
+
+        return image
+    }
+
+    /**
+     * Draws the axes, their ticks and their labels in canvas coordinates.
+     *
+     * Only the given arguments are used, so the axes can be drawn for
+     * another canvas size off the loop thread.
+     *
+     * @param gfx The graphics context.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     * @param renderScale The render scale the labels are sized for.
+     * @param scheme The color scheme to draw with.
+     * @param xBounds Set to the bounds of the X-axis.
+     * @param yBounds Set to the bounds of the Y-axis.
+     */
+    private fun drawAxes(
+        gfx: Graphics2D,
+        canvasWidth: Double,
+        canvasHeight: Double,
+        renderScale: Double,
+        scheme: ColorScheme,
+        xBounds: Rectangle2D,
+        yBounds: Rectangle2D
+    ) {
+        // The bounds are gathered again while drawing
+        xBounds.setRect(0.0, 0.0, 0.0, 0.0)
+        yBounds.setRect(0.0, 0.0, 0.0, 0.0)
+
+        // Convert field coordinates and inches for the given canvas size
+        fun toScreen(x: Double, y: Double) = FieldUtil.fieldCoordsToScreenCoords(Vector2d(x, y), canvasWidth, canvasHeight)
+        fun toPixels(inches: Double) = FieldUtil.scaleInchesToPixel(inches, canvasWidth, canvasHeight)
+
+        // Labels keep their size in window pixels at any render scale
+        val numberFont = font?.deriveFont(fontSize * renderScale.toFloat())
+        val labelFont = font?.deriveFont(fontSize * 1.2f * renderScale.toFloat())
 
         // Set rendering hints for the graphics
         gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
@@ -148,43 +229,41 @@ class AxesEntity
         gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
 
         // Get the pixel thickness of the axes
-        val pixelThickness = axesThickness.scaleInToPixel()
+        val pixelThickness = toPixels(axesThickness)
 
         // Draw the X-axis
-        gfx.color = colorScheme.axisXColor
-        gfx.fillRect(
-            0, (canvasHeight / 2.0 - pixelThickness / 2).toInt(), canvasWidth.toInt(),
+        gfx.color = scheme.axisXColor
+        fillRect(
+            gfx, xBounds, 0, (canvasHeight / 2.0 - pixelThickness / 2).toInt(), canvasWidth.toInt(),
             pixelThickness.toInt()
         )
 
         // Draw the Y-axis
-        gfx.color = colorScheme.axisYColor
-        gfx.fillRect(
-            (canvasWidth / 2.0 - pixelThickness / 2).toInt(), 0, pixelThickness.toInt(),
+        gfx.color = scheme.axisYColor
+        fillRect(
+            gfx, yBounds, (canvasWidth / 2.0 - pixelThickness / 2).toInt(), 0, pixelThickness.toInt(),
             canvasHeight.toInt()
         )
 
         // Check and set the font
-        if (font != null) {
-            gfx.font = font
+        if (numberFont != null) {
+            gfx.font = numberFont
         }
         val fontMetrics = gfx.fontMetrics
 
         // Draw ticks and labels for the X-axis
-        gfx.color = colorScheme.axisXColor
+        gfx.color = scheme.axisXColor
         for (i in X_START..X_END step X_INCREMENTS) {
             if (i == 0) continue
 
             // Draw tick
-            val tickCoords = FieldUtil.fieldCoordsToScreenCoords(
-                Vector2d(i.toDouble() - (TICK_THICKNESS / 2), 0 + TICK_LENGTH / 2)
-            )
+            val tickCoords = toScreen(i.toDouble() - (TICK_THICKNESS / 2), 0 + TICK_LENGTH / 2)
 
-            gfx.fillRect(
-                tickCoords.x.toInt(),
+            fillRect(
+                gfx, xBounds, tickCoords.x.toInt(),
                 tickCoords.y.toInt(),
-                FieldUtil.scaleInchesToPixel(TICK_THICKNESS).toInt(),
-                FieldUtil.scaleInchesToPixel(TICK_LENGTH).toInt()
+                toPixels(TICK_THICKNESS).toInt(),
+                toPixels(TICK_LENGTH).toInt()
             )
 
             // Draw number
@@ -197,52 +276,42 @@ class AxesEntity
                 xOffsetIn = X_TEXT_NEGATIVE_X_OFFSET
             }
 
-            val textCoords = Vector2d(
-                i.toDouble() + xOffsetIn, X_TEXT_Y_OFFSET.scaleInToPixel()
-            ).toScreenCoord()
+            val textCoords = toScreen(i.toDouble() + xOffsetIn, toPixels(X_TEXT_Y_OFFSET))
 
-            gfx.drawString(i.toString(), (textCoords.x + xOffsetPx).toInt(), textCoords.y.toInt())
+            drawString(gfx, xBounds, i.toString(), (textCoords.x + xOffsetPx).toInt(), textCoords.y.toInt())
         }
 
         // Increase font size for the X labels
-        font = font?.deriveFont((fontSize * 1.2).toFloat())
-        gfx.font = font
-
-        val textNegativeXCoords = Vector2d(
-            (X_START + X_LABEL_X_OFFSET / 2), X_LABEL_Y_OFFSET
-        ).toScreenCoord()
-        val textPositiveXCoords = Vector2d(
-            (X_END - X_LABEL_X_OFFSET), X_LABEL_Y_OFFSET
-        ).toScreenCoord()
-
-        gfx.drawString(
-            "-x", textNegativeXCoords.x.toInt(),
+        if (labelFont != null) gfx.font = labelFont
+
+        val textNegativeXCoords = toScreen(X_START + X_LABEL_X_OFFSET / 2, X_LABEL_Y_OFFSET)
+        val textPositiveXCoords = toScreen(X_END - X_LABEL_X_OFFSET, X_LABEL_Y_OFFSET)
+
+        drawString(
+            gfx, xBounds, "-x", textNegativeXCoords.x.toInt(),
             (textNegativeXCoords.y + fontMetrics.ascent).toInt()
         )
-        gfx.drawString(
-            "x", (textPositiveXCoords.x - fontMetrics.stringWidth("x")).toInt(),
+        drawString(
+            gfx, xBounds, "x", (textPositiveXCoords.x - fontMetrics.stringWidth("x")).toInt(),
             (textPositiveXCoords.y + fontMetrics.ascent).toInt()
         )
 
         // Reset font size
-        font = font?.deriveFont(fontSize)
-        gfx.font = font
+        if (numberFont != null) gfx.font = numberFont
 
         // Draw ticks and labels for the Y-axis
-        gfx.color = colorScheme.axisYColor
+        gfx.color = scheme.axisYColor
         for (i in Y_START..Y_END step Y_INCREMENTS) {
             if (i == 0) continue
 
             // Draw tick
-            val coords = Vector2d(
-                0 - TICK_LENGTH / 2, i.toDouble() + (TICK_THICKNESS / 2)
-            ).toScreenCoord()
+            val coords = toScreen(0 - TICK_LENGTH / 2, i.toDouble() + (TICK_THICKNESS / 2))
 
-            gfx.fillRect(
-                coords.x.toInt(),
+            fillRect(
+                gfx, yBounds, coords.x.toInt(),
                 coords.y.toInt(),
-                FieldUtil.scaleInchesToPixel(TICK_LENGTH).toInt(),
-                FieldUtil.scaleInchesToPixel(TICK_THICKNESS).toInt()
+                toPixels(TICK_LENGTH).toInt(),
+                toPixels(TICK_THICKNESS).toInt()
             )
 
             // Draw number
@@ -255,51 +324,148 @@ class AxesEntity
                 yOffsetPx = -fontMetrics.height.toDouble()
             }
 
-            val textCoords = Vector2d(
-                Y_TEXT_X_OFFSET.scaleInToPixel(), i.toDouble() + yOffsetIn
-            ).toScreenCoord()
+            val textCoords = toScreen(toPixels(Y_TEXT_X_OFFSET), i.toDouble() + yOffsetIn)
 
-            gfx.drawString(
-                i.toString(), textCoords.x.toInt(), (textCoords.y - yOffsetPx / 2).toInt()
+            drawString(
+                gfx, yBounds, i.toString(), textCoords.x.toInt(), (textCoords.y - yOffsetPx / 2).toInt()
             )
         }
 
         // Increase font size for the Y labels
-        font = font?.deriveFont((fontSize * 1.2).toFloat())
-        gfx.font = font
-
-        val textNegativeYCoords = Vector2d(
-            Y_LABEL_X_OFFSET, (Y_START + Y_LABEL_Y_OFFSET / 2)
-        ).toScreenCoord()
-        val textPositiveYCoords = Vector2d(
-            Y_LABEL_X_OFFSET, (Y_END - Y_LABEL_Y_OFFSET)
-        ).toScreenCoord()
-
-        gfx.drawString(
-            "-y", (textNegativeYCoords.x - fontMetrics.stringWidth("-y")).toInt(),
+        if (labelFont != null) gfx.font = labelFont
+
+        val textNegativeYCoords = toScreen(Y_LABEL_X_OFFSET, Y_START + Y_LABEL_Y_OFFSET / 2)
+        val textPositiveYCoords = toScreen(Y_LABEL_X_OFFSET, Y_END - Y_LABEL_Y_OFFSET)
+
+        drawString(
+            gfx, yBounds, "-y", (textNegativeYCoords.x - fontMetrics.stringWidth("-y")).toInt(),
             (textNegativeYCoords.y).toInt()
         )
-        gfx.drawString(
-            "y", (textPositiveYCoords.x - fontMetrics.stringWidth("y")).toInt(),
+        drawString(
+            gfx, yBounds, "y", (textPositiveYCoords.x - fontMetrics.stringWidth("y")).toInt(),
             (textPositiveYCoords.y).toInt()
         )
     }
 
     /**
-     * Renders the axes on the given graphics context.
+     * Fills a rectangle, growing the given bounds to cover it.
+     *
+     * @param gfx The graphics context.
+     * @param bounds The bounds of the axis the rectangle belongs to.
+     * @param x The x coordinate of the rectangle.
+     * @param y The y coordinate of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    private fun fillRect(gfx: Graphics2D, bounds: Rectangle2D, x: Int, y: Int, width: Int, height: Int) {
+        gfx.fillRect(x, y, width, height)
+        addBounds(bounds, x.toDouble(), y.toDouble(), width.toDouble(), height.toDouble())
+    }
+
+    /**
+     * Draws a string, growing the given bounds to cover it.
+     *
+     * @param gfx The graphics context.
+     * @param bounds The bounds of the axis the string belongs to.
+     * @param text The string.
+     * @param x The x coordinate of the baseline of the string.
+     * @param y The y coordinate of the baseline of the string.
+     */
+    private fun drawString(gfx: Graphics2D, bounds: Rectangle2D, text: String, x: Int, y: Int) {
+        gfx.drawString(text, x, y)
+
+        val fontMetrics = gfx.fontMetrics
+        addBounds(
+            bounds, x.toDouble(), (y - fontMetrics.ascent).toDouble(),
+            fontMetrics.stringWidth(text).toDouble(), fontMetrics.height.toDouble()
+        )
+    }
+
+    /**
+     * Grows bounds to cover a rectangle, replacing them if they are still
+     * empty.
+     *
+     * @param bounds The bounds to grow.
+     * @param x The x coordinate of the rectangle.
+     * @param y The y coordinate of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    private fun addBounds(bounds: Rectangle2D, x: Double, y: Double, width: Double, height: Double) {
+        if (bounds.isEmpty) bounds.setRect(x, y, width, height)
+        else bounds.add(Rectangle2D.Double(x, y, width, height))
+    }
+
+    /**
+     * Checks whether either axis lies within the viewport.
+     *
+     * @param viewport The visible part of the canvas.
+     * @return True if either axis, its ticks or its labels may be visible.
+     */
+    override fun isInViewport(viewport: Rectangle2D): Boolean =
+        xAxisBounds.intersects(viewport) || yAxisBounds.intersects(viewport)
+
+    /**
+     * Renders the axes, faded to its current opacity, on the given graphics
+     * context.
      *
      * @param gfx The graphics context.
      * @param canvasWidth The width of the canvas.
      * @param canvasHeight The height of the canvas.
      */
-    override fun render(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
+    override fun renderStaticLayer(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
         val alpha = currentOpacity.toFloat()
         val resetComposite = gfx.composite
         val alphaComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)
 
+        if (meepMeep.camera.isIdentity) {
+            gfx.composite = alphaComposite
+            gfx.drawImage(baseBufferedImage, null, 0, 0)
+            gfx.composite = resetComposite
+            return
+        }
+
+        // Rasterize the axes at the zoom of the camera, then fade them as a whole like the unzoomed image
+        var image = zoomedBufferedImage
+        if (image == null || image.width != canvasWidth || image.height != canvasHeight) {
+            image = ImageUtil.createCompatibleImage(canvasWidth, canvasHeight, Transparency.TRANSLUCENT)
+            zoomedBufferedImage = image
+        }
+
+        // Only touch the part of the image where the visible axes are
+        val cameraTransform = meepMeep.camera.transform
+        val viewport = meepMeep.camera.viewport
+        val visibleBounds = Rectangle2D.Double()
+        for (bounds in arrayOf(xAxisBounds, yAxisBounds)) {
+            if (bounds.intersects(viewport)) addBounds(visibleBounds, bounds.x, bounds.y, bounds.width, bounds.height)
+        }
+        Rectangle2D.intersect(visibleBounds, viewport, visibleBounds)
+        val region = cameraTransform.createTransformedShape(visibleBounds).bounds.intersection(
+            Rectangle(0, 0, canvasWidth, canvasHeight)
+        )
+        if (region.isEmpty) return
+
+        val imageGfx = image.createGraphics()
+        imageGfx.clip(region)
+        imageGfx.composite = AlphaComposite.Clear
+        imageGfx.fillRect(region.x, region.y, region.width, region.height)
+        imageGfx.composite = AlphaComposite.SrcOver
+        imageGfx.transform = cameraTransform
+        drawAxes(imageGfx, this.canvasWidth, this.canvasHeight, renderScale, colorScheme, xAxisBounds, yAxisBounds)
+        imageGfx.dispose()
+
+        // The image is already transformed by the camera, so only keep the transform the camera was applied on
+        val viewTransform = gfx.transform
+        gfx.transform(cameraTransform.createInverse())
         gfx.composite = alphaComposite
-        gfx.drawImage(baseBufferedImage, null, 0, 0)
+        gfx.drawImage(
+            image,
+            region.x, region.y, region.x + region.width, region.y + region.height,
+            region.x, region.y, region.x + region.width, region.y + region.height,
+            null
+        )
         gfx.composite = resetComposite
+        gfx.transform = viewTransform
     }
 
     /**
@@ -309,9 +475,40 @@ class AxesEntity
      * @param canvasHeight The height of the canvas.
      */
     override fun setCanvasDimensions(canvasWidth: Double, canvasHeight: Double) {
-        if (this.canvasWidth != canvasWidth || this.canvasHeight != canvasHeight) redraw()
+        val isResized = this.canvasWidth != canvasWidth || this.canvasHeight != canvasHeight ||
+                renderScale != meepMeep.renderScale
         this.canvasWidth = canvasWidth
         this.canvasHeight = canvasHeight
+        renderScale = meepMeep.renderScale
+        if (isResized) redraw()
+    }
+
+    /**
+     * Renders the axes for a new canvas size off the loop thread.
+     *
+     * @param canvasWidth The new width of the canvas.
+     * @param canvasHeight The new height of the canvas.
+     * @param renderScale The render scale at the new size.
+     * @return The task swapping in the rendered axes.
+     */
+    override fun prepareCanvasDimensions(canvasWidth: Double, canvasHeight: Double, renderScale: Double): Runnable {
+        val scheme = colorScheme
+        val xBounds = Rectangle2D.Double()
+        val yBounds = Rectangle2D.Double()
+        val image = renderAxes(canvasWidth, canvasHeight, renderScale, scheme, xBounds, yBounds)
+
+        return Runnable {
+            // Axes whose scheme was switched in the meantime are redrawn once the size is set instead
+            if (colorScheme != scheme) return@Runnable
+
+            baseBufferedImage = image
+            xAxisBounds.setRect(xBounds)
+            yAxisBounds.setRect(yBounds)
+            this.canvasWidth = canvasWidth
+            this.canvasHeight = canvasHeight
+            this.renderScale = renderScale
+            staticLayerVersion++
+        }
     }
 
     /**
@@ -344,8 +541,11 @@ class AxesEntity
     override fun mouseMoved(me: MouseEvent?) {
         val hoverTargetPixels = HOVER_TARGET.scaleInToPixel()
 
-        if ((me!!.x > canvasWidth / 2 - hoverTargetPixels / 2 && me.x < canvasWidth / 2 + hoverTargetPixels / 2) ||
-                me.y > canvasHeight / 2 - hoverTargetPixels / 2 && me.y < canvasHeight / 2 + hoverTargetPixels / 2
+        // Hover the axes under the mouse through the camera
+        val mouse = meepMeep.mouseToCanvasCoords(me!!.x, me.y)
+
+        if ((mouse.x > canvasWidth / 2 - hoverTargetPixels / 2 && mouse.x < canvasWidth / 2 + hoverTargetPixels / 2) ||
+                mouse.y > canvasHeight / 2 - hoverTargetPixels / 2 && mouse.y < canvasHeight / 2 + hoverTargetPixels / 2
         ) {
             animationController.anim(colorScheme.axisHoverOpacity, 200.0, Ease.EASE_OUT_CUBIC)
         } else {
@@ -5,14 +5,17 @@ import com.acmerobotics.roadrunner.geometry.Vector2d
 import com.noahbres.meepmeep.MeepMeep
 import com.noahbres.meepmeep.core.colorscheme.ColorScheme
 import com.noahbres.meepmeep.core.util.FieldUtil
+import com.noahbres.meepmeep.core.util.ImageUtil
 import java.awt.Color
 import java.awt.Graphics2D
-import java.awt.GraphicsEnvironment
 import java.awt.RenderingHints
 import java.awt.Transparency
 import java.awt.geom.AffineTransform
+import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
 import kotlin.math.atan2
+import kotlin.math.hypot
+import kotlin.math.roundToInt
 
 /** Width of the bot's wheels. */
 private const val WHEEL_WIDTH = 0.2
@@ -57,15 +60,50 @@ open class BotEntity(
     /** Z-index for rendering order. */
     override var zIndex = 0
 
-    /** Canvas width. */
-    private var canvasWidth = FieldUtil.CANVAS_WIDTH
+    /**
+     * Width of the units the bot is drawn in, the canvas width when it was
+     * created. The bot is scaled to its size in pixels when rendered.
+     */
+    private val canvasWidth = FieldUtil.CANVAS_WIDTH
 
-    /** Canvas height. */
-    private var canvasHeight = FieldUtil.CANVAS_HEIGHT
+    /** Height of the units the bot is drawn in, the canvas height when it was created. */
+    private val canvasHeight = FieldUtil.CANVAS_HEIGHT
 
     /** Buffered image for rendering the bot. */
     private lateinit var baseBufferedImage: BufferedImage
 
+    /**
+     * Number of quantized headings to pre-render the bot at through the
+     * [MeepMeep.botSpriteCache], or null to draw it with its exact
+     * rotation every frame.
+     *
+     * Quantized sprites are drawn with a plain translated blit, which is
+     * much cheaper than a transformed one on software rendering, at the cost
+     * of rounding the heading to the closest step and the position to whole
+     * pixels. While the camera is zoomed in, the bot is drawn with its exact
+     * rotation regardless, so it is not scaled up from a sprite.
+     */
+    var spriteHeadingSteps: Int? = null
+        set(value) {
+            require(value == null || value > 0) { "The number of heading steps must be positive" }
+            field = value
+        }
+
+    /**
+     * Key identifying the look of the bot in the [MeepMeep.botSpriteCache],
+     * replaced whenever the bot is redrawn.
+     */
+    private lateinit var spriteLook: Any
+
+    /** The color of the bot's body with the opacity applied. */
+    private lateinit var colorAlphaBody: Color
+
+    /** The color of the bot's wheels with the opacity applied. */
+    private lateinit var colorAlphaWheel: Color
+
+    /** The color of the bot's direction line with the opacity applied. */
+    private lateinit var colorAlphaDirection: Color
+
     /** Initializes the bot entity and draws the bot. */
     init {
         redraw()
@@ -82,13 +120,11 @@ open class BotEntity(
 
     /** Redraws the bot on the buffered image. */
     private fun redraw() {
-        // Get the default screen device and configuration
-        val environment = GraphicsEnvironment.getLocalGraphicsEnvironment()
-        val device = environment.defaultScreenDevice
-        val config = device.defaultConfiguration
+        // Sprites of the previous look can no longer be reused
+        spriteLook = listOf(colorScheme, opacity, canvasWidth, canvasHeight)
 
         // Create a compatible image for the bot
-        baseBufferedImage = config.createCompatibleImage(
+        baseBufferedImage = ImageUtil.createCompatibleImage(
             canvasWidth.toInt(), canvasHeight.toInt(), Transparency.TRANSLUCENT
         )
 
@@ -98,19 +134,36 @@ open class BotEntity(
         gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
         gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
 
-        // Draw the bot's body
-        val colorAlphaBody = Color(
+        // Apply the opacity to the colors of the bot
+        colorAlphaBody = Color(
             colorScheme.botBodyColor.red, colorScheme.botBodyColor.green,
             colorScheme.botBodyColor.blue, (opacity * 255).toInt()
         )
+        colorAlphaWheel = Color(
+            colorScheme.botWheelColor.red, colorScheme.botWheelColor.green,
+            colorScheme.botBodyColor.blue, (opacity * 255).toInt()
+        )
+        colorAlphaDirection = Color(
+            colorScheme.botDirectionColor.red, colorScheme.botDirectionColor.green,
+            colorScheme.botDirectionColor.blue, (opacity * 255).toInt()
+        )
+
+        drawBot(gfx)
+        gfx.dispose()
+    }
+
+    /**
+     * Draws the bot filling a box of the size of the canvas, which is scaled
+     * down to the size of the bot when drawn.
+     *
+     * @param gfx The graphics context.
+     */
+    private fun drawBot(gfx: Graphics2D) {
+        // Draw the bot's body
         gfx.color = colorAlphaBody
         gfx.fillRect(0, 0, canvasWidth.toInt(), canvasHeight.toInt())
 
         // Draw the bot's wheels
-        val colorAlphaWheel = Color(
-            colorScheme.botWheelColor.red, colorScheme.botWheelColor.green,
-            colorScheme.botBodyColor.blue, (opacity * 255).toInt()
-        )
         gfx.color = colorAlphaWheel
         gfx.fillRect(
             (WHEEL_PADDING_X * canvasWidth).toInt(), (WHEEL_PADDING_Y * canvasHeight).toInt(),
@@ -133,10 +186,6 @@ open class BotEntity(
         )
 
         // Draw the bot's direction line
-        val colorAlphaDirection = Color(
-            colorScheme.botDirectionColor.red, colorScheme.botDirectionColor.green,
-            colorScheme.botDirectionColor.blue, (opacity * 255).toInt()
-        )
         gfx.color = colorAlphaDirection
         gfx.fillRect(
             (canvasWidth / 2 - DIRECTION_LINE_WIDTH * canvasWidth / 2).toInt(), 0,
@@ -156,6 +205,19 @@ open class BotEntity(
         // Convert field coordinates to screen coordinates
         val coords = FieldUtil.fieldCoordsToScreenCoords(Vector2d(pose.x, pose.y))
 
+        val steps = spriteHeadingSteps
+        if (steps != null && meepMeep.camera.isIdentity) {
+            // Blit the sprite pre-rendered at the closest heading step
+            val sprite = meepMeep.botSpriteCache.get(
+                spriteLook,
+                FieldUtil.scaleInchesToPixel(width), FieldUtil.scaleInchesToPixel(height),
+                steps, atan2(pose.headingVec().x, pose.headingVec().y)
+            ) { baseBufferedImage }
+
+            gfx.drawImage(sprite.image, coords.x.roundToInt() + sprite.offsetX, coords.y.roundToInt() + sprite.offsetY, null)
+            return
+        }
+
         // Create a transformation for the bot's position and orientation
         val transform = AffineTransform()
         transform.translate(coords.x, coords.y)
@@ -169,19 +231,41 @@ open class BotEntity(
             FieldUtil.scaleInchesToPixel(height) / canvasHeight
         )
 
+        // Scaling the image up is slow and blurry while zoomed in, so draw the bot's shapes instead
+        if (!meepMeep.camera.isIdentity) {
+            val cameraTransform = gfx.transform
+            gfx.transform(transform)
+            drawBot(gfx)
+            gfx.transform = cameraTransform
+            return
+        }
+
         // Draw the bot image with the applied transformation
         gfx.drawImage(baseBufferedImage, transform, null)
     }
 
     /**
-     * Sets the dimensions of the canvas.
+     * Sets the dimensions of the canvas. The bot keeps the units it is drawn
+     * in and is scaled to its size on the new canvas when rendered, so it
+     * does not have to be redrawn.
      *
      * @param canvasWidth The width of the canvas.
      * @param canvasHeight The height of the canvas.
      */
-    override fun setCanvasDimensions(canvasWidth: Double, canvasHeight: Double) {
-        this.canvasWidth = canvasWidth
-        this.canvasHeight = canvasHeight
+    override fun setCanvasDimensions(canvasWidth: Double, canvasHeight: Double) {}
+
+    /**
+     * Checks whether the bot lies within the viewport, using the circle its
+     * corners sweep when it rotates.
+     *
+     * @param viewport The visible part of the canvas.
+     * @return True if the bot may be visible.
+     */
+    override fun isInViewport(viewport: Rectangle2D): Boolean {
+        val coords = FieldUtil.fieldCoordsToScreenCoords(Vector2d(pose.x, pose.y))
+        val radius = FieldUtil.scaleInchesToPixel(hypot(width, height) / 2)
+
+        return viewport.intersects(coords.x - radius, coords.y - radius, 2 * radius, 2 * radius)
     }
 
     /**
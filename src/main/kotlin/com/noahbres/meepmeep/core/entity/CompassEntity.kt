@@ -7,16 +7,15 @@ import com.noahbres.meepmeep.core.anim.Ease
 import com.noahbres.meepmeep.core.colorscheme.ColorScheme
 import com.noahbres.meepmeep.core.scaleInToPixel
 import com.noahbres.meepmeep.core.toScreenCoord
+import com.noahbres.meepmeep.core.util.AssetManager
 import com.noahbres.meepmeep.core.util.FieldUtil
+import com.noahbres.meepmeep.core.util.ImageUtil
 import java.awt.AlphaComposite
 import java.awt.Graphics2D
-import java.awt.GraphicsEnvironment
-import java.awt.Image
 import java.awt.Transparency
 import java.awt.event.MouseEvent
 import java.awt.event.MouseMotionListener
 import java.awt.image.BufferedImage
-import javax.imageio.ImageIO
 
 /**
  * Represents a compass entity in the MeepMeep simulation.
@@ -33,7 +32,7 @@ class CompassEntity(
     private val width: Double,
     private val height: Double,
     private val pos: Vector2d
-): ThemedEntity, MouseMotionListener {
+): ThemedEntity, StaticLayerEntity, ResizableEntity, MouseMotionListener {
     /** Tag for the compass entity. */
     override val tag = "COMPASS_ENTITY"
 
@@ -49,72 +48,119 @@ class CompassEntity(
     /** Buffered image for rendering the compass. */
     private lateinit var image: BufferedImage
 
+    /** The version of the static layer, bumped whenever the compass is are redrawn or faded. */
+    override var staticLayerVersion = 0
+        private set
+
     /** Current opacity of the compass. */
     private var currentOpacity = colorScheme.axisNormalOpacity
 
     /** Animation controller for the compass opacity. */
     private val animationController = AnimationController(currentOpacity).clip(0.0, 1.0)
 
-    /** Light background image for the compass. */
-    private var bgLight: Image
+    /** Light background image for the compass, null until it is decoded. */
+    @Volatile
+    private var bgLight: BufferedImage? = null
+
+    /** Dark background image for the compass, null until it is decoded. */
+    @Volatile
+    private var bgDark: BufferedImage? = null
 
-    /** Dark background image for the compass. */
-    private var bgDark: Image
+    /** Flag indicating a background image finished decoding and the compass has to be redrawn. */
+    @Volatile
+    private var isRedrawPending = false
 
     /** Initializes the compass entity and draws the compass. */
     init {
-        val classLoader = Thread.currentThread().contextClassLoader
-
-        // Initialize the light background image
-        bgLight = ImageIO.read(classLoader.getResourceAsStream("misc/simple-compass-black.png"))
+        // Decode the light and dark background images in the background
+        val lightImage = AssetManager.shared.load("misc/simple-compass-black.png")
+        val darkImage = AssetManager.shared.load("misc/simple-compass-white.png")
+
+        if (meepMeep.isHeadless) {
+            // Wait for the images so rendered frames do not depend on timing
+            bgLight = lightImage.join()
+            bgDark = darkImage.join()
+        } else {
+            // Redraw on the loop thread once an image is decoded
+            lightImage.whenComplete { image, error -> onImageLoaded(error) { bgLight = image } }
+            darkImage.whenComplete { image, error -> onImageLoaded(error) { bgDark = image } }
+        }
 
-        // Initialize the dark background image
-        bgDark = ImageIO.read(classLoader.getResourceAsStream("misc/simple-compass-white.png"))
         redraw()
     }
 
+    /**
+     * Stores a decoded background image and schedules a redraw.
+     *
+     * @param error The error the image failed to decode with, if any.
+     * @param store Stores the decoded image.
+     */
+    private fun onImageLoaded(error: Throwable?, store: () -> Unit) {
+        if (error != null) {
+            error.printStackTrace()
+            return
+        }
+
+        store()
+        isRedrawPending = true
+    }
+
     /**
      * Updates the axes entity.
      *
      * @param deltaTime The time elapsed since the last update.
      */
     override fun update(deltaTime: Long) {
+        // Redraw once a background image finished decoding
+        if (isRedrawPending) {
+            isRedrawPending = false
+            redraw()
+        }
+
+        // Only redraw the static layer while the opacity is animating
+        if (currentOpacity != animationController.value) staticLayerVersion++
         currentOpacity = animationController.value
-        animationController.update()
+        animationController.update(deltaTime)
     }
 
     /** Draws the compass on the buffered image. */
     private fun redraw() {
-        // Get the default screen device and configuration
-        val environment = GraphicsEnvironment.getLocalGraphicsEnvironment()
-        val device = environment.defaultScreenDevice
-        val config = device.defaultConfiguration
-
-        // Create a compatible image for the compass
-        image = config.createCompatibleImage(
-            width.scaleInToPixel().toInt(),
-            height.scaleInToPixel().toInt(),
-            Transparency.TRANSLUCENT
-        )
-        val gfx = image.createGraphics()
+        // Invalidate the cached static layer
+        staticLayerVersion++
 
-        // Scale the compass image to the correct size based on the color scheme
-        val scaled = (if (colorScheme.isDark) bgDark else bgLight).getScaledInstance(
-            width.scaleInToPixel().toInt(), height.scaleInToPixel().toInt(), Image.SCALE_SMOOTH
-        )
+        image = renderCompass(canvasWidth, canvasHeight, if (colorScheme.isDark) bgDark else bgLight)
+    }
+
+    /**
+     * Scales the compass image to its size on a canvas, leaving it blank
+     * until it is decoded.
+     *
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     * @param source The decoded compass image matching the color scheme, or
+     *    null if it is not decoded yet.
+     * @return The scaled image.
+     */
+    private fun renderCompass(canvasWidth: Double, canvasHeight: Double, source: BufferedImage?): BufferedImage {
+        val imageWidth = FieldUtil.scaleInchesToPixel(width, canvasWidth, canvasHeight).toInt()
+        val imageHeight = FieldUtil.scaleInchesToPixel(height, canvasWidth, canvasHeight).toInt()
 
-        // Draw the scaled compass image
-        gfx.drawImage(scaled, 0, 0, null)
+        return if (source != null) {
+            ImageUtil.scaleImage(source, imageWidth, imageHeight)
+        } else {
+            ImageUtil.createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT)
+        }
     }
 
     /**
-     * Renders the compass on the given graphics context.
+     * Renders the compass, faded to its current opacity, on the given graphics
+     * context.
      *
      * @param gfx The graphics context.
      * @param canvasWidth The width of the canvas.
      * @param canvasHeight The height of the canvas.
      */
-    override fun render(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
+    override fun renderStaticLayer(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
         val alpha = currentOpacity.toFloat()
         val resetComposite = gfx.composite
         val alphaComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)
@@ -136,9 +182,34 @@ class CompassEntity(
      * @param canvasHeight The height of the canvas.
      */
     override fun setCanvasDimensions(canvasWidth: Double, canvasHeight: Double) {
-        if (this.canvasWidth != canvasWidth || this.canvasHeight != canvasHeight) redraw()
+        val isResized = this.canvasWidth != canvasWidth || this.canvasHeight != canvasHeight
         this.canvasWidth = canvasWidth
         this.canvasHeight = canvasHeight
+        if (isResized) redraw()
+    }
+
+    /**
+     * Scales the compass for a new canvas size off the loop thread.
+     *
+     * @param canvasWidth The new width of the canvas.
+     * @param canvasHeight The new height of the canvas.
+     * @param renderScale The render scale at the new size.
+     * @return The task swapping in the scaled compass.
+     */
+    override fun prepareCanvasDimensions(canvasWidth: Double, canvasHeight: Double, renderScale: Double): Runnable {
+        val scheme = colorScheme
+        val source = if (scheme.isDark) bgDark else bgLight
+        val scaledImage = renderCompass(canvasWidth, canvasHeight, source)
+
+        return Runnable {
+            // A compass whose scheme or image changed in the meantime is redrawn once the size is set instead
+            if (colorScheme != scheme || source !== (if (scheme.isDark) bgDark else bgLight)) return@Runnable
+
+            image = scaledImage
+            this.canvasWidth = canvasWidth
+            this.canvasHeight = canvasHeight
+            staticLayerVersion++
+        }
     }
 
     /**
@@ -159,7 +230,10 @@ class CompassEntity(
      * @param me The mouse event.
      */
     override fun mouseMoved(me: MouseEvent?) {
-        if (me!!.x > pos.toScreenCoord().x - width.scaleInToPixel() / 2 && me.x < pos.toScreenCoord().x + width.scaleInToPixel() / 2 && me.y > pos.toScreenCoord().y - height.scaleInToPixel() / 2 && me.y < pos.toScreenCoord().y + height.scaleInToPixel() / 2) {
+        // Hover the compass under the mouse through the camera
+        val mouse = meepMeep.mouseToCanvasCoords(me!!.x, me.y)
+
+        if (mouse.x > pos.toScreenCoord().x - width.scaleInToPixel() / 2 && mouse.x < pos.toScreenCoord().x + width.scaleInToPixel() / 2 && mouse.y > pos.toScreenCoord().y - height.scaleInToPixel() / 2 && mouse.y < pos.toScreenCoord().y + height.scaleInToPixel() / 2) {
             animationController.anim(colorScheme.axisHoverOpacity, 200.0, Ease.EASE_OUT_CUBIC)
         } else {
             animationController.anim(colorScheme.axisNormalOpacity, 200.0, Ease.EASE_OUT_CUBIC)
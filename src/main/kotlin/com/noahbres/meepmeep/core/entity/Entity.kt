@@ -2,6 +2,7 @@ package com.noahbres.meepmeep.core.entity
 
 import com.noahbres.meepmeep.MeepMeep
 import java.awt.Graphics2D
+import java.awt.geom.Rectangle2D
 
 /** Represents a generic entity in the MeepMeep application. */
 interface Entity {
@@ -37,4 +38,14 @@ interface Entity {
      * @param canvasHeight The height of the canvas.
      */
     fun setCanvasDimensions(canvasWidth: Double, canvasHeight: Double)
+
+    /**
+     * Checks whether the entity may draw within the visible part of the
+     * canvas. Entities outside of it are culled while the camera is zoomed
+     * in. Entities are never culled by default.
+     *
+     * @param viewport The visible part of the canvas, in canvas coordinates.
+     * @return False only if the entity draws nothing within the viewport.
+     */
+    fun isInViewport(viewport: Rectangle2D): Boolean = true
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.noahbres.meepmeep.core.entity
+
+/**
+ * Represents an entity caching layers rendered at the size of the canvas,
+ * which are too slow to redraw on the loop thread while the window is
+ * resized.
+ *
+ * Once a resize settles, [com.noahbres.meepmeep.MeepMeep] calls
+ * [prepareCanvasDimensions] on a background thread, then runs the returned
+ * task on the loop thread right before [setCanvasDimensions] is called with
+ * the same size, which has nothing left to redraw.
+ */
+interface ResizableEntity : Entity {
+    /**
+     * Renders the cached layers of the entity for a new canvas size, without
+     * touching the state the entity is rendered from.
+     *
+     * @param canvasWidth The new width of the canvas.
+     * @param canvasHeight The new height of the canvas.
+     * @param renderScale The number of canvas pixels per window pixel at the
+     *    new size.
+     * @return The task swapping in the rendered layers, run on the loop
+     *    thread.
+     */
+    fun prepareCanvasDimensions(canvasWidth: Double, canvasHeight: Double, renderScale: Double): Runnable
+}
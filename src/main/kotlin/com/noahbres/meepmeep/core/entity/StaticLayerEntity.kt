@@ -0,0 +1,51 @@
+package com.noahbres.meepmeep.core.entity
+
+import java.awt.Graphics2D
+
+/**
+ * Represents an entity whose rendering is split into a static layer, which
+ * rarely changes, and a dynamic layer drawn every frame.
+ *
+ * The static layers of all entities are flattened together with the
+ * background into one cached image by the
+ * [com.noahbres.meepmeep.core.ui.LayerCompositor], which is only redrawn
+ * when one of them changes. The cached image is drawn beneath the dynamic
+ * layers and the entities without a static layer.
+ */
+interface StaticLayerEntity : Entity {
+    /**
+     * The version of the static layer. Must change whenever the content
+     * drawn by [renderStaticLayer] changes, so the cached image is redrawn.
+     */
+    val staticLayerVersion: Int
+
+    /**
+     * Renders the static layer of the entity on the given graphics context.
+     *
+     * @param gfx The graphics context.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    fun renderStaticLayer(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int)
+
+    /**
+     * Renders the dynamic layer of the entity on the given graphics context.
+     *
+     * @param gfx The graphics context.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    fun renderDynamicLayer(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {}
+
+    /**
+     * Renders both layers of the entity on the given graphics context.
+     *
+     * @param gfx The graphics context.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    override fun render(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
+        renderStaticLayer(gfx, canvasWidth, canvasHeight)
+        renderDynamicLayer(gfx, canvasWidth, canvasHeight)
+    }
+}
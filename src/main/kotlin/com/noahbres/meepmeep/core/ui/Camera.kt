@@ -0,0 +1,202 @@
+package com.noahbres.meepmeep.core.ui
+
+import com.acmerobotics.roadrunner.geometry.Vector2d
+import com.noahbres.meepmeep.core.entity.BotEntity
+import com.noahbres.meepmeep.core.toScreenCoord
+import java.awt.geom.AffineTransform
+import java.awt.geom.Point2D
+import java.awt.geom.Rectangle2D
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.round
+
+/**
+ * Camera zooming into and panning across the canvas.
+ *
+ * Entities keep drawing in canvas coordinates through
+ * [com.noahbres.meepmeep.core.util.FieldUtil]. The camera maps the whole
+ * canvas to the view with a single [transform], which the
+ * [LayerCompositor] applies to the graphics context before rendering. At
+ * a zoom of 1 the camera shows the whole canvas and the transform is the
+ * identity.
+ *
+ * The camera is only meant to be used from the loop thread. Input handlers
+ * queue their changes through
+ * [com.noahbres.meepmeep.MeepMeep.runOnLoopThread].
+ */
+class Camera {
+    companion object {
+        /** The smallest zoom, showing the whole canvas. */
+        const val MIN_ZOOM = 1.0
+
+        /** The largest zoom. */
+        const val MAX_ZOOM = 20.0
+    }
+
+    /** The zoom of the camera, from [MIN_ZOOM] to [MAX_ZOOM]. */
+    var zoom = MIN_ZOOM
+        private set
+
+    /** The bot the camera is centered on, or null if it is not following a bot. */
+    var followTarget: BotEntity? = null
+        private set
+
+    /**
+     * The version of the camera, bumped whenever the [transform] changes,
+     * so cached layers drawn through it can be redrawn.
+     */
+    var version = 0
+        private set
+
+    /** The transform mapping canvas coordinates to view coordinates. */
+    val transform = AffineTransform()
+
+    /** The transform mapping view coordinates to canvas coordinates. */
+    private val inverseTransform = AffineTransform()
+
+    /** The width of the view in pixels. */
+    private var viewWidth = 0.0
+
+    /** The height of the view in pixels. */
+    private var viewHeight = 0.0
+
+    /** The x coordinate of the canvas point at the center of the view. */
+    private var focusX = 0.0
+
+    /** The y coordinate of the canvas point at the center of the view. */
+    private var focusY = 0.0
+
+    /** Whether the camera shows the whole canvas without any transform. */
+    val isIdentity get() = zoom == MIN_ZOOM
+
+    /**
+     * The part of the canvas visible in the view, in canvas coordinates.
+     * Entities outside of it are culled.
+     */
+    val viewport: Rectangle2D.Double = Rectangle2D.Double()
+
+    /**
+     * Sets the size of the view, which is also the size of the canvas shown
+     * at a zoom of 1.
+     *
+     * @param width The width of the view in pixels.
+     * @param height The height of the view in pixels.
+     */
+    fun setViewSize(width: Double, height: Double) {
+        if (width == viewWidth && height == viewHeight) return
+
+        // Keep looking at the same relative point of the canvas
+        val relativeX = if (viewWidth > 0) focusX / viewWidth else 0.5
+        val relativeY = if (viewHeight > 0) focusY / viewHeight else 0.5
+
+        viewWidth = width
+        viewHeight = height
+        setFocus(relativeX * width, relativeY * height)
+    }
+
+    /**
+     * Zooms by a factor, keeping the canvas point under the given view point
+     * in place.
+     *
+     * @param viewX The x coordinate of the view point, such as the mouse.
+     * @param viewY The y coordinate of the view point.
+     * @param factor The factor to multiply the zoom by.
+     */
+    fun zoomAt(viewX: Double, viewY: Double, factor: Double) {
+        val anchor = viewToCanvas(viewX, viewY)
+        val newZoom = max(MIN_ZOOM, min(MAX_ZOOM, zoom * factor))
+        if (newZoom == zoom) return
+
+        zoom = newZoom
+
+        // Followed bots stay centered, otherwise move the focus so the anchor stays under the view point
+        if (followTarget == null) {
+            setFocus(anchor.x - (viewX - viewWidth / 2) / zoom, anchor.y - (viewY - viewHeight / 2) / zoom)
+        } else {
+            setFocus(focusX, focusY)
+        }
+    }
+
+    /**
+     * Pans the camera, stopping to follow a bot.
+     *
+     * @param viewDeltaX The distance to move the canvas by horizontally, in
+     *    view pixels.
+     * @param viewDeltaY The distance to move the canvas by vertically, in
+     *    view pixels.
+     */
+    fun panBy(viewDeltaX: Double, viewDeltaY: Double) {
+        followTarget = null
+        setFocus(focusX - viewDeltaX / zoom, focusY - viewDeltaY / zoom)
+    }
+
+    /**
+     * Centers the camera on a bot every frame.
+     *
+     * @param bot The bot to follow, or null to stop following.
+     */
+    fun follow(bot: BotEntity?) {
+        followTarget = bot
+        update()
+    }
+
+    /** Shows the whole canvas again and stops following. */
+    fun reset() {
+        followTarget = null
+        zoom = MIN_ZOOM
+        setFocus(viewWidth / 2, viewHeight / 2)
+    }
+
+    /** Moves the camera to the followed bot, if any. Called once per frame. */
+    fun update() {
+        val target = followTarget ?: return
+
+        val center = target.pose.vec().toScreenCoord()
+        setFocus(center.x, center.y)
+    }
+
+    /**
+     * Maps a point of the view, such as the mouse position, to the canvas.
+     *
+     * @param viewX The x coordinate of the point in the view.
+     * @param viewY The y coordinate of the point in the view.
+     * @return The point in canvas coordinates.
+     */
+    fun viewToCanvas(viewX: Double, viewY: Double): Vector2d {
+        val point = inverseTransform.transform(Point2D.Double(viewX, viewY), null)
+
+        return Vector2d(point.x, point.y)
+    }
+
+    /**
+     * Sets the canvas point at the center of the view, clamped so the view
+     * never leaves the canvas, and updates the transforms.
+     *
+     * @param x The x coordinate of the canvas point.
+     * @param y The y coordinate of the canvas point.
+     */
+    private fun setFocus(x: Double, y: Double) {
+        val halfWidth = viewWidth / (2 * zoom)
+        val halfHeight = viewHeight / (2 * zoom)
+
+        focusX = max(halfWidth, min(viewWidth - halfWidth, x))
+        focusY = max(halfHeight, min(viewHeight - halfHeight, y))
+
+        // Snap the translation to whole view pixels, so cached tiles line up with the vector layers
+        val newTransform = AffineTransform.getTranslateInstance(
+            round(viewWidth / 2 - zoom * focusX), round(viewHeight / 2 - zoom * focusY)
+        )
+        newTransform.scale(zoom, zoom)
+
+        // Skip unchanged transforms, so following a bot at rest does not invalidate cached layers
+        if (newTransform == transform && version > 0) return
+
+        transform.setTransform(newTransform)
+        inverseTransform.setTransform(transform)
+        inverseTransform.invert()
+
+        viewport.setRect(-transform.translateX / zoom, -transform.translateY / zoom, 2 * halfWidth, 2 * halfHeight)
+
+        version++
+    }
+}
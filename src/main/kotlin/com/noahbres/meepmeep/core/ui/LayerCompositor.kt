@@ -0,0 +1,303 @@
+package com.noahbres.meepmeep.core.ui
+
+import com.noahbres.meepmeep.core.entity.Entity
+import com.noahbres.meepmeep.core.entity.StaticLayerEntity
+import com.noahbres.meepmeep.core.util.FrameProfiler
+import com.noahbres.meepmeep.core.util.ImagePyramid
+import com.noahbres.meepmeep.core.util.ImageUtil
+import com.noahbres.meepmeep.core.util.TiledImageCache
+import java.awt.AlphaComposite
+import java.awt.Graphics2D
+import java.awt.RenderingHints
+import java.awt.Transparency
+import java.awt.image.BufferedImage
+
+/**
+ * Composites the entity list onto the canvas in two layers.
+ *
+ * The background and the static layers of every [StaticLayerEntity] are
+ * flattened, in z-order, into a single cached image. The cache is only
+ * redrawn when the background, the canvas size, the set of static layer
+ * entities or one of their [StaticLayerEntity.staticLayerVersion]s changes.
+ * Every frame the cached image is drawn once, followed by the dynamic
+ * layers and the remaining entities in z-order.
+ *
+ * As a consequence, static content is always drawn beneath dynamic
+ * content, regardless of the z-index of the entities it belongs to.
+ *
+ * Both layers are drawn through the [Camera] transform. The cache is
+ * redrawn whenever the camera moves, so static layers are rasterized at
+ * the resolution of the current zoom instead of being scaled up. The
+ * background is scaled up through a [TiledImageCache], so moving the
+ * camera only rasterizes the tiles scrolling into view, from its full
+ * resolution source when one is given. While the camera keeps moving, such
+ * as when following a bot, redrawing the cache would be wasted every
+ * frame, so the static layers are drawn straight onto the canvas until it
+ * stops. While zoomed in, entities outside of the
+ * [Camera.viewport] are culled.
+ */
+class LayerCompositor {
+    /** The cached image holding the background and the static layers. */
+    private var cacheImage: BufferedImage? = null
+
+    /** The static layer entities drawn into the cache, in z-order. */
+    private val cachedEntities = mutableListOf<StaticLayerEntity>()
+
+    /** The static layer versions of the [cachedEntities] when the cache was drawn. */
+    private var cachedVersions = IntArray(16)
+
+    /** The background drawn into the cache. */
+    private var cachedBackground: BufferedImage? = null
+
+    /** The pyramid of the background source drawn into the cache. */
+    private var cachedBackgroundSource: ImagePyramid? = null
+
+    /** The camera version the cache was drawn at. */
+    private var cachedCameraVersion = 0
+
+    /** The camera version of the previous frame. */
+    private var lastCameraVersion = 0
+
+    /** Tiles of the background scaled up by the zoom of the camera. */
+    private val backgroundTiles = TiledImageCache()
+
+    /** Flag forcing the cache to be redrawn on the next frame. */
+    private var isInvalidated = true
+
+    /** Forces the cached static layers to be redrawn on the next frame. */
+    fun invalidate() {
+        isInvalidated = true
+    }
+
+    /**
+     * Renders the background and the entity list on the given graphics
+     * context, redrawing the cached static layers first if they changed.
+     *
+     * @param gfx The graphics context.
+     * @param entityList The entities to render, sorted by z-index.
+     * @param background The background image, or null if there is none.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     * @param profiler The profiler to record the layer and entity render
+     *    times with, if any.
+     * @param camera The camera to render through, or null to render the
+     *    whole canvas.
+     * @param backgroundSource The pyramid of the full resolution image the
+     *    background was scaled down from, which zoomed in views are
+     *    rasterized from, or null to scale up the background itself.
+     * @param backgroundAlpha The alpha transparency level baked into the
+     *    background, which its source is drawn with.
+     */
+    @JvmOverloads
+    fun render(
+        gfx: Graphics2D,
+        entityList: List<Entity>,
+        background: BufferedImage?,
+        canvasWidth: Int,
+        canvasHeight: Int,
+        profiler: FrameProfiler? = null,
+        camera: Camera? = null,
+        backgroundSource: ImagePyramid? = null,
+        backgroundAlpha: Float = 1.0f
+    ) {
+        // The camera only has to be applied while zoomed in
+        val zoomedCamera = if (camera != null && !camera.isIdentity) camera else null
+
+        // The cache would be stale again next frame while the camera moves
+        val isCameraMoving = zoomedCamera != null && zoomedCamera.version != lastCameraVersion
+        lastCameraVersion = camera?.version ?: 0
+
+        if (isCameraMoving) {
+            // Draw the static layers straight onto the canvas
+            drawStaticLayers(
+                gfx, entityList, background, canvasWidth, canvasHeight, zoomedCamera, backgroundSource, backgroundAlpha
+            )
+        } else {
+            if (isCacheStale(entityList, background, backgroundSource, canvasWidth, canvasHeight, camera)) {
+                redrawCache(
+                    entityList, background, canvasWidth, canvasHeight, zoomedCamera, backgroundSource, backgroundAlpha
+                )
+                cachedCameraVersion = camera?.version ?: 0
+            }
+
+            // Draw the flattened static layers
+            gfx.drawImage(cacheImage, 0, 0, null)
+        }
+
+        profiler?.endPhase(FrameProfiler.Phase.STATIC_LAYERS)
+
+        // Only time every entity while the profiler is recording
+        val isProfiling = profiler != null && profiler.isEnabled
+
+        // Draw the dynamic layers through the camera, restoring the transform for the overlays drawn afterwards
+        val viewTransform = gfx.transform
+        if (zoomedCamera != null) applyCamera(gfx, zoomedCamera)
+
+        // Draw the dynamic layers and the entities without a static layer on top
+        for (entity in entityList) {
+            if (zoomedCamera != null && !entity.isInViewport(zoomedCamera.viewport)) continue
+
+            val startTime = if (isProfiling) System.nanoTime() else 0L
+
+            if (entity is StaticLayerEntity) entity.renderDynamicLayer(gfx, canvasWidth, canvasHeight)
+            else entity.render(gfx, canvasWidth, canvasHeight)
+
+            if (isProfiling) profiler!!.recordEntity(entity.tag, System.nanoTime() - startTime)
+        }
+
+        gfx.transform = viewTransform
+
+        profiler?.endPhase(FrameProfiler.Phase.ENTITIES)
+    }
+
+    /**
+     * Checks whether the cached image no longer matches the background, the
+     * canvas size or the static layers of the entity list.
+     *
+     * @return True if the cache has to be redrawn.
+     */
+    private fun isCacheStale(
+        entityList: List<Entity>,
+        background: BufferedImage?,
+        backgroundSource: ImagePyramid?,
+        canvasWidth: Int,
+        canvasHeight: Int,
+        camera: Camera?
+    ): Boolean {
+        val image = cacheImage ?: return true
+
+        if (isInvalidated || image.width != canvasWidth || image.height != canvasHeight) return true
+        if (background !== cachedBackground || backgroundSource !== cachedBackgroundSource) return true
+        if ((camera?.version ?: 0) != cachedCameraVersion) return true
+
+        // Walk the static layer entities in order, comparing them against the cached ones
+        var index = 0
+        for (entity in entityList) {
+            if (entity !is StaticLayerEntity) continue
+
+            if (index >= cachedEntities.size || cachedEntities[index] !== entity) return true
+            if (cachedVersions[index] != entity.staticLayerVersion) return true
+
+            index++
+        }
+
+        return index != cachedEntities.size
+    }
+
+    /** Redraws the background and the static layers into the cached image. */
+    private fun redrawCache(
+        entityList: List<Entity>,
+        background: BufferedImage?,
+        canvasWidth: Int,
+        canvasHeight: Int,
+        camera: Camera?,
+        backgroundSource: ImagePyramid?,
+        backgroundAlpha: Float
+    ) {
+        // Reuse the cached image unless the canvas was resized
+        var image = cacheImage
+        if (image == null || image.width != canvasWidth || image.height != canvasHeight) {
+            image = ImageUtil.createCompatibleImage(canvasWidth, canvasHeight, Transparency.TRANSLUCENT)
+            cacheImage = image
+        }
+
+        val gfx = image.createGraphics()
+        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
+
+        // Clear the previous contents to transparent
+        gfx.composite = AlphaComposite.Clear
+        gfx.fillRect(0, 0, canvasWidth, canvasHeight)
+
+        // Nothing was drawn beneath the background tiles, so they can be copied instead of blended
+        gfx.composite = AlphaComposite.Src
+        drawStaticLayers(gfx, entityList, background, canvasWidth, canvasHeight, camera, backgroundSource, backgroundAlpha)
+
+        cachedEntities.clear()
+
+        // Remember the static layer versions the cache was drawn at
+        for (entity in entityList) {
+            if (entity !is StaticLayerEntity) continue
+
+            if (cachedEntities.size == cachedVersions.size) cachedVersions = cachedVersions.copyOf(cachedVersions.size * 2)
+            cachedVersions[cachedEntities.size] = entity.staticLayerVersion
+            cachedEntities.add(entity)
+        }
+
+        gfx.dispose()
+
+        cachedBackground = background
+        cachedBackgroundSource = backgroundSource
+        isInvalidated = false
+    }
+
+    /**
+     * Draws the background and the static layers in z-order, through the
+     * camera if it is zoomed in.
+     *
+     * @param gfx The graphics context, whose composite is used for the
+     *    background.
+     * @param entityList The entities to draw the static layers of.
+     * @param background The background image, or null if there is none.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     * @param camera The zoomed in camera, or null to draw the whole canvas.
+     * @param backgroundSource The pyramid of the background source, or null
+     *    to scale up the background itself.
+     * @param backgroundAlpha The alpha transparency level baked into the
+     *    background.
+     */
+    private fun drawStaticLayers(
+        gfx: Graphics2D,
+        entityList: List<Entity>,
+        background: BufferedImage?,
+        canvasWidth: Int,
+        canvasHeight: Int,
+        camera: Camera?,
+        backgroundSource: ImagePyramid?,
+        backgroundAlpha: Float
+    ) {
+        val viewTransform = gfx.transform
+
+        // Draw the background, which already has its alpha transparency baked in
+        if (camera == null) {
+            if (background != null) gfx.drawImage(background, 0, 0, null)
+
+            // The tiles are only needed while zoomed in
+            backgroundTiles.clear()
+        } else {
+            // The camera translation is snapped to whole pixels, so the tiles line up with the static layers
+            if (background != null) backgroundTiles.draw(
+                gfx, background, camera.zoom,
+                camera.transform.translateX.toInt(), camera.transform.translateY.toInt(),
+                canvasWidth, canvasHeight, backgroundSource, backgroundAlpha
+            )
+
+            // Rasterize the static layers at the zoom of the camera
+            applyCamera(gfx, camera)
+        }
+
+        gfx.composite = AlphaComposite.SrcOver
+
+        // Draw the static layers in z-order, skipping the ones outside of the viewport
+        for (entity in entityList) {
+            if (entity !is StaticLayerEntity) continue
+            if (camera != null && !entity.isInViewport(camera.viewport)) continue
+
+            entity.renderStaticLayer(gfx, canvasWidth, canvasHeight)
+        }
+
+        gfx.transform = viewTransform
+    }
+
+    /**
+     * Concatenates the camera transform to a graphics context, smoothing
+     * the images scaled up by it.
+     *
+     * @param gfx The graphics context.
+     * @param camera The camera.
+     */
+    private fun applyCamera(gfx: Graphics2D, camera: Camera) {
+        gfx.transform(camera.transform)
+        gfx.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
+    }
+}
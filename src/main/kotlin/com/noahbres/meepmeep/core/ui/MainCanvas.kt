@@ -2,16 +2,27 @@ package com.noahbres.meepmeep.core.ui
 
 import java.awt.Canvas
 import java.awt.Dimension
+import java.awt.event.ComponentAdapter
+import java.awt.event.ComponentEvent
 import java.awt.image.BufferStrategy
 
 /**
  * MainCanvas is a custom Canvas that sets up a double buffer strategy and
  * manages the canvas dimensions.
  *
+ * The canvas fills the space the window gives it. Its preferred size
+ * follows its current size, so packing the window again keeps the size the
+ * user resized it to.
+ *
  * @property internalWidth The width of the canvas.
  * @property internalHeight The height of the canvas.
  */
 class MainCanvas(private var internalWidth: Int, private var internalHeight: Int): Canvas() {
+    companion object {
+        /** The smallest width and height the canvas can be resized to. */
+        const val MIN_SIZE = 200
+    }
+
     // Buffer strategy for the canvas
     lateinit var bufferStrat: BufferStrategy
 
@@ -19,7 +30,18 @@ class MainCanvas(private var internalWidth: Int, private var internalHeight: Int
         // Set the bounds and preferred size of the canvas
         setBounds(0, 0, internalWidth, internalHeight)
         preferredSize = Dimension(internalWidth, internalHeight)
+        minimumSize = Dimension(MIN_SIZE, MIN_SIZE)
         ignoreRepaint = true
+
+        // Remember the size the canvas was resized to as its preferred size
+        addComponentListener(object: ComponentAdapter() {
+            override fun componentResized(e: ComponentEvent) {
+                if (width <= 0 || height <= 0) return
+
+                internalWidth = width
+                internalHeight = height
+            }
+        })
     }
 
     /** Initializes the buffer strategy and requests focus for the canvas. */
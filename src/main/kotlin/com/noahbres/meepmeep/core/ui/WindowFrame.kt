@@ -48,8 +48,8 @@ class WindowFrame(title: String, windowX: Int, windowY: Int): JFrame() {
         // Center the window on the screen
         setLocationRelativeTo(null)
 
-        // Make the window not resizable
-        isResizable = false
+        // Let the window be resized, the canvas takes up the extra space
+        isResizable = true
 
         // Set the layout of the content pane to BoxLayout along the X axis
         layout = BoxLayout(contentPane, BoxLayout.X_AXIS)
@@ -0,0 +1,154 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.image.BufferedImage
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import javax.imageio.ImageIO
+
+/**
+ * Decodes image resources asynchronously on a pool of background threads.
+ *
+ * Decoded images are kept in a least recently used cache bounded by the
+ * memory their pixels take up, so the memory used stays bounded no matter
+ * how many field images are shipped or how large they are. The most
+ * recently used image is always kept, even if it alone exceeds the bound.
+ * Loads of the same resource that are still in flight are shared.
+ *
+ * @property maxBytes The maximum number of bytes of decoded pixels kept in
+ *    the cache, counting 4 bytes per pixel.
+ * @property threads The number of threads decoding images.
+ */
+class AssetManager @JvmOverloads constructor(
+    private val maxBytes: Long = DEFAULT_MAX_BYTES,
+    threads: Int = Runtime.getRuntime().availableProcessors().coerceAtMost(4)
+) {
+    companion object {
+        /** The default bound of the cache, enough for two 4096 by 4096 field images. */
+        const val DEFAULT_MAX_BYTES = 160L * 1024 * 1024
+
+        /** The asset manager shared by all MeepMeep instances. */
+        @JvmStatic
+        val shared = AssetManager()
+    }
+
+    /** The pool of daemon threads decoding images. */
+    private val executor: ExecutorService = Executors.newFixedThreadPool(threads) { runnable ->
+        Thread(runnable, "MeepMeep-AssetManager").apply { isDaemon = true }
+    }
+
+    /** The decoded and in-flight images by resource path, ordered from least to most recently used. */
+    private val images = LinkedHashMap<String, CompletableFuture<BufferedImage>>(16, 0.75f, true)
+
+    /** The size in bytes of the decoded images in the cache, by resource path. */
+    private val imageBytes = HashMap<String, Long>()
+
+    /** The total size in bytes of the decoded images in the cache. */
+    private var cachedBytes = 0L
+
+    /**
+     * Loads the image resource at the given path, decoding it on a
+     * background thread if it is not cached yet.
+     *
+     * @param path The resource path of the image.
+     * @return A future completing with the decoded image, or exceptionally
+     *    with an [IOException] if the resource could not be decoded.
+     */
+    @Synchronized
+    fun load(path: String): CompletableFuture<BufferedImage> {
+        images[path]?.let { return it }
+
+        // Decode with the caller's class loader, as the resources may not be visible to the pool's threads
+        val classLoader = Thread.currentThread().contextClassLoader ?: AssetManager::class.java.classLoader
+        val future = CompletableFuture.supplyAsync({ decode(classLoader, path) }, executor)
+        images[path] = future
+
+        // Forget failed loads so they can be retried, and count successful ones against the bound
+        future.whenComplete { image, error ->
+            if (error != null) evict(path, future) else record(path, future, image)
+        }
+
+        return future
+    }
+
+    /**
+     * Starts decoding the given image resources in the background, so later
+     * loads of them complete immediately.
+     *
+     * @param paths The resource paths of the images.
+     */
+    fun prefetch(vararg paths: String) {
+        paths.forEach { load(it) }
+    }
+
+    /**
+     * Gets the image resource at the given path if it is already decoded.
+     *
+     * @param path The resource path of the image.
+     * @return The decoded image, or null if it is not decoded yet.
+     */
+    @Synchronized
+    fun getIfLoaded(path: String): BufferedImage? {
+        val future = images[path] ?: return null
+
+        return if (future.isDone && !future.isCompletedExceptionally) future.join() else null
+    }
+
+    /**
+     * Removes a failed load from the cache, unless it was already replaced.
+     *
+     * @param path The resource path of the image.
+     * @param future The future of the failed load.
+     */
+    @Synchronized
+    private fun evict(path: String, future: CompletableFuture<BufferedImage>) {
+        if (images[path] === future) images.remove(path)
+    }
+
+    /**
+     * Counts a decoded image against the bound of the cache, then evicts
+     * the least recently used decoded images until the cache fits in it.
+     *
+     * @param path The resource path of the image.
+     * @param future The future of the load.
+     * @param image The decoded image.
+     */
+    @Synchronized
+    private fun record(path: String, future: CompletableFuture<BufferedImage>, image: BufferedImage) {
+        // The load may have been evicted while it was in flight
+        if (images[path] !== future) return
+
+        val bytes = image.width.toLong() * image.height * 4
+        imageBytes[path] = bytes
+        cachedBytes += bytes
+
+        val iterator = images.keys.iterator()
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            val eldest = iterator.next()
+
+            // Keep the most recently used image, the one just decoded and loads still in flight, which are not counted yet
+            if (!iterator.hasNext()) break
+            if (eldest == path) continue
+            val eldestBytes = imageBytes.remove(eldest) ?: continue
+
+            iterator.remove()
+            cachedBytes -= eldestBytes
+        }
+    }
+
+    /**
+     * Decodes the image resource at the given path.
+     *
+     * @param classLoader The class loader to load the resource with.
+     * @param path The resource path of the image.
+     * @return The decoded image.
+     * @throws IOException If the resource does not exist or could not be
+     *    decoded.
+     */
+    private fun decode(classLoader: ClassLoader, path: String): BufferedImage {
+        val stream = classLoader.getResourceAsStream(path) ?: throw IOException("Missing resource $path")
+
+        return stream.use { ImageIO.read(it) } ?: throw IOException("Could not decode resource $path")
+    }
+}
@@ -0,0 +1,113 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.Rectangle
+import java.awt.RenderingHints
+import java.awt.Transparency
+import java.awt.geom.AffineTransform
+import java.awt.image.BufferedImage
+import kotlin.math.PI
+import kotlin.math.roundToInt
+
+/**
+ * Least recently used cache of bot sprites pre-rendered at quantized
+ * headings, so bots can be drawn with a plain translated blit instead of a
+ * transformed one every frame.
+ *
+ * Sprites are keyed by the bot's size on screen, a key identifying its
+ * look, such as its color scheme and opacity, and the number of heading
+ * steps. Bots sharing all of them share their sprites. Each heading step is
+ * rendered the first time it is needed.
+ *
+ * @property capacity The maximum number of bot looks kept in the cache.
+ */
+class BotSpriteCache @JvmOverloads constructor(private val capacity: Int = 16) {
+    /**
+     * A bot rendered at a single heading.
+     *
+     * @property image The image holding the rotated bot.
+     * @property offsetX The x offset of the image from the bot's center in
+     *    pixels.
+     * @property offsetY The y offset of the image from the bot's center in
+     *    pixels.
+     */
+    class Sprite(val image: BufferedImage, val offsetX: Int, val offsetY: Int)
+
+    /**
+     * Key identifying the sprites of a bot look.
+     *
+     * @property look The key identifying the look of the bot.
+     * @property width The width of the bot in pixels.
+     * @property height The height of the bot in pixels.
+     * @property steps The number of heading steps.
+     */
+    private data class Key(val look: Any, val width: Double, val height: Double, val steps: Int)
+
+    /** The sprites of every heading step by bot look, ordered from least to most recently used. */
+    private val sprites = object : LinkedHashMap<Key, Array<Sprite?>>(capacity + 1, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Array<Sprite?>>?) = size > capacity
+    }
+
+    /**
+     * Gets the sprite of a bot at the heading step closest to the given
+     * rotation, rendering it if it is not cached yet.
+     *
+     * @param look The key identifying the look of the bot.
+     * @param width The width of the bot in pixels.
+     * @param height The height of the bot in pixels.
+     * @param steps The number of heading steps in a full turn.
+     * @param rotation The screen rotation of the bot in radians.
+     * @param source Provides the unrotated image of the bot, scaled to the
+     *    bot's size when drawn.
+     * @return The sprite.
+     */
+    @Synchronized
+    fun get(look: Any, width: Double, height: Double, steps: Int, rotation: Double, source: () -> BufferedImage): Sprite {
+        val stepSprites = sprites.getOrPut(Key(look, width, height, steps)) { arrayOfNulls(steps) }
+
+        // Round the rotation to the closest step, wrapping around a full turn
+        val step = Math.floorMod((rotation / (2 * PI) * steps).roundToInt(), steps)
+
+        return stepSprites[step] ?: render(source(), width, height, 2 * PI * step / steps).also { stepSprites[step] = it }
+    }
+
+    /** Removes all sprites from the cache. */
+    @Synchronized
+    fun clear() {
+        sprites.clear()
+    }
+
+    /**
+     * Renders a bot rotated around its center into a sprite cropped to its
+     * rotated bounds.
+     *
+     * @param source The unrotated image of the bot.
+     * @param width The width of the bot in pixels.
+     * @param height The height of the bot in pixels.
+     * @param rotation The screen rotation of the bot in radians.
+     * @return The sprite.
+     */
+    private fun render(source: BufferedImage, width: Double, height: Double, rotation: Double): Sprite {
+        // Same transform as drawing the bot directly, relative to its center
+        val transform = AffineTransform()
+        transform.rotate(rotation)
+        transform.translate(-width / 2, -height / 2)
+        transform.scale(width / source.width, height / source.height)
+
+        val bounds = transform.createTransformedShape(Rectangle(0, 0, source.width, source.height)).bounds
+        bounds.grow(1, 1)
+
+        val image = ImageUtil.createCompatibleImage(bounds.width, bounds.height, Transparency.TRANSLUCENT)
+        val gfx = image.createGraphics()
+
+        // Rendered once per step, so use the best quality
+        gfx.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
+        gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
+
+        // Offset the drawing so the top left corner of the bounds lands at the origin of the image
+        gfx.translate(-bounds.x, -bounds.y)
+        gfx.drawImage(source, transform, null)
+        gfx.dispose()
+
+        return Sprite(image, bounds.x, bounds.y)
+    }
+}
@@ -2,7 +2,6 @@ package com.noahbres.meepmeep.core.util
 
 import com.acmerobotics.roadrunner.geometry.Vector2d
 
-import kotlin.math.max
 import kotlin.math.min
 
 /** Utility class for field-related calculations and conversions. */
@@ -39,8 +38,8 @@ class FieldUtil {
             canvasWidth: Double = CANVAS_WIDTH,
             canvasHeight: Double = CANVAS_HEIGHT
         ): Vector2d {
-            // Mirror the Y coordinate and scale to field dimensions
-            return mirrorY(vector2d) / max(
+            // Mirror the Y coordinate and scale to field dimensions, inverting fieldCoordsToScreenCoords
+            return mirrorY(vector2d) / min(
                 canvasWidth,
                 canvasHeight
             ) * FIELD_WIDTH.toDouble() + Vector2d(-FIELD_WIDTH / 2.0, FIELD_HEIGHT / 2.0)
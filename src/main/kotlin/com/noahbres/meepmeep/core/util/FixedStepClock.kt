@@ -0,0 +1,26 @@
+package com.noahbres.meepmeep.core.util
+
+/**
+ * Deterministic [SimulationClock] advancing by the same step every tick,
+ * regardless of how much wall time has passed.
+ *
+ * @property stepTime The time advanced every tick, in nanoseconds.
+ * @property isThrottled Whether the loop should be paced to its target
+ *    FPS, or stepped as fast as possible.
+ */
+class FixedStepClock @JvmOverloads constructor(
+    val stepTime: Long, override val isThrottled: Boolean = true
+) : SimulationClock {
+    override var time = 0L
+        private set
+
+    override fun tick(): Long {
+        time += stepTime
+
+        return stepTime
+    }
+
+    override fun reset() {
+        time = 0L
+    }
+}
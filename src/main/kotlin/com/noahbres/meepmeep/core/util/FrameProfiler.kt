@@ -0,0 +1,340 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.Color
+import java.awt.Font
+import java.awt.Graphics2D
+import java.io.File
+import java.lang.management.ManagementFactory
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+// Constant for nanoseconds in a second
+private const val NANOSECONDS_IN_SECOND = 1_000_000_000L
+
+// Constant for nanoseconds in a millisecond
+private const val NANOSECONDS_IN_MILLISECOND = 1_000_000.0
+
+/**
+ * Records how long each phase of every frame takes, how long every entity
+ * tag takes to render and how much the loop thread allocates.
+ *
+ * Timings are kept for the last [capacity] frames in ring buffers, so
+ * recording a frame does not allocate. The profiler only records while
+ * [isEnabled] is set. Frames are recorded on the loop thread, so queries
+ * from other threads may see a frame that is only partially recorded.
+ *
+ * @property targetFPS The frames per second the loop is aiming for. Frames
+ *    taking more than one and a half target frame times are counted as
+ *    dropped.
+ * @property capacity The number of most recent frames kept.
+ */
+class FrameProfiler @JvmOverloads constructor(
+    private val targetFPS: Int,
+    private val capacity: Int = 600
+) {
+    /** The phases a frame is split into. */
+    enum class Phase {
+        /** Updating the entities. */
+        UPDATE,
+
+        /** Drawing the cached background and static layers. */
+        STATIC_LAYERS,
+
+        /** Drawing the dynamic entities. */
+        ENTITIES,
+
+        /** Drawing the FPS counter, mouse coordinates and profiler overlay. */
+        OVERLAY,
+
+        /** Presenting the frame on screen. */
+        SHOW
+    }
+
+    /**
+     * Render timings of an entity tag.
+     *
+     * @property tag The tag of the entities.
+     */
+    class TagStats(val tag: String) {
+        /** Render time of the entities with the tag in the current frame, in nanoseconds. */
+        internal var frameNanos = 0L
+
+        /** Exponential moving average of the render time per frame, in nanoseconds. */
+        var averageNanos = 0.0
+            internal set
+
+        /** Longest render time of a single frame, in nanoseconds. */
+        var maxNanos = 0L
+            internal set
+    }
+
+    /** Whether frames are being recorded. */
+    var isEnabled = false
+
+    /** The number of frames recorded since the profiler was last reset. */
+    var frameCount = 0L
+        private set
+
+    /** The number of frames that took more than one and a half target frame times. */
+    var droppedFrames = 0L
+        private set
+
+    /** Durations of each phase for the recorded frames, in nanoseconds. */
+    private val phaseNanos = Array(Phase.values().size) { LongArray(capacity) }
+
+    /** Total durations of the recorded frames, from the start of the update to presenting, in nanoseconds. */
+    private val frameNanos = LongArray(capacity)
+
+    /** Time between the starts of consecutive recorded frames, in nanoseconds. */
+    private val intervalNanos = LongArray(capacity)
+
+    /** Bytes allocated by the loop thread during each recorded frame. */
+    private val allocatedBytes = LongArray(capacity)
+
+    /** Scratch buffer used to sort frame times when computing percentiles. */
+    private val sortBuffer = LongArray(capacity)
+
+    /** Render timings by entity tag. */
+    private val tagStats = LinkedHashMap<String, TagStats>()
+
+    /** The smoothing factor of the per tag moving averages. */
+    private val tagSmoothing = 0.05
+
+    /** Index of the ring buffer slot of the current frame. */
+    private var slot = 0
+
+    /** Start time of the current frame, in nanoseconds. */
+    private var frameStartTime = 0L
+
+    /** Start time of the previous frame, in nanoseconds. */
+    private var previousFrameStartTime = 0L
+
+    /** Start time of the current phase, in nanoseconds. */
+    private var phaseStartTime = 0L
+
+    /** Bytes allocated by the loop thread when the current frame started. */
+    private var frameStartAllocatedBytes = 0L
+
+    /** Whether a frame was started and not ended yet. */
+    private var isInFrame = false
+
+    /** The JVM's thread bean, if it can measure thread allocations. */
+    private val threadBean = (ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean)
+        ?.takeIf { it.isThreadAllocatedMemorySupported }
+        ?.apply { isThreadAllocatedMemoryEnabled = true }
+
+    /** Starts recording a frame. Called before the entities are updated. */
+    fun beginFrame() {
+        if (!isEnabled) return
+
+        frameStartTime = System.nanoTime()
+        phaseStartTime = frameStartTime
+        frameStartAllocatedBytes = threadBean?.currentThreadAllocatedBytes ?: 0L
+
+        for (phase in phaseNanos) phase[slot] = 0L
+        isInFrame = true
+    }
+
+    /**
+     * Ends the current phase and starts the next one.
+     *
+     * @param phase The phase that just ended.
+     */
+    fun endPhase(phase: Phase) {
+        if (!isInFrame) return
+
+        val now = System.nanoTime()
+        phaseNanos[phase.ordinal][slot] += now - phaseStartTime
+        phaseStartTime = now
+    }
+
+    /**
+     * Adds the render time of an entity to its tag in the current frame.
+     *
+     * @param tag The tag of the entity.
+     * @param nanos The time the entity took to render, in nanoseconds.
+     */
+    fun recordEntity(tag: String, nanos: Long) {
+        if (!isInFrame) return
+
+        // Tags are only added on the loop thread, but may be listed from other threads
+        val stats = tagStats[tag] ?: synchronized(tagStats) { TagStats(tag).also { tagStats[tag] = it } }
+        stats.frameNanos += nanos
+    }
+
+    /** Ends recording the current frame. Called after the frame is presented. */
+    fun endFrame() {
+        if (!isInFrame) return
+        isInFrame = false
+
+        val now = System.nanoTime()
+        frameNanos[slot] = now - frameStartTime
+        allocatedBytes[slot] = (threadBean?.currentThreadAllocatedBytes ?: 0L) - frameStartAllocatedBytes
+
+        // The first frame has no previous frame to measure the interval from
+        intervalNanos[slot] = if (frameCount == 0L) 0L else frameStartTime - previousFrameStartTime
+        previousFrameStartTime = frameStartTime
+
+        if (intervalNanos[slot] * 2 > NANOSECONDS_IN_SECOND / targetFPS * 3) droppedFrames++
+
+        // Fold this frame's tag timings into their moving averages
+        for (stats in tagStats.values) {
+            stats.averageNanos += (stats.frameNanos - stats.averageNanos) * tagSmoothing
+            stats.maxNanos = max(stats.maxNanos, stats.frameNanos)
+            stats.frameNanos = 0L
+        }
+
+        frameCount++
+        slot = (slot + 1) % capacity
+    }
+
+    /** Clears all recorded frames and tag timings. */
+    fun reset() {
+        frameCount = 0L
+        droppedFrames = 0L
+        slot = 0
+        isInFrame = false
+        synchronized(tagStats) { tagStats.clear() }
+    }
+
+    /**
+     * Returns the number of frames currently kept in the ring buffers.
+     *
+     * @return The number of kept frames.
+     */
+    fun sampleCount(): Int = min(frameCount, capacity.toLong()).toInt()
+
+    /**
+     * Returns the average duration of a phase over the kept frames.
+     *
+     * @param phase The phase.
+     * @return The average duration in nanoseconds.
+     */
+    fun averagePhaseNanos(phase: Phase): Double = average(phaseNanos[phase.ordinal])
+
+    /**
+     * Returns a percentile of the frame durations over the kept frames.
+     *
+     * @param percentile The percentile, between 0.0 and 100.0.
+     * @return The frame duration at the percentile in nanoseconds.
+     */
+    fun frameTimePercentile(percentile: Double): Long {
+        val count = sampleCount()
+        if (count == 0) return 0L
+
+        frameNanos.copyInto(sortBuffer, 0, 0, count)
+        sortBuffer.sort(0, count)
+
+        val index = ceil(percentile / 100.0 * count).toInt() - 1
+        return sortBuffer[index.coerceIn(0, count - 1)]
+    }
+
+    /**
+     * Returns the rate the loop thread allocated memory at over the kept
+     * frames.
+     *
+     * @return The allocation rate in bytes per second, or 0.0 if the JVM
+     *    cannot measure thread allocations.
+     */
+    fun allocationRate(): Double {
+        val count = sampleCount()
+        val totalIntervalNanos = (0 until count).sumOf { intervalNanos[it] }
+        if (totalIntervalNanos == 0L) return 0.0
+
+        return (0 until count).sumOf { allocatedBytes[it] }.toDouble() / totalIntervalNanos * NANOSECONDS_IN_SECOND
+    }
+
+    /**
+     * Returns the render timings of every entity tag, sorted from most to
+     * least expensive.
+     *
+     * @return The render timings.
+     */
+    fun tagStats(): List<TagStats> = synchronized(tagStats) { tagStats.values.sortedByDescending { it.averageNanos } }
+
+    /**
+     * Exports the kept frames to a CSV file, one row per frame from oldest to
+     * newest.
+     *
+     * @param file The file to write to.
+     */
+    fun exportCsv(file: File) {
+        val count = sampleCount()
+        val first = if (frameCount > capacity) slot else 0
+
+        file.bufferedWriter().use { writer ->
+            // Write the header
+            writer.write("frame,interval_ns,frame_ns")
+            Phase.values().forEach { writer.write(",${it.name.lowercase()}_ns") }
+            writer.write(",allocated_bytes")
+            writer.newLine()
+
+            for (i in 0 until count) {
+                val index = (first + i) % capacity
+
+                writer.write("${frameCount - count + i},${intervalNanos[index]},${frameNanos[index]}")
+                phaseNanos.forEach { writer.write(",${it[index]}") }
+                writer.write(",${allocatedBytes[index]}")
+                writer.newLine()
+            }
+        }
+    }
+
+    /**
+     * Renders the profiler overlay, listing the frame time percentiles, the
+     * average phase durations, the dropped frames, the allocation rate and
+     * the most expensive entity tags.
+     *
+     * @param gfx The graphics context.
+     * @param font The font to draw the overlay with.
+     * @param x The x-coordinate of the top left corner of the overlay.
+     * @param y The y-coordinate of the top left corner of the overlay.
+     */
+    fun renderOverlay(gfx: Graphics2D, font: Font, x: Int, y: Int) {
+        val lines = mutableListOf(
+            "frame p50 %.2f ms  p99 %.2f ms".format(
+                frameTimePercentile(50.0) / NANOSECONDS_IN_MILLISECOND,
+                frameTimePercentile(99.0) / NANOSECONDS_IN_MILLISECOND
+            ),
+            "dropped %d / %d  alloc %.1f MB/s".format(droppedFrames, frameCount, allocationRate() / 1e6)
+        )
+
+        Phase.values().forEach {
+            lines += "%s %.3f ms".format(it.name.lowercase(), averagePhaseNanos(it) / NANOSECONDS_IN_MILLISECOND)
+        }
+
+        tagStats().take(5).forEach {
+            lines += "  %s %.3f ms".format(it.tag, it.averageNanos / NANOSECONDS_IN_MILLISECOND)
+        }
+
+        gfx.font = font
+        val lineHeight = gfx.fontMetrics.height
+        val width = lines.maxOf { gfx.fontMetrics.stringWidth(it) } + 12
+
+        // Draw a translucent backdrop so the text stays readable on any field
+        gfx.color = Color(0, 0, 0, 160)
+        gfx.fillRect(x, y, width, lineHeight * lines.size + 8)
+
+        gfx.color = Color.WHITE
+        lines.forEachIndexed { index, line ->
+            gfx.drawString(line, x + 6, y + 4 + lineHeight * index + gfx.fontMetrics.ascent)
+        }
+    }
+
+    /**
+     * Averages a ring buffer over the kept frames.
+     *
+     * @param buffer The ring buffer.
+     * @return The average value.
+     */
+    private fun average(buffer: LongArray): Double {
+        val count = sampleCount()
+        if (count == 0) return 0.0
+
+        var sum = 0L
+        for (i in 0 until count) sum += buffer[i]
+
+        return sum.toDouble() / count
+    }
+}
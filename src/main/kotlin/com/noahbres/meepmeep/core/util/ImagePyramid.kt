@@ -0,0 +1,59 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.Image
+
+/**
+ * An image along with copies of it halved in size over and over, down to
+ * [MIN_LEVEL_SIZE].
+ *
+ * Drawing an image at less than half its size with bilinear interpolation
+ * skips over pixels and aliases. Drawing the smallest level that still
+ * covers the target size instead keeps every draw within a factor of two,
+ * while drawing larger than the image still uses its full resolution.
+ *
+ * Building the levels scales the whole image, so it is best done off the
+ * loop thread.
+ *
+ * @param source The full resolution image. Must be fully loaded.
+ */
+class ImagePyramid(source: Image) {
+    companion object {
+        /** The size in pixels below which no smaller level is made. */
+        const val MIN_LEVEL_SIZE = 256
+    }
+
+    /** The levels, from the full resolution image to the smallest copy. */
+    private val levels: List<Image>
+
+    init {
+        val levels = mutableListOf(source)
+
+        var width = source.getWidth(null)
+        var height = source.getHeight(null)
+
+        // Halve the previous level until it would get too small
+        while (width / 2 >= MIN_LEVEL_SIZE && height / 2 >= MIN_LEVEL_SIZE) {
+            width /= 2
+            height /= 2
+
+            levels.add(ImageUtil.scaleImage(levels.last(), width, height))
+        }
+
+        this.levels = levels
+    }
+
+    /** The full resolution image. */
+    val source: Image
+        get() = levels.first()
+
+    /**
+     * Gets the smallest level at least as large as the given size, or the
+     * full resolution image if none is.
+     *
+     * @param width The width the level is drawn at in pixels.
+     * @param height The height the level is drawn at in pixels.
+     * @return The level.
+     */
+    fun levelFor(width: Double, height: Double): Image =
+        levels.lastOrNull { it.getWidth(null) >= width && it.getHeight(null) >= height } ?: source
+}
@@ -0,0 +1,113 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.AlphaComposite
+import java.awt.GraphicsEnvironment
+import java.awt.Image
+import java.awt.RenderingHints
+import java.awt.Transparency
+import java.awt.image.BufferedImage
+import kotlin.math.max
+
+/** Utility class for image-related helpers. */
+class ImageUtil {
+    companion object {
+        /**
+         * Creates an image compatible with the default screen configuration.
+         *
+         * When running headless there is no screen device to query, so a plain
+         * [BufferedImage] with an equivalent pixel layout is returned instead.
+         *
+         * @param width The width of the image in pixels.
+         * @param height The height of the image in pixels.
+         * @param transparency The transparency mode, one of the [Transparency]
+         *    constants.
+         * @return The created image.
+         */
+        @JvmStatic
+        fun createCompatibleImage(width: Int, height: Int, transparency: Int): BufferedImage {
+            // Fall back to a plain buffered image if there is no screen to be compatible with
+            if (GraphicsEnvironment.isHeadless()) {
+                val type = if (transparency == Transparency.OPAQUE) {
+                    BufferedImage.TYPE_INT_RGB
+                } else {
+                    BufferedImage.TYPE_INT_ARGB
+                }
+
+                return BufferedImage(width, height, type)
+            }
+
+            // Get the default screen device and configuration
+            val environment = GraphicsEnvironment.getLocalGraphicsEnvironment()
+            val device = environment.defaultScreenDevice
+            val config = device.defaultConfiguration
+
+            return config.createCompatibleImage(width, height, transparency)
+        }
+
+        /**
+         * Scales an image into a new image compatible with the default screen
+         * configuration, optionally baking an alpha transparency level into it.
+         *
+         * Downscaling halves the image with bilinear interpolation until it is
+         * within a factor of two of the target size, which keeps the quality
+         * close to [Image.SCALE_SMOOTH] without its slow, lazily produced
+         * toolkit image.
+         *
+         * @param source The image to scale. Must be fully loaded.
+         * @param width The width of the scaled image in pixels.
+         * @param height The height of the scaled image in pixels.
+         * @param alpha The alpha transparency level to bake into the scaled
+         *    image, between 0.0 and 1.0.
+         * @return The scaled image.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun scaleImage(source: Image, width: Int, height: Int, alpha: Float = 1.0f): BufferedImage {
+            var current = source
+            var currentWidth = source.getWidth(null)
+            var currentHeight = source.getHeight(null)
+
+            // Halve the image until the final step is at most a factor of two
+            while (currentWidth / 2 >= width || currentHeight / 2 >= height) {
+                val halfWidth = max(width, currentWidth / 2)
+                val halfHeight = max(height, currentHeight / 2)
+
+                current = drawScaled(current, halfWidth, halfHeight, 1.0f, Transparency.TRANSLUCENT)
+                currentWidth = halfWidth
+                currentHeight = halfHeight
+            }
+
+            // Opaque sources stay opaque unless an alpha level has to be baked in
+            val isOpaque = alpha >= 1.0f && source is BufferedImage && source.transparency == Transparency.OPAQUE
+
+            return drawScaled(
+                current, width, height, alpha, if (isOpaque) Transparency.OPAQUE else Transparency.TRANSLUCENT
+            )
+        }
+
+        /**
+         * Draws an image scaled with bilinear interpolation into a new
+         * compatible image.
+         *
+         * @param source The image to draw.
+         * @param width The width of the new image in pixels.
+         * @param height The height of the new image in pixels.
+         * @param alpha The alpha transparency level to draw the image with.
+         * @param transparency The transparency mode of the new image.
+         * @return The new image.
+         */
+        private fun drawScaled(source: Image, width: Int, height: Int, alpha: Float, transparency: Int): BufferedImage {
+            val image = createCompatibleImage(width, height, transparency)
+            val gfx = image.createGraphics()
+
+            gfx.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
+            gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
+            if (alpha < 1.0f) gfx.composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)
+
+            gfx.drawImage(source, 0, 0, width, height, null)
+            gfx.dispose()
+
+            return image
+        }
+    }
+}
@@ -10,6 +10,10 @@ private const val NANOSECONDS_IN_SECOND = 1_000_000_000L
  * Manages the main loop for updating and rendering at a target frames per
  * second (FPS).
  *
+ * The delta passed to the update function comes from [clock] rather than
+ * the wall clock. If the clock is not throttled, the loop is stepped back
+ * to back as fast as possible instead of at the target FPS.
+ *
  * @param targetFPS The target frames per second.
  * @param updateFunction The function to call for updating logic.
  * @param renderFunction The function to call for rendering.
@@ -20,6 +24,13 @@ class LoopManager(
     // Target time per loop iteration in nanoseconds
     private val targetDeltaLoopTime = NANOSECONDS_IN_SECOND / targetFPS
 
+    /**
+     * The clock providing the simulation time for every loop iteration. Set
+     * on the caller's thread and read on the loop thread.
+     */
+    @Volatile
+    var clock: SimulationClock = SimulationClock.realTime()
+
     /** Frames per second, calculated and updated periodically. */
     var fps = 0.0
         private set
@@ -30,21 +41,32 @@ class LoopManager(
     // Interval for calculating FPS
     private var fpsCalculationInterval = 500L * 1_000_000
 
-    // Start time for the current FPS calculation interval, in milliseconds
-    private var fpsCounterStartTime = System.currentTimeMillis()
+    // Start time for the current FPS calculation interval, in nanoseconds
+    private var fpsCounterStartTime = System.nanoTime()
 
     // Time at the beginning of the current loop iteration, in nanoseconds
     private var currentLoopTime: Long = System.nanoTime()
 
-    // Time at the beginning of the previous loop iteration, in nanoseconds
-    private var previousBeginTime: Long = System.nanoTime()
-
     // Executor service for scheduling the loop at a fixed rate
     private val service = Executors.newSingleThreadScheduledExecutor()
 
-    /** Starts the loop manager, scheduling the loop at a fixed rate. */
+    /**
+     * Starts the loop manager, scheduling the loop at a fixed rate, or back to
+     * back if the clock is not throttled.
+     */
     fun start() {
-        service.scheduleAtFixedRate(::loop, 0L, targetDeltaLoopTime, TimeUnit.NANOSECONDS)
+        if (clock.isThrottled) {
+            service.scheduleAtFixedRate(::loop, 0L, targetDeltaLoopTime, TimeUnit.NANOSECONDS)
+        } else {
+            service.execute {
+                while (!Thread.currentThread().isInterrupted) loop()
+            }
+        }
+    }
+
+    /** Stops the loop manager. The loop can not be restarted afterwards. */
+    fun stop() {
+        service.shutdownNow()
     }
 
     /** The main loop function, called at a fixed rate. */
@@ -61,11 +83,9 @@ class LoopManager(
 
         fpsCount++
 
-        // Update and render
-        update(currentLoopTime - previousBeginTime)
+        // Update by the simulation time that passed and render
+        update(clock.tick())
         render()
-
-        previousBeginTime = currentLoopTime
     }
 
     /** Calls the render function provided */
@@ -74,10 +94,10 @@ class LoopManager(
     }
 
     /**
-     * Calls the update function provided with the delta time since the last
-     * loop.
+     * Calls the update function provided with the simulation time since the
+     * last loop.
      *
-     * @param deltaTime The time since the last loop in nanoseconds.
+     * @param deltaTime The simulation time since the last loop in nanoseconds.
      */
     private fun update(deltaTime: Long) {
         updateFunction(deltaTime)
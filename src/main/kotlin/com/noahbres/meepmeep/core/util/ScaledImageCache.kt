@@ -0,0 +1,67 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.Image
+import java.awt.image.BufferedImage
+
+/**
+ * Least recently used cache of images scaled through
+ * [ImageUtil.scaleImage], keyed by their source, size and baked in alpha
+ * transparency level.
+ *
+ * @property capacity The maximum number of scaled images kept in the
+ *    cache.
+ */
+class ScaledImageCache @JvmOverloads constructor(private val capacity: Int = 4) {
+    /**
+     * Key identifying a scaled image.
+     *
+     * @property source The key of the source image.
+     * @property width The width of the scaled image.
+     * @property height The height of the scaled image.
+     * @property alpha The alpha transparency level baked into the image.
+     */
+    private data class Key(val source: Any, val width: Int, val height: Int, val alpha: Float)
+
+    /** The scaled images, ordered from least to most recently used. */
+    private val images = object : LinkedHashMap<Key, BufferedImage>(capacity + 1, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, BufferedImage>?) = size > capacity
+    }
+
+    /**
+     * Gets the scaled image for the given source, scaling it if it is not
+     * cached yet.
+     *
+     * @param sourceKey The key identifying the source image, such as a
+     *    [com.noahbres.meepmeep.MeepMeep.Background].
+     * @param width The width of the scaled image in pixels.
+     * @param height The height of the scaled image in pixels.
+     * @param alpha The alpha transparency level to bake into the scaled
+     *    image.
+     * @param source Provides the source image if it has to be scaled.
+     * @return The scaled image.
+     */
+    @Synchronized
+    fun get(sourceKey: Any, width: Int, height: Int, alpha: Float, source: () -> Image): BufferedImage =
+        images.getOrPut(Key(sourceKey, width, height, alpha)) {
+            ImageUtil.scaleImage(source(), width, height, alpha)
+        }
+
+    /**
+     * Gets the scaled image for the given source if it is already cached.
+     *
+     * @param sourceKey The key identifying the source image.
+     * @param width The width of the scaled image in pixels.
+     * @param height The height of the scaled image in pixels.
+     * @param alpha The alpha transparency level baked into the scaled image.
+     * @return The scaled image, or null if it is not cached.
+     */
+    @Synchronized
+    fun getIfPresent(sourceKey: Any, width: Int, height: Int, alpha: Float): BufferedImage? =
+        images[Key(sourceKey, width, height, alpha)]
+
+    /** Removes all scaled images from the cache. */
+    @Synchronized
+    fun clear() {
+        images.clear()
+    }
+}
@@ -0,0 +1,75 @@
+package com.noahbres.meepmeep.core.util
+
+// Constant for nanoseconds in a second
+private const val NANOSECONDS_IN_SECOND = 1_000_000_000L
+
+/**
+ * Source of simulation time for the application loop.
+ *
+ * Every loop iteration ticks the clock once, and the returned delta is
+ * what entities and animations advance by. Swapping the clock lets the
+ * simulation follow the wall clock, run a deterministic fixed timestep, or
+ * step as fast as possible.
+ *
+ * @see [LoopManager]
+ */
+interface SimulationClock {
+    /**
+     * Whether the loop driving this clock should be paced to its target FPS.
+     * Unthrottled clocks are stepped back to back as fast as possible.
+     */
+    val isThrottled: Boolean
+
+    /** The total simulation time elapsed, in nanoseconds. */
+    val time: Long
+
+    /**
+     * Advances the clock by one loop iteration.
+     *
+     * @return The simulation time elapsed during this iteration, in
+     *    nanoseconds.
+     */
+    fun tick(): Long
+
+    /** Resets the elapsed simulation time back to zero. */
+    fun reset()
+
+    companion object {
+        /**
+         * Creates a clock following the wall clock.
+         *
+         * @return The created [SimulationClock].
+         */
+        @JvmStatic
+        fun realTime(): SimulationClock = WallClock(1.0)
+
+        /**
+         * Creates a clock following the wall clock, sped up by the given factor.
+         *
+         * @param speed The factor to speed the wall clock up by.
+         * @return The created [SimulationClock].
+         */
+        @JvmStatic
+        fun scaled(speed: Double): SimulationClock = WallClock(speed)
+
+        /**
+         * Creates a deterministic clock advancing by a fixed step every loop
+         * iteration, paced to the loop's target FPS.
+         *
+         * @param fps The number of steps per simulated second.
+         * @return The created [SimulationClock].
+         */
+        @JvmStatic
+        fun fixedStep(fps: Int): SimulationClock = FixedStepClock(NANOSECONDS_IN_SECOND / fps, true)
+
+        /**
+         * Creates a deterministic clock advancing by a fixed step every loop
+         * iteration, with the loop stepped as fast as possible.
+         *
+         * @param fps The number of steps per simulated second.
+         * @return The created [SimulationClock].
+         */
+        @JvmStatic
+        fun asFastAsPossible(fps: Int): SimulationClock = FixedStepClock(NANOSECONDS_IN_SECOND / fps, false)
+    }
+}
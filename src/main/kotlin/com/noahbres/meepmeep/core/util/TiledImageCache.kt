@@ -0,0 +1,172 @@
+package com.noahbres.meepmeep.core.util
+
+import java.awt.AlphaComposite
+import java.awt.Graphics2D
+import java.awt.Image
+import java.awt.RenderingHints
+import java.awt.Transparency
+import java.awt.image.BufferedImage
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Least recently used cache of the tiles of an image scaled up by a zoom.
+ *
+ * Scaling a whole image up with bilinear interpolation costs the same for
+ * every frame the view moves. Instead, the image is split into square
+ * tiles at the resolution of the zoom, which are only rasterized the first
+ * time they come into view. Panning across the image then only rasterizes
+ * the tiles scrolling in, and every other tile is a plain blit.
+ *
+ * The image is usually already scaled down from a larger source, such as
+ * a field image scaled to the canvas. Given the [ImagePyramid] of that
+ * source, the tiles are rasterized from it instead, so zooming in reveals
+ * the detail the scaled image lost.
+ *
+ * Changing the image, its source or the zoom drops every tile.
+ *
+ * @property tileSize The width and height of the tiles in pixels.
+ * @property minCapacity The minimum number of tiles kept in the cache. The
+ *    cache always keeps at least twice the tiles covering the view.
+ */
+class TiledImageCache @JvmOverloads constructor(
+    private val tileSize: Int = 256,
+    private val minCapacity: Int = 64
+) {
+    /** The maximum number of tiles kept, grown to fit the view. */
+    private var capacity = minCapacity
+
+    /** The tiles, keyed by their packed column and row, ordered from least to most recently used. */
+    private val tiles = object : LinkedHashMap<Long, BufferedImage>(minCapacity + 1, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, BufferedImage>?) = size > capacity
+    }
+
+    /** The image the tiles were rasterized from. */
+    private var tiledImage: BufferedImage? = null
+
+    /** The pyramid of the source the tiles were rasterized from, if any. */
+    private var tiledSource: ImagePyramid? = null
+
+    /** The alpha transparency level the source was drawn with. */
+    private var tiledAlpha = Float.NaN
+
+    /** The zoom the tiles were rasterized at. */
+    private var tiledZoom = Double.NaN
+
+    /**
+     * Draws an image scaled by a zoom and translated by an offset, covering
+     * the view, rasterizing the tiles that are not cached yet.
+     *
+     * Tiles never overlap, so when nothing was drawn beneath them they can be
+     * copied with [java.awt.AlphaComposite.Src] instead of being blended.
+     *
+     * @param gfx The graphics context of the view, without any transform.
+     * @param image The image to draw.
+     * @param zoom The factor to scale the image up by.
+     * @param offsetX The x coordinate of the top left corner of the scaled
+     *    image in the view.
+     * @param offsetY The y coordinate of the top left corner of the scaled
+     *    image in the view.
+     * @param viewWidth The width of the view in pixels.
+     * @param viewHeight The height of the view in pixels.
+     * @param source The pyramid of the full resolution image the image was
+     *    scaled down from, or null to scale up the image itself.
+     * @param sourceAlpha The alpha transparency level baked into the image,
+     *    which the source is drawn with.
+     */
+    @JvmOverloads
+    fun draw(
+        gfx: Graphics2D,
+        image: BufferedImage,
+        zoom: Double,
+        offsetX: Int,
+        offsetY: Int,
+        viewWidth: Int,
+        viewHeight: Int,
+        source: ImagePyramid? = null,
+        sourceAlpha: Float = 1.0f
+    ) {
+        if (image !== tiledImage || source !== tiledSource || sourceAlpha != tiledAlpha || zoom != tiledZoom) {
+            tiles.clear()
+            tiledImage = image
+            tiledSource = source
+            tiledAlpha = sourceAlpha
+            tiledZoom = zoom
+        }
+
+        // Scaling the source down is only sharper than scaling the image up
+        val scaledWidth = image.width * zoom
+        val scaledHeight = image.height * zoom
+        val level = if (source != null && zoom > 1) source.levelFor(scaledWidth, scaledHeight) else null
+
+        // Only the tiles overlapping both the scaled image and the view are drawn
+        val lastColumn = ceil(scaledWidth / tileSize).toInt() - 1
+        val lastRow = ceil(scaledHeight / tileSize).toInt() - 1
+
+        val firstVisibleColumn = max(0, Math.floorDiv(-offsetX, tileSize))
+        val lastVisibleColumn = min(lastColumn, Math.floorDiv(viewWidth - 1 - offsetX, tileSize))
+        val firstVisibleRow = max(0, Math.floorDiv(-offsetY, tileSize))
+        val lastVisibleRow = min(lastRow, Math.floorDiv(viewHeight - 1 - offsetY, tileSize))
+
+        // Keep twice the visible tiles, so panning back and forth does not rasterize them again
+        val visibleTiles = (lastVisibleColumn - firstVisibleColumn + 1) * (lastVisibleRow - firstVisibleRow + 1)
+        capacity = max(minCapacity, 2 * visibleTiles)
+
+        for (column in firstVisibleColumn..lastVisibleColumn) {
+            for (row in firstVisibleRow..lastVisibleRow) {
+                val key = (column.toLong() shl 32) or (row.toLong() and 0xFFFFFFFFL)
+                val tile = tiles.getOrPut(key) {
+                    if (level == null) rasterizeTile(image, zoom, zoom, 1.0f, column, row)
+                    else rasterizeTile(
+                        level,
+                        scaledWidth / level.getWidth(null), scaledHeight / level.getHeight(null),
+                        sourceAlpha, column, row
+                    )
+                }
+
+                gfx.drawImage(tile, offsetX + column * tileSize, offsetY + row * tileSize, null)
+            }
+        }
+    }
+
+    /** Drops every cached tile. */
+    fun clear() {
+        tiles.clear()
+        tiledImage = null
+        tiledSource = null
+    }
+
+    /**
+     * Rasterizes a single tile of the scaled image.
+     *
+     * @param image The image to scale.
+     * @param scaleX The factor to scale the width of the image by.
+     * @param scaleY The factor to scale the height of the image by.
+     * @param alpha The alpha transparency level to draw the image with.
+     * @param column The column of the tile.
+     * @param row The row of the tile.
+     * @return The tile.
+     */
+    private fun rasterizeTile(
+        image: Image,
+        scaleX: Double,
+        scaleY: Double,
+        alpha: Float,
+        column: Int,
+        row: Int
+    ): BufferedImage {
+        val tile = ImageUtil.createCompatibleImage(tileSize, tileSize, Transparency.TRANSLUCENT)
+        val gfx = tile.createGraphics()
+
+        // Draw the part of the scaled image covered by the tile
+        gfx.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
+        gfx.translate(-column * tileSize, -row * tileSize)
+        gfx.scale(scaleX, scaleY)
+        if (alpha < 1.0f) gfx.composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)
+        gfx.drawImage(image, 0, 0, null)
+        gfx.dispose()
+
+        return tile
+    }
+}
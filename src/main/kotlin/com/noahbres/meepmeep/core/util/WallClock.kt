@@ -0,0 +1,36 @@
+package com.noahbres.meepmeep.core.util
+
+/**
+ * [SimulationClock] following [System.nanoTime], optionally sped up.
+ *
+ * The first tick after creation or a reset returns zero, so time spent
+ * before the loop starts is not counted.
+ *
+ * @property speed The factor to speed the wall clock up by.
+ */
+class WallClock @JvmOverloads constructor(val speed: Double = 1.0) : SimulationClock {
+    override val isThrottled = true
+
+    override var time = 0L
+        private set
+
+    // Wall time of the previous tick in nanoseconds, or -1 if not ticked yet
+    private var previousTickTime = -1L
+
+    override fun tick(): Long {
+        val currentTickTime = System.nanoTime()
+
+        // Scale the wall time passed since the previous tick
+        val deltaTime = if (previousTickTime < 0) 0L else ((currentTickTime - previousTickTime) * speed).toLong()
+        previousTickTime = currentTickTime
+
+        time += deltaTime
+
+        return deltaTime
+    }
+
+    override fun reset() {
+        time = 0L
+        previousTickTime = -1L
+    }
+}
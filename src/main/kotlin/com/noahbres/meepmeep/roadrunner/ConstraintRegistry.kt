@@ -0,0 +1,113 @@
+package com.noahbres.meepmeep.roadrunner
+
+import com.acmerobotics.roadrunner.trajectory.constraints.AngularVelocityConstraint
+import com.acmerobotics.roadrunner.trajectory.constraints.MecanumVelocityConstraint
+import com.acmerobotics.roadrunner.trajectory.constraints.MinVelocityConstraint
+import com.acmerobotics.roadrunner.trajectory.constraints.ProfileAccelerationConstraint
+import com.acmerobotics.roadrunner.trajectory.constraints.TankVelocityConstraint
+
+/**
+ * Interns the Road Runner constraint objects of every [DriveShim], so
+ * drives with the same [Constraints] and [DriveTrainType] share a single
+ * instance of each instead of allocating their own.
+ *
+ * The constraint objects are immutable, so they are safe to share between
+ * bots and threads. Only the most recently used constraints are kept, so
+ * drives built once per variant, such as those of a
+ * [com.noahbres.meepmeep.roadrunner.sweep.ConstraintSweep], should create
+ * their own through [createVelocityConstraint] and
+ * [createAccelerationConstraint] instead.
+ */
+object ConstraintRegistry {
+    /** The maximum number of interned constraints of each kind. */
+    const val CAPACITY = 64
+
+    /**
+     * Key of an interned velocity constraint.
+     *
+     * @property constraints The constraints of the drive.
+     * @property driveTrainType The drive train type of the drive.
+     */
+    private data class VelocityKey(val constraints: Constraints, val driveTrainType: DriveTrainType)
+
+    /** The interned velocity constraints, ordered from least to most recently used. Guarded by itself. */
+    private val velocityConstraints = object : LinkedHashMap<VelocityKey, MinVelocityConstraint>(CAPACITY + 1, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<VelocityKey, MinVelocityConstraint>?) =
+            size > CAPACITY
+    }
+
+    /**
+     * The interned acceleration constraints by maximum acceleration, ordered
+     * from least to most recently used. Guarded by itself.
+     */
+    private val accelerationConstraints = object : LinkedHashMap<Double, ProfileAccelerationConstraint>(CAPACITY + 1, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Double, ProfileAccelerationConstraint>?) =
+            size > CAPACITY
+    }
+
+    /**
+     * Returns the velocity constraint of a drive, combining its angular
+     * velocity constraint with the one of its drive train.
+     *
+     * @param constraints The constraints of the drive.
+     * @param driveTrainType The drive train type of the drive.
+     * @return The shared velocity constraint.
+     */
+    @JvmStatic
+    fun velocityConstraint(constraints: Constraints, driveTrainType: DriveTrainType): MinVelocityConstraint =
+        synchronized(velocityConstraints) {
+            velocityConstraints.getOrPut(VelocityKey(constraints, driveTrainType)) {
+                createVelocityConstraint(constraints, driveTrainType)
+            }
+        }
+
+    /**
+     * Returns the acceleration constraint of a drive.
+     *
+     * @param constraints The constraints of the drive.
+     * @return The shared acceleration constraint.
+     */
+    @JvmStatic
+    fun accelerationConstraint(constraints: Constraints): ProfileAccelerationConstraint =
+        synchronized(accelerationConstraints) {
+            accelerationConstraints.getOrPut(constraints.maxAccel) { createAccelerationConstraint(constraints) }
+        }
+
+    /**
+     * Creates a new velocity constraint of a drive without interning it.
+     *
+     * @param constraints The constraints of the drive.
+     * @param driveTrainType The drive train type of the drive.
+     * @return The new velocity constraint.
+     */
+    @JvmStatic
+    fun createVelocityConstraint(constraints: Constraints, driveTrainType: DriveTrainType): MinVelocityConstraint =
+        MinVelocityConstraint(
+            listOf(
+                // Constraint for angular velocity
+                AngularVelocityConstraint(constraints.maxAngVel),
+                // Constraint for the drive train velocity
+                when (driveTrainType) {
+                    DriveTrainType.MECANUM -> MecanumVelocityConstraint(constraints.maxVel, constraints.trackWidth)
+                    DriveTrainType.TANK -> TankVelocityConstraint(constraints.maxVel, constraints.trackWidth)
+                }
+            )
+        )
+
+    /**
+     * Creates a new acceleration constraint of a drive without interning it.
+     *
+     * @param constraints The constraints of the drive.
+     * @return The new acceleration constraint.
+     */
+    @JvmStatic
+    fun createAccelerationConstraint(constraints: Constraints): ProfileAccelerationConstraint =
+        ProfileAccelerationConstraint(constraints.maxAccel)
+
+    /** Removes all interned constraints. */
+    @JvmStatic
+    fun clear() {
+        synchronized(velocityConstraints) { velocityConstraints.clear() }
+        synchronized(accelerationConstraints) { accelerationConstraints.clear() }
+    }
+}
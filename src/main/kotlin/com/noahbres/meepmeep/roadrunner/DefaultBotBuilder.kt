@@ -4,7 +4,12 @@ import com.acmerobotics.roadrunner.geometry.Pose2d
 import com.noahbres.meepmeep.MeepMeep
 import com.noahbres.meepmeep.core.colorscheme.ColorScheme
 import com.noahbres.meepmeep.roadrunner.entity.RoadRunnerBotEntity
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.LazyTrajectorySequence
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectoryProfileCache
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
+import java.io.File
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ForkJoinPool
 
 /**
  * [DefaultBotBuilder] is a builder class for creating instances of
@@ -38,6 +43,15 @@ open class DefaultBotBuilder(private val meepMeep: MeepMeep) {
     /** The drive train type of the bot. */
     private var driveTrainType = DriveTrainType.MECANUM
 
+    /** The rate in samples per second to bake trajectory sequences at, or null to not bake them. */
+    private var bakedSampleRate: Double? = null
+
+    /** The cache of motion profiles of built paths, or null to always generate them. */
+    private var profileCache: TrajectoryProfileCache? = null
+
+    /** The number of quantized headings to pre-render the bot at, or null to draw it with its exact rotation. */
+    private var spriteHeadingSteps: Int? = null
+
     /**
      * Sets the dimensions of the bot.
      *
@@ -124,6 +138,61 @@ open class DefaultBotBuilder(private val meepMeep: MeepMeep) {
         return this
     }
 
+    /**
+     * Enables baked playback, sampling the followed trajectory sequence once
+     * into a [com.noahbres.meepmeep.roadrunner.trajectorysequence.PoseSampleCache]
+     * instead of evaluating it every frame.
+     *
+     * @param sampleRate The number of samples per second.
+     * @return The current instance of [DefaultBotBuilder] for chaining.
+     */
+    fun setBakedPlayback(sampleRate: Double): DefaultBotBuilder {
+        this.bakedSampleRate = sampleRate
+
+        return this
+    }
+
+    /**
+     * Enables the persistent profile cache, so the motion profiles of paths
+     * that did not change since the last launch are loaded from disk instead
+     * of being generated again.
+     *
+     * @param directory The directory to store the cached profiles in.
+     *    Defaults to [TrajectoryProfileCache.defaultDirectory].
+     * @return The current instance of [DefaultBotBuilder] for chaining.
+     */
+    @JvmOverloads
+    fun setProfileCache(directory: File = TrajectoryProfileCache.defaultDirectory()): DefaultBotBuilder {
+        this.profileCache = TrajectoryProfileCache(directory)
+
+        return this
+    }
+
+    /**
+     * Draws the bot from sprites pre-rendered at quantized headings instead
+     * of rotating it every frame, which keeps scenes with many bots and
+     * exports fast on software rendering.
+     *
+     * @param headingSteps The number of headings in a full turn to
+     *    pre-render the bot at.
+     * @return The current instance of [DefaultBotBuilder] for chaining.
+     */
+    @JvmOverloads
+    fun setQuantizedSprites(headingSteps: Int = 360): DefaultBotBuilder {
+        this.spriteHeadingSteps = headingSteps
+
+        return this
+    }
+
+    /**
+     * Creates a drive with the current constraints, drive train type, start
+     * pose and profile cache, without creating a bot entity. Useful to build
+     * trajectory sequences headlessly.
+     *
+     * @return A new [DriveShim] instance.
+     */
+    fun createDrive(): DriveShim = DriveShim(driveTrainType, constraints, startPose, profileCache)
+
     /**
      * Builds a new instance of [RoadRunnerBotEntity] using the current
      * configuration of the [DefaultBotBuilder].
@@ -137,7 +206,11 @@ open class DefaultBotBuilder(private val meepMeep: MeepMeep) {
             width, height,
             startPose, colorScheme ?: meepMeep.colorManager.theme, opacity,
             driveTrainType, false
-        )
+        ).also {
+            it.bakedSampleRate = bakedSampleRate
+            it.profileCache = profileCache
+            it.spriteHeadingSteps = spriteHeadingSteps
+        }
     }
 
     /**
@@ -163,6 +236,62 @@ open class DefaultBotBuilder(private val meepMeep: MeepMeep) {
      *    trajectory sequence.
      */
     fun followTrajectorySequence(callback: AddTrajectorySequenceCallback): RoadRunnerBotEntity {
-        return followTrajectorySequence(callback.buildTrajectorySequence(build().drive))
+        return followTrajectorySequence(callback.buildTrajectorySequence(createDrive()))
+    }
+
+    /**
+     * Follows the trajectory sequence built by the provided callback,
+     * building it on the common [ForkJoinPool].
+     *
+     * Sequences of several bots build in parallel while the window and
+     * assets load. Pass the returned future to [MeepMeep.addEntity] to add
+     * the bot as soon as its sequence is ready.
+     *
+     * The bot also starts following the sequence on the pool, which samples
+     * and draws its path. The bot is not in the entity list until it is
+     * added, so this does not touch the loop thread.
+     *
+     * @param callback The [AddTrajectorySequenceCallback] used to build the
+     *    trajectory sequence.
+     * @return A future completing with a [RoadRunnerBotEntity] instance that
+     *    follows the built trajectory sequence.
+     */
+    fun followTrajectorySequenceAsync(callback: AddTrajectorySequenceCallback): CompletableFuture<RoadRunnerBotEntity> {
+        val bot = this.build()
+
+        return CompletableFuture.supplyAsync({
+            bot.followTrajectorySequence(callback.buildTrajectorySequence(bot.drive))
+            bot
+        }, ForkJoinPool.commonPool())
+    }
+
+    /**
+     * Follows a routine built in chunks on demand while the bot plays it,
+     * for very long or generated routines. Only a bounded window of chunks
+     * is kept in memory, and playback starts as soon as the first chunk is
+     * built.
+     *
+     * The drawn path and its markers grow as chunks are built, so marker
+     * callbacks fire in every chunk.
+     *
+     * @param source Builds the chunks of the routine, the first one starting
+     *    at the start pose of the bot.
+     * @param windowSize The maximum number of chunks kept in memory.
+     * @param lookahead The number of chunks built ahead of the playback
+     *    cursor.
+     * @return A [RoadRunnerBotEntity] instance that follows the routine.
+     */
+    @JvmOverloads
+    fun followLazyTrajectorySequence(
+        source: LazyTrajectorySequence.ChunkSource,
+        windowSize: Int = 8,
+        lookahead: Int = 3
+    ): RoadRunnerBotEntity {
+        val bot = this.build()
+        bot.followTrajectorySequence(
+            LazyTrajectorySequence({ bot.drive.trajectorySequenceBuilder(it) }, startPose, source, windowSize, lookahead)
+        )
+
+        return bot
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,7 @@
 package com.noahbres.meepmeep.roadrunner
 
 import com.acmerobotics.roadrunner.geometry.Pose2d
-import com.acmerobotics.roadrunner.trajectory.constraints.AngularVelocityConstraint
-import com.acmerobotics.roadrunner.trajectory.constraints.MecanumVelocityConstraint
-import com.acmerobotics.roadrunner.trajectory.constraints.MinVelocityConstraint
-import com.acmerobotics.roadrunner.trajectory.constraints.ProfileAccelerationConstraint
-import com.acmerobotics.roadrunner.trajectory.constraints.TankVelocityConstraint
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectoryProfileCache
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequenceBuilder
 
 /**
@@ -16,41 +12,38 @@ import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequenceBui
  * @param constraints The constraints for the drive system, including
  *    maximum velocities and accelerations.
  * @param poseEstimate The initial pose estimate of the bot.
+ * @param profileCache The cache to look up the motion profiles of built
+ *    paths in, or null to always generate them.
+ * @param internConstraints Whether to share the constraint objects through
+ *    the [ConstraintRegistry]. Drives built once per variant of a sweep
+ *    create their own instead.
  */
-class DriveShim(
-    driveTrainType: DriveTrainType,
+class DriveShim @JvmOverloads constructor(
+    private val driveTrainType: DriveTrainType,
     private val constraints: Constraints,
-    var poseEstimate: Pose2d
+    var poseEstimate: Pose2d,
+    private val profileCache: TrajectoryProfileCache? = null,
+    private val internConstraints: Boolean = true
 ) {
     /**
      * The velocity constraint for the drive system, determined by the type of
-     * drive train.
+     * drive train. Shared with every drive of the same constraints through
+     * the [ConstraintRegistry] if [internConstraints] is set.
      */
-    private val velConstraint = when (driveTrainType) {
-        DriveTrainType.MECANUM -> MinVelocityConstraint(
-            listOf(
-                // Constraint for angular velocity
-                AngularVelocityConstraint(constraints.maxAngVel),
-                // Constraint for mecanum drive velocity
-                MecanumVelocityConstraint(constraints.maxVel, constraints.trackWidth)
-            )
-        )
-
-        DriveTrainType.TANK -> MinVelocityConstraint(
-            listOf(
-                // Constraint for angular velocity
-                AngularVelocityConstraint(constraints.maxAngVel),
-                // Constraint for tank drive velocity
-                TankVelocityConstraint(constraints.maxVel, constraints.trackWidth)
-            )
-        )
-    }
+    private val velConstraint =
+        if (internConstraints) ConstraintRegistry.velocityConstraint(constraints, driveTrainType)
+        else ConstraintRegistry.createVelocityConstraint(constraints, driveTrainType)
 
     /**
      * The acceleration constraint for the drive system, based on the profile
      * acceleration constraint.
      */
-    private val accelConstraint = ProfileAccelerationConstraint(constraints.maxAccel)
+    private val accelConstraint =
+        if (internConstraints) ConstraintRegistry.accelerationConstraint(constraints)
+        else ConstraintRegistry.createAccelerationConstraint(constraints)
+
+    /** The key identifying the constraints of this drive in the [profileCache]. */
+    private val profileCacheKey = "$driveTrainType|$constraints"
 
     /**
      * Creates a new [TrajectorySequenceBuilder] starting from the given
@@ -66,6 +59,6 @@ class DriveShim(
             accelConstraint,
             constraints.maxAngVel,
             constraints.maxAngAccel,
-        )
+        ).setProfileCache(profileCache, profileCacheKey)
     }
 }
\ No newline at end of file
@@ -9,8 +9,10 @@ import com.noahbres.meepmeep.core.exhaustive
 import com.noahbres.meepmeep.roadrunner.Constraints
 import com.noahbres.meepmeep.roadrunner.DriveShim
 import com.noahbres.meepmeep.roadrunner.DriveTrainType
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.LazyTrajectorySequence
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.PoseSampleCache
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectoryProfileCache
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
-import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.SequenceSegment
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TrajectorySegment
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TurnSegment
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.WaitSegment
@@ -58,12 +60,41 @@ class RoadRunnerBotEntity(
      */
     var drive = DriveShim(driveTrainType, constraints, pose)
 
+    /**
+     * Cache to look up the motion profiles of the paths built with the
+     * [drive] in, or null to always generate them.
+     */
+    var profileCache: TrajectoryProfileCache? = null
+        set(value) {
+            field = value
+            drive = DriveShim(driveTrainType, constraints, pose, value)
+        }
+
     /** The current trajectory sequence the bot is following. */
     var currentTrajectorySequence: TrajectorySequence? = null
 
     /** Entity representing the trajectory sequence. */
     private var trajectorySequenceEntity: TrajectorySequenceEntity? = null
 
+    /**
+     * Rate in samples per second to bake the followed trajectory sequence at,
+     * or null to evaluate the sequence directly every frame.
+     *
+     * Baked playback interpolates the pose from a [PoseSampleCache] instead
+     * of walking the trajectory's spline and profile objects.
+     */
+    var bakedSampleRate: Double? = null
+        set(value) {
+            field = value
+            bakeTrajectorySequence()
+        }
+
+    /** Baked samples of the current trajectory sequence, if baked playback is enabled. */
+    private var poseSampleCache: PoseSampleCache? = null
+
+    /** Reused array holding the x, y and heading sampled from the [poseSampleCache]. */
+    private val bakedPose = DoubleArray(3)
+
     /** Flag indicating if the bot should loop the trajectory sequence. */
     var looping = true
 
@@ -89,6 +120,9 @@ class RoadRunnerBotEntity(
     /** Index of the slider master. */
     private var sliderMasterIndex: Int? = null
 
+    /** Flag indicating if the bot is in the entity list of [meepMeep]. */
+    private var isInEntityList = false
+
     /**
      * Updates the bot entity.
      *
@@ -102,38 +136,42 @@ class RoadRunnerBotEntity(
 
         if (!isTrajectoryPaused) trajectorySequenceElapsedTime += deltaTime / 1e9
 
-        when {
-            trajectorySequenceElapsedTime <= currentTrajectorySequence!!.duration() -> {
-                var segment: SequenceSegment? = null
-                var segmentOffsetTime = 0.0
-                var currentTime = 0.0
+        // Build the chunks of a lazy sequence around the playback cursor
+        (currentTrajectorySequence as? LazyTrajectorySequence)?.let { sequence ->
+            val knownDuration = sequence.duration()
+            sequence.advanceTo(trajectorySequenceElapsedTime)
 
-                // Find the current segment based on elapsed time
-                for (i in 0 until currentTrajectorySequence!!.size()) {
-                    val seg = currentTrajectorySequence!!.get(i)
-
-                    if (currentTime + seg.duration > trajectorySequenceElapsedTime) {
-                        segmentOffsetTime = trajectorySequenceElapsedTime - currentTime
-                        segment = seg
+            if (sequence.duration() != knownDuration) sliderMaster?.refreshDurations()
+        }
 
-                        break
-                    } else {
-                        currentTime += seg.duration
+        when {
+            trajectorySequenceElapsedTime <= currentTrajectorySequence!!.duration() -> {
+                val cache = poseSampleCache
+
+                pose = if (cache != null) {
+                    // Interpolate the pose from the baked samples
+                    cache.samplePose(trajectorySequenceElapsedTime, bakedPose)
+                    Pose2d(bakedPose[0], bakedPose[1], bakedPose[2])
+                } else {
+                    // Find the current segment based on elapsed time
+                    val segmentIndex = currentTrajectorySequence!!.segmentIndexAt(trajectorySequenceElapsedTime)
+                    val segment = if (segmentIndex == -1) null else currentTrajectorySequence!!.get(segmentIndex)
+                    val segmentOffsetTime = if (segmentIndex == -1) 0.0 else
+                        trajectorySequenceElapsedTime - currentTrajectorySequence!!.segmentStartTime(segmentIndex)
+
+                    // Update the bot's pose based on the current segment
+                    when (segment) {
+                        is WaitSegment -> segment.startPose
+                        is TurnSegment -> segment.startPose.copy(heading = segment.motionProfile[segmentOffsetTime].x)
+                        is TrajectorySegment -> segment.trajectory[segmentOffsetTime]
+                        else -> currentTrajectorySequence!!.end()
                     }
                 }
 
-                // Update the bot's pose based on the current segment
-                pose = when (segment) {
-                    is WaitSegment -> segment.startPose
-                    is TurnSegment -> segment.startPose.copy(heading = segment.motionProfile[segmentOffsetTime].x)
-                    is TrajectorySegment -> segment.trajectory[segmentOffsetTime]
-                    else -> currentTrajectorySequence!!.end()
-                }
-
                 drive.poseEstimate = pose
 
                 // Update marker entities
-                trajectorySequenceEntity!!.markerEntityList.forEach { if (trajectorySequenceElapsedTime >= it.time) it.passed() }
+                trajectorySequenceEntity!!.indicatorEntity.passMarkersUntil(trajectorySequenceElapsedTime)
 
                 // Report progress to the slider master
                 sliderMaster?.reportProgress(sliderMasterIndex ?: -1, trajectorySequenceElapsedTime)
@@ -143,7 +181,7 @@ class RoadRunnerBotEntity(
 
             looping -> {
                 // Reset markers and elapsed time for looping
-                trajectorySequenceEntity!!.markerEntityList.forEach { it.reset() }
+                trajectorySequenceEntity!!.indicatorEntity.resetMarkers()
                 trajectorySequenceElapsedTime = 0.0
 
                 sliderMaster?.reportDone(sliderMasterIndex ?: -1)
@@ -198,6 +236,41 @@ class RoadRunnerBotEntity(
         currentTrajectorySequence = sequence
 
         trajectorySequenceEntity = TrajectorySequenceEntity(meepMeep, sequence, colorScheme)
+
+        bakeTrajectorySequence()
+    }
+
+    /**
+     * Replaces the followed trajectory sequence of a running bot, keeping its
+     * progress. The path and indicator entities of the old sequence are
+     * removed along with it, even if they were only requested to be added in
+     * the same frame. Must be called on the loop thread.
+     *
+     * @param sequence The new trajectory sequence to follow.
+     */
+    fun replaceTrajectorySequence(sequence: TrajectorySequence) {
+        val elapsedTime = trajectorySequenceElapsedTime
+
+        // Swap the drawn path along with the sequence
+        if (isInEntityList) requestToRemoveTrajectorySequenceEntities()
+        followTrajectorySequence(sequence)
+        if (isInEntityList) requestToAddTrajectorySequenceEntities()
+
+        trajectorySequenceElapsedTime = min(elapsedTime, sequence.duration())
+        sliderMaster?.refreshDurations()
+    }
+
+    /**
+     * Bakes the current trajectory sequence if baked playback is enabled.
+     * Lazy sequences are never baked, as that would build all of their
+     * chunks up front.
+     */
+    private fun bakeTrajectorySequence() {
+        val sampleRate = bakedSampleRate
+        val sequence = currentTrajectorySequence
+
+        poseSampleCache = if (sampleRate != null && sequence != null && sequence !is LazyTrajectorySequence)
+            PoseSampleCache(sequence, sampleRate) else null
     }
 
     /**
@@ -208,7 +281,7 @@ class RoadRunnerBotEntity(
     fun setConstraints(constraints: Constraints) {
         this.constraints = constraints
 
-        drive = DriveShim(driveTrainType, constraints, pose)
+        drive = DriveShim(driveTrainType, constraints, pose, profileCache)
     }
 
     /**
@@ -219,7 +292,7 @@ class RoadRunnerBotEntity(
     fun setDriveTrainType(driveTrainType: DriveTrainType) {
         this.driveTrainType = driveTrainType
 
-        drive = DriveShim(driveTrainType, constraints, pose)
+        drive = DriveShim(driveTrainType, constraints, pose, profileCache)
     }
 
     /**
@@ -245,11 +318,33 @@ class RoadRunnerBotEntity(
 
     /** Called when the bot is added to the entity list. */
     override fun onAddToEntityList() {
-        trajectorySequenceEntity?.let { meepMeep.requestToAddEntity(it) }
+        isInEntityList = true
+        requestToAddTrajectorySequenceEntities()
     }
 
     /** Called when the bot is removed from the entity list. */
     override fun onRemoveFromEntityList() {
-        trajectorySequenceEntity?.let { meepMeep.requestToRemoveEntity(it) }
+        isInEntityList = false
+        requestToRemoveTrajectorySequenceEntities()
+    }
+
+    /**
+     * Requests to add the path and indicator entities of the trajectory
+     * sequence. The indicators are added first, so the highlighted path is
+     * drawn over them.
+     */
+    private fun requestToAddTrajectorySequenceEntities() {
+        trajectorySequenceEntity?.let {
+            meepMeep.requestToAddEntity(it.indicatorEntity)
+            meepMeep.requestToAddEntity(it)
+        }
+    }
+
+    /** Requests to remove the path and indicator entities of the trajectory sequence. */
+    private fun requestToRemoveTrajectorySequenceEntities() {
+        trajectorySequenceEntity?.let {
+            meepMeep.requestToRemoveEntity(it.indicatorEntity)
+            meepMeep.requestToRemoveEntity(it)
+        }
     }
 }
\ No newline at end of file
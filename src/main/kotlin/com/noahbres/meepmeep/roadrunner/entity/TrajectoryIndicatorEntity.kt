@@ -0,0 +1,518 @@
+package com.noahbres.meepmeep.roadrunner.entity
+
+import com.acmerobotics.roadrunner.geometry.Pose2d
+import com.acmerobotics.roadrunner.geometry.Vector2d
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback
+import com.noahbres.meepmeep.MeepMeep
+import com.noahbres.meepmeep.core.anim.AnimationController
+import com.noahbres.meepmeep.core.anim.Ease
+import com.noahbres.meepmeep.core.colorscheme.ColorScheme
+import com.noahbres.meepmeep.core.entity.StaticLayerEntity
+import com.noahbres.meepmeep.core.entity.ThemedEntity
+import com.noahbres.meepmeep.core.scaleInToPixel
+import com.noahbres.meepmeep.core.toDegrees
+import com.noahbres.meepmeep.core.toRadians
+import com.noahbres.meepmeep.core.toScreenCoord
+import com.noahbres.meepmeep.core.util.FieldUtil
+import java.awt.BasicStroke
+import java.awt.Graphics2D
+import java.awt.geom.Arc2D
+import java.awt.geom.Ellipse2D
+import java.awt.geom.Path2D
+import kotlin.math.abs
+import kotlin.math.min
+
+/**
+ * Entity drawing all marker and turn indicators of a trajectory sequence
+ * in batches.
+ *
+ * The geometry of the indicators never changes, so it is computed once into
+ * a few paths, which are only rebuilt when the canvas size changes. Turn
+ * indicators and marker crosses are drawn in the static layer. The circles
+ * of markers at rest are drawn with a single call in the dynamic layer, and
+ * only the circles of markers currently animating are drawn one by one.
+ *
+ * @property meepMeep The MeepMeep instance.
+ * @property colorScheme The color scheme used for rendering.
+ */
+class TrajectoryIndicatorEntity(
+    override val meepMeep: MeepMeep,
+    private var colorScheme: ColorScheme,
+): ThemedEntity, StaticLayerEntity {
+    companion object {
+        /** Radius of the marker's X shape. */
+        private const val MARKER_X_RADIUS = 0.15
+
+        /** Stroke width of the marker's X shape. */
+        private const val MARKER_X_STROKE_WIDTH = 0.3
+
+        /** Diameter of the marker's circle. */
+        private const val MARKER_CIRCLE_RADIUS = 3.9
+
+        /** Stroke width of the marker's circle. */
+        private const val MARKER_CIRCLE_STROKE_WIDTH = 0.4
+
+        /** Duration of the marker's circle animation in milliseconds. */
+        private const val MARKER_ANIMATION_TIME = 200.0
+
+        /** Diameter of the turn circle. */
+        private const val TURN_CIRCLE_RADIUS = 1.0
+
+        /** Diameter of the turn arc. */
+        private const val TURN_ARC_RADIUS = 7.5
+
+        /** Width of the turn stroke. */
+        private const val TURN_STROKE_WIDTH = 0.5
+
+        /** Length of the turn arrow. */
+        private const val TURN_ARROW_LENGTH = 1.5
+
+        /** Angle of the turn arrow. */
+        private val TURN_ARROW_ANGLE = 30.0.toRadians()
+
+        /** Angle adjustment for the turn arrow. */
+        private val TURN_ARROW_ANGLE_ADJUSTMENT = (-12.5).toRadians()
+    }
+
+    /**
+     * A marker along the trajectory sequence.
+     *
+     * @property pose The pose of the marker.
+     * @property callback The callback invoked when the marker is reached.
+     * @property time The time at which the marker is reached.
+     */
+    private class Marker(val pose: Pose2d, val callback: MarkerCallback, val time: Double) {
+        /** Animation controller for the marker's circle diameter. */
+        val animationController = AnimationController(MARKER_CIRCLE_RADIUS).clip(0.0, MARKER_CIRCLE_RADIUS)
+
+        /** Flag indicating whether the marker has been passed. */
+        var passed = false
+
+        /** The x coordinate of the marker on the canvas, cached with the geometry. */
+        var screenX = 0.0
+
+        /** The y coordinate of the marker on the canvas, cached with the geometry. */
+        var screenY = 0.0
+    }
+
+    /**
+     * A turn of the trajectory sequence.
+     *
+     * @property pos The position of the turn.
+     * @property startAngle The heading at the start of the turn.
+     * @property endAngle The heading at the end of the turn.
+     */
+    private class Turn(val pos: Vector2d, val startAngle: Double, val endAngle: Double)
+
+    /** Tag for the trajectory indicator entity. */
+    override val tag = "TRAJECTORY_INDICATOR_ENTITY"
+
+    /** Z-index for rendering order. */
+    override var zIndex: Int = 0
+
+    /** The version of the static layer, bumped whenever the indicators or their look change. */
+    override var staticLayerVersion = 0
+        private set
+
+    /** The markers, ordered by time. */
+    private val markers = mutableListOf<Marker>()
+
+    /** The turns. */
+    private val turns = mutableListOf<Turn>()
+
+    /** Index of the first marker not passed yet. */
+    private var nextMarkerIndex = 0
+
+    /** The markers whose circle is currently animating. */
+    private val animatingMarkers = mutableListOf<Marker>()
+
+    /** The canvas width the cached geometry was built for. */
+    private var geometryCanvasWidth = Double.NaN
+
+    /** The canvas height the cached geometry was built for. */
+    private var geometryCanvasHeight = Double.NaN
+
+    /** The filled center dots of all turns. */
+    private val turnDots = Path2D.Double()
+
+    /** The arcs and arrows of all turns. */
+    private val turnStrokes = Path2D.Double()
+
+    /** The X shapes of all markers. */
+    private val markerCrosses = Path2D.Double()
+
+    /** The circles of all markers at rest and not passed, or null if they have to be rebuilt. */
+    private var restingMarkerCircles: Path2D.Double? = null
+
+    /** Reused shape for the circles of animating markers. */
+    private val animatingCircle = Ellipse2D.Double()
+
+    /** The stroke of the turn indicators, cached with the geometry. */
+    private var turnStroke = BasicStroke()
+
+    /** The stroke of the marker X shapes, cached with the geometry. */
+    private var markerCrossStroke = BasicStroke()
+
+    /** The stroke of the marker circles, cached with the geometry. */
+    private var markerCircleStroke = BasicStroke()
+
+    /**
+     * Adds a marker indicator.
+     *
+     * @param pose The pose of the marker.
+     * @param callback The callback invoked when the marker is reached.
+     * @param time The time at which the marker is reached.
+     * @param passed Whether the marker counts as passed already, so its
+     *    callback is not triggered until the markers are reset.
+     */
+    @JvmOverloads
+    fun addMarker(pose: Pose2d, callback: MarkerCallback, time: Double, passed: Boolean = false) {
+        val marker = Marker(pose, callback, time)
+        if (passed) {
+            marker.passed = true
+            marker.animationController.value = 0.0
+        }
+
+        // Keep the markers ordered by time, after the markers of the same time
+        val index = markers.indexOfLast { it.time <= time } + 1
+        markers.add(index, marker)
+
+        // Markers added before the next one are passed through again if they were not passed yet
+        if (index < nextMarkerIndex) nextMarkerIndex = if (passed) nextMarkerIndex + 1 else index
+
+        invalidateGeometry()
+    }
+
+    /**
+     * Adds a turn indicator.
+     *
+     * @param pos The position of the turn.
+     * @param startAngle The heading at the start of the turn.
+     * @param endAngle The heading at the end of the turn.
+     */
+    fun addTurn(pos: Vector2d, startAngle: Double, endAngle: Double) {
+        turns.add(Turn(pos, startAngle, endAngle))
+        invalidateGeometry()
+    }
+
+    /** Removes all marker and turn indicators. */
+    fun clear() {
+        markers.clear()
+        turns.clear()
+        animatingMarkers.clear()
+        nextMarkerIndex = 0
+        invalidateGeometry()
+    }
+
+    /**
+     * Releases the passed markers reached before the given time, such as the
+     * markers of chunks a lazy sequence no longer keeps in memory. They are
+     * no longer drawn nor checked.
+     *
+     * @param time The time before which passed markers are released.
+     */
+    fun releasePassedMarkersBefore(time: Double) {
+        removeMarkers { it.passed && it.time < time && it !in animatingMarkers }
+    }
+
+    /** Removes all marker indicators, keeping the turn indicators. */
+    fun clearMarkers() {
+        markers.clear()
+        animatingMarkers.clear()
+        nextMarkerIndex = 0
+        invalidateGeometry()
+    }
+
+    /**
+     * Passes all markers reached by the given time, triggering their
+     * callbacks and animating their circles out.
+     *
+     * @param time The elapsed time of the trajectory sequence.
+     */
+    fun passMarkersUntil(time: Double) {
+        while (nextMarkerIndex < markers.size && markers[nextMarkerIndex].time <= time) {
+            val marker = markers[nextMarkerIndex++]
+            if (marker.passed) continue
+
+            marker.passed = true
+
+            // Animate the circle radius to 0
+            animate(marker, 0.0, Ease.EASE_IN_OUT_CUBIC)
+
+            // Trigger the callback
+            marker.callback.onMarkerReached()
+        }
+    }
+
+    /** Resets all passed markers, animating their circles back in. */
+    fun resetMarkers() {
+        for (i in 0 until nextMarkerIndex) {
+            val marker = markers[i]
+            if (!marker.passed) continue
+
+            marker.passed = false
+
+            // Animate the circle radius back to its original value
+            animate(marker, MARKER_CIRCLE_RADIUS, Ease.EASE_IN_CUBIC)
+        }
+
+        nextMarkerIndex = 0
+    }
+
+    /**
+     * Updates the animating markers, moving them back to the batched circles
+     * once they come to rest.
+     *
+     * @param deltaTime The time since the last update.
+     */
+    override fun update(deltaTime: Long) {
+        if (animatingMarkers.isEmpty()) return
+
+        animatingMarkers.forEach { it.animationController.update(deltaTime) }
+
+        // Markers at rest are drawn with the batched circles again
+        if (animatingMarkers.removeAll { !it.animationController.isAnimating }) restingMarkerCircles = null
+    }
+
+    /**
+     * Renders the turn indicators and marker crosses on the given graphics
+     * context.
+     *
+     * @param gfx The graphics context.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    override fun renderStaticLayer(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
+        ensureGeometry()
+
+        if (turns.isNotEmpty()) {
+            // Set the color and stroke for the turn indicators
+            gfx.color = colorScheme.trajectoryTurnColor
+            gfx.stroke = turnStroke
+
+            gfx.fill(turnDots)
+            gfx.draw(turnStrokes)
+        }
+
+        if (markers.isNotEmpty()) {
+            // Draw the X shapes of all markers at once
+            gfx.color = colorScheme.trajectoryMarkerColor
+            gfx.stroke = markerCrossStroke
+            gfx.draw(markerCrosses)
+        }
+    }
+
+    /**
+     * Renders the marker circles on the given graphics context.
+     *
+     * @param gfx The graphics context.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    override fun renderDynamicLayer(gfx: Graphics2D, canvasWidth: Int, canvasHeight: Int) {
+        if (markers.isEmpty()) return
+
+        ensureGeometry()
+
+        gfx.color = colorScheme.trajectoryMarkerColor
+
+        // Draw the circles of the markers at rest at once
+        gfx.stroke = markerCircleStroke
+        gfx.draw(restingMarkerCircles ?: buildRestingMarkerCircles())
+
+        // Draw the circles of the animating markers one by one
+        animatingMarkers.forEach {
+            val diameter = it.animationController.value.scaleInToPixel()
+
+            animatingCircle.setFrame(it.screenX - diameter / 2, it.screenY - diameter / 2, diameter, diameter)
+            gfx.draw(animatingCircle)
+        }
+    }
+
+    /**
+     * Sets the dimensions of the canvas.
+     *
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    override fun setCanvasDimensions(canvasWidth: Double, canvasHeight: Double) {
+        ensureGeometry()
+    }
+
+    /**
+     * Switches the color scheme of the indicators.
+     *
+     * @param scheme The new color scheme.
+     */
+    override fun switchScheme(scheme: ColorScheme) {
+        if (this.colorScheme != scheme) {
+            this.colorScheme = scheme
+
+            // Invalidate the cached static layer
+            staticLayerVersion++
+        }
+    }
+
+    /**
+     * Removes the markers matching a predicate, keeping the next marker to be
+     * passed the same.
+     *
+     * @param predicate Returns true for the markers to remove.
+     */
+    private fun removeMarkers(predicate: (Marker) -> Boolean) {
+        var removed = 0
+        var removedBeforeNext = 0
+
+        val iterator = markers.listIterator()
+        while (iterator.hasNext()) {
+            val index = iterator.nextIndex()
+            if (!predicate(iterator.next())) continue
+
+            iterator.remove()
+            removed++
+            if (index < nextMarkerIndex) removedBeforeNext++
+        }
+
+        if (removed == 0) return
+
+        nextMarkerIndex -= removedBeforeNext
+        invalidateGeometry()
+    }
+
+    /**
+     * Starts animating the circle of a marker.
+     *
+     * @param marker The marker.
+     * @param target The target diameter of the circle.
+     * @param ease The easing function of the animation.
+     */
+    private fun animate(marker: Marker, target: Double, ease: (t: Double) -> Double) {
+        marker.animationController.anim(target, MARKER_ANIMATION_TIME, ease)
+
+        if (marker.animationController.isAnimating && marker !in animatingMarkers) {
+            animatingMarkers.add(marker)
+            restingMarkerCircles = null
+        }
+    }
+
+    /** Marks the cached geometry as outdated, so it is rebuilt before the next render. */
+    private fun invalidateGeometry() {
+        geometryCanvasWidth = Double.NaN
+        geometryCanvasHeight = Double.NaN
+        restingMarkerCircles = null
+        staticLayerVersion++
+    }
+
+    /** Rebuilds the cached geometry if it is outdated or the canvas size changed. */
+    private fun ensureGeometry() {
+        if (geometryCanvasWidth == FieldUtil.CANVAS_WIDTH && geometryCanvasHeight == FieldUtil.CANVAS_HEIGHT) return
+
+        if (!geometryCanvasWidth.isNaN()) staticLayerVersion++
+
+        geometryCanvasWidth = FieldUtil.CANVAS_WIDTH
+        geometryCanvasHeight = FieldUtil.CANVAS_HEIGHT
+
+        // The stroke widths scale with the canvas
+        turnStroke = BasicStroke(TURN_STROKE_WIDTH.scaleInToPixel().toFloat(), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND)
+        markerCrossStroke = BasicStroke(MARKER_X_STROKE_WIDTH.scaleInToPixel().toFloat())
+        markerCircleStroke = BasicStroke(MARKER_CIRCLE_STROKE_WIDTH.scaleInToPixel().toFloat())
+
+        turnDots.reset()
+        turnStrokes.reset()
+        turns.forEach { appendTurn(it) }
+
+        markerCrosses.reset()
+        markers.forEach { appendMarkerCross(it) }
+
+        restingMarkerCircles = null
+    }
+
+    /**
+     * Appends the center dot, arc and arrow of a turn to the cached paths.
+     *
+     * @param turn The turn.
+     */
+    private fun appendTurn(turn: Turn) {
+        val center = turn.pos.toScreenCoord()
+
+        // Add the turn circle
+        val dotDiameter = TURN_CIRCLE_RADIUS.scaleInToPixel()
+        turnDots.append(
+            Ellipse2D.Double(center.x - dotDiameter / 2, center.y - dotDiameter / 2, dotDiameter, dotDiameter), false
+        )
+
+        // Add the turn arc
+        val arcDiameter = TURN_ARC_RADIUS.scaleInToPixel()
+        val startDegrees = turn.startAngle.toDegrees()
+        val endDegrees = turn.endAngle.toDegrees()
+        turnStrokes.append(
+            Arc2D.Double(
+                center.x - arcDiameter / 2, center.y - arcDiameter / 2, arcDiameter, arcDiameter,
+                min(startDegrees, endDegrees), abs(startDegrees - endDegrees), Arc2D.OPEN
+            ), false
+        )
+
+        // Calculate the arrow point at the end of the arc
+        val arrowPoint = turn.pos + Vector2d(TURN_ARC_RADIUS / 2, 0.0).rotated(turn.endAngle)
+        val translatedPoint = arrowPoint.toScreenCoord()
+
+        // Calculate the rotations of both arrow lines
+        var arrow1Rotated = turn.endAngle - 90.0.toRadians() + TURN_ARROW_ANGLE + TURN_ARROW_ANGLE_ADJUSTMENT
+        if (turn.endAngle < turn.startAngle) arrow1Rotated = 360.0.toRadians() - arrow1Rotated
+
+        var arrow2Rotated = turn.endAngle - 90.0.toRadians() - TURN_ARROW_ANGLE + TURN_ARROW_ANGLE_ADJUSTMENT
+        if (turn.endAngle < turn.startAngle) arrow2Rotated = 360.0.toRadians() - arrow2Rotated
+
+        // Add the arrow lines
+        for (rotation in doubleArrayOf(arrow1Rotated, arrow2Rotated)) {
+            val arrowEnd = (arrowPoint + Vector2d(TURN_ARROW_LENGTH, 0.0).rotated(rotation)).toScreenCoord()
+
+            turnStrokes.moveTo(translatedPoint.x, translatedPoint.y)
+            turnStrokes.lineTo(arrowEnd.x, arrowEnd.y)
+        }
+    }
+
+    /**
+     * Appends the X shape of a marker to the cached path and caches its
+     * center on the canvas.
+     *
+     * @param marker The marker.
+     */
+    private fun appendMarkerCross(marker: Marker) {
+        val radius = MARKER_X_RADIUS.scaleInToPixel()
+
+        // Cache the center of the marker for drawing its circle
+        val center = marker.pose.vec().toScreenCoord()
+        marker.screenX = center.x
+        marker.screenY = center.y
+
+        // Each line of the X goes through the marker between two opposite corners
+        for (degrees in doubleArrayOf(-45.0, 45.0)) {
+            val offset = Vector2d(radius, 0.0).rotated(degrees.toRadians() + marker.pose.heading)
+            val from = (marker.pose.vec() + offset).toScreenCoord()
+            val to = (marker.pose.vec() - offset).toScreenCoord()
+
+            markerCrosses.moveTo(from.x, from.y)
+            markerCrosses.lineTo(to.x, to.y)
+        }
+    }
+
+    /**
+     * Rebuilds the circles of all markers at rest and not passed.
+     *
+     * @return The circles.
+     */
+    private fun buildRestingMarkerCircles(): Path2D.Double {
+        val circles = Path2D.Double()
+        val diameter = MARKER_CIRCLE_RADIUS.scaleInToPixel()
+
+        markers.forEach {
+            if (it.passed || it in animatingMarkers) return@forEach
+
+            circles.append(Ellipse2D.Double(it.screenX - diameter / 2, it.screenY - diameter / 2, diameter, diameter), false)
+        }
+
+        restingMarkerCircles = circles
+        return circles
+    }
+}
@@ -1,22 +1,29 @@
 package com.noahbres.meepmeep.roadrunner.entity
 
-import com.acmerobotics.roadrunner.geometry.Pose2d
+import com.acmerobotics.roadrunner.geometry.Vector2d
 import com.noahbres.meepmeep.MeepMeep
 import com.noahbres.meepmeep.core.colorscheme.ColorScheme
+import com.noahbres.meepmeep.core.entity.ResizableEntity
+import com.noahbres.meepmeep.core.entity.StaticLayerEntity
 import com.noahbres.meepmeep.core.entity.ThemedEntity
 import com.noahbres.meepmeep.core.toScreenCoord
 import com.noahbres.meepmeep.core.util.FieldUtil
+import com.noahbres.meepmeep.core.util.ImageUtil
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.LazyTrajectorySequence
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequenceOutline
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TrajectorySegment
-import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TurnSegment
-import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.WaitSegment
+import java.awt.AlphaComposite
 import java.awt.BasicStroke
 import java.awt.Color
 import java.awt.Graphics2D
-import java.awt.GraphicsEnvironment
+import java.awt.Rectangle
+import java.awt.Shape
 import java.awt.RenderingHints
 import java.awt.Transparency
 import java.awt.geom.Path2D
+import java.awt.geom.PathIterator
+import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
 import kotlin.math.roundToInt
 
@@ -24,33 +31,60 @@ class TrajectorySequenceEntity(
     override val meepMeep: MeepMeep,
     private val trajectorySequence: TrajectorySequence,
     private var colorScheme: ColorScheme,
-): ThemedEntity {
+): ThemedEntity, StaticLayerEntity, ResizableEntity {
     /** Tag for the trajectory sequence entity. */
     override val tag = "TRAJECTORY_SEQUENCE_ENTITY"
 
     /** Z-index for rendering order. */
     override var zIndex: Int = 0
 
-    /** List to store marker indicator entities */
-    val markerEntityList = mutableListOf<MarkerIndicatorEntity>()
+    /** Entity drawing the marker and turn indicators of the trajectory sequence. */
+    val indicatorEntity = TrajectoryIndicatorEntity(meepMeep, colorScheme)
 
     /** Value representing the progress of the trajectory. */
     var trajectoryProgress: Double? = null
 
+    /**
+     * The outline the path and the indicators are drawn from, or null for a
+     * lazy sequence, which keeps the outlines of its chunks itself.
+     */
+    private val outline: TrajectorySequenceOutline?
+
+    /**
+     * The number of chunks of a lazy sequence drawn so far, or 1 for a
+     * sequence that is not lazy. Read off the loop thread when the path is
+     * rendered for another canvas size.
+     */
+    @Volatile
+    private var drawnChunks = 0
+
+    /** The first chunk of a lazy sequence whose markers are indicated. */
+    private var markerChunksStart = 0
+
+    /** The chunk of a lazy sequence after the last one whose markers are indicated. */
+    private var markerChunksEnd = 0
+
     /** Canvas width. */
     private var canvasWidth = FieldUtil.CANVAS_WIDTH
 
     /** Canvas height. */
     private var canvasHeight = FieldUtil.CANVAS_HEIGHT
 
-    /** Buffered image for rendering the trajectory sequence. */
-    private lateinit var baseBufferedImage: BufferedImage
+    /** Sprite of the unfocused path, cropped to its bounds, or null if there is no path to draw. */
+    private var baseSprite: PathSprite? = null
+
+    /** The version of the static layer, bumped whenever the path is redrawn. */
+    override var staticLayerVersion = 0
+        private set
 
-    /** Buffered image for rendering the current segment. */
-    private var currentSegmentImage: BufferedImage? = null
+    /** Sprite of the highlighted current segment, or null if no segment is highlighted. */
+    private var currentSegmentSprite: PathSprite? = null
 
-    /** List to store turn indicator entities. */
-    private val turnEntityList = mutableListOf<TurnIndicatorEntity>()
+    /** Sprites of the most recently highlighted segments, by segment index, ordered from least to most recently used. */
+    private val segmentSprites = object : LinkedHashMap<Int, PathSprite>(SEGMENT_SPRITE_CAPACITY + 1, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Int, PathSprite>?) =
+            size > SEGMENT_SPRITE_CAPACITY
+    }
 
     /** Last segment of the trajectory sequence. */
     private var lastSegment: TrajectorySegment? = null
@@ -58,6 +92,9 @@ class TrajectorySequenceEntity(
     /** Current segment of the trajectory sequence. */
     private var currentSegment: TrajectorySegment? = null
 
+    /** Index of the current segment in the trajectory sequence. */
+    private var currentSegmentIndex = -1
+
     /** Static values for the trajectory sequence entity. */
     companion object {
         /** Width of the inner stroke for the path. */
@@ -73,203 +110,461 @@ class TrajectorySequenceEntity(
         const val PATH_UNFOCUSED_OPACITY = 0.3
 
         /** Resolution for sampling the path. */
-        const val SAMPLE_RESOLUTION = 1.2
+        const val SAMPLE_RESOLUTION = TrajectorySequenceOutline.SAMPLE_SPACING
+
+        /** Margin in pixels around the stroked bounds of a sprite, for antialiasing. */
+        private const val SPRITE_MARGIN = 2
+
+        /** Maximum number of highlighted segment sprites kept for reuse. */
+        private const val SEGMENT_SPRITE_CAPACITY = 16
+
+        /** Number of samples in each piece a path is split into for culling. */
+        private const val PIECE_SAMPLES = 16
+
+        /**
+         * Splits a path into pieces of [PIECE_SAMPLES] samples, each starting
+         * where the previous one ends.
+         *
+         * @param path The path, made of lines only.
+         * @param stroke The widest stroke the path is drawn with.
+         * @return The pieces of the path.
+         */
+        private fun splitPath(path: Path2D, stroke: BasicStroke): List<PathPiece> {
+            val pieces = mutableListOf<PathPiece>()
+            val coords = DoubleArray(6)
+            val iterator = path.getPathIterator(null)
+
+            var piece = Path2D.Double()
+            var samples = 0
+
+            // Finish the current piece, growing its bounds by the stroke so culling never cuts it off
+            fun finishPiece() {
+                if (samples > 0) {
+                    val margin = stroke.lineWidth / 2.0 + SPRITE_MARGIN
+                    val bounds = piece.bounds2D
+                    bounds.setRect(
+                        bounds.x - margin, bounds.y - margin, bounds.width + 2 * margin, bounds.height + 2 * margin
+                    )
+
+                    pieces.add(PathPiece(piece, bounds))
+                }
+
+                piece = Path2D.Double()
+                samples = 0
+            }
+
+            while (!iterator.isDone) {
+                when (iterator.currentSegment(coords)) {
+                    PathIterator.SEG_MOVETO -> {
+                        finishPiece()
+                        piece.moveTo(coords[0], coords[1])
+                    }
+
+                    PathIterator.SEG_LINETO -> {
+                        piece.lineTo(coords[0], coords[1])
+                        samples++
+
+                        // Continue the next piece from the last sample
+                        if (samples == PIECE_SAMPLES) {
+                            finishPiece()
+                            piece.moveTo(coords[0], coords[1])
+                        }
+                    }
+                }
+
+                iterator.next()
+            }
+
+            finishPiece()
+
+            return pieces
+        }
     }
 
+    /**
+     * A drawn path cropped to its bounds.
+     *
+     * While the camera is zoomed in, the path is drawn as vectors through
+     * [draw] instead, so it stays sharp, skipping the pieces of its [parts]
+     * outside of the viewport.
+     *
+     * @property image The image holding the drawn path.
+     * @property x The x coordinate of the image on the canvas.
+     * @property y The y coordinate of the image on the canvas.
+     * @property parts The parts of the path, one for every time it was
+     *    extended.
+     * @property opacity The opacity the path is drawn with. Strokes drawn
+     *    into the image are opaque, so overlapping parts blend like a single
+     *    stroke.
+     * @property draw Draws a shape with the strokes and colors of the path.
+     */
+    private class PathSprite(
+        val image: BufferedImage,
+        val x: Int,
+        val y: Int,
+        val parts: List<PathPart>,
+        val opacity: Float,
+        val draw: (Graphics2D, Shape) -> Unit,
+    )
+
+    /**
+     * A part of a drawn path.
+     *
+     * @param path The path, in canvas coordinates.
+     * @param stroke The widest stroke the path is drawn with.
+     */
+    private class PathPart(path: Path2D, stroke: BasicStroke) {
+        /** The pieces of the path, only split the first time the camera zooms in. */
+        val pieces by lazy { splitPath(path, stroke) }
+    }
+
+    /**
+     * A piece of a path.
+     *
+     * @property path The piece of the path.
+     * @property bounds The bounds of the piece when stroked, in canvas
+     *    coordinates.
+     */
+    private class PathPiece(val path: Path2D, val bounds: Rectangle2D)
+
     /** Initializes the trajectory sequence entity and draws the path. */
     init {
+        val outlines = if (trajectorySequence is LazyTrajectorySequence) {
+            // Listen first, so no chunk is built between taking the outlines and listening
+            trajectorySequence.addChunkListener { index, outline ->
+                meepMeep.runOnLoopThread { addChunk(index, outline) }
+            }
+
+            outline = null
+            trajectorySequence.chunkOutlines
+        } else {
+            outline = TrajectorySequenceOutline(trajectorySequence)
+            listOf(outline)
+        }
+        drawnChunks = outlines.size
+
+        // Add the turn and marker indicators, only the markers around the start of a lazy sequence
+        outlines.forEach { addTurns(it) }
+        if (outline != null) addMarkers(outline) else updateMarkerWindow(0.0)
+
         redrawPath()
     }
 
-    /** Redraws the entire trajectory path. */
+    /**
+     * Returns the outlines of the drawn path, one for every drawn chunk of a
+     * lazy sequence.
+     *
+     * @param count The number of drawn chunks.
+     * @return The outlines.
+     */
+    private fun drawnOutlines(count: Int): List<TrajectorySequenceOutline> {
+        outline?.let { return listOf(it) }
+
+        return (trajectorySequence as LazyTrajectorySequence).chunkOutlines.subList(0, count)
+    }
+
+    /**
+     * Redraws the entire trajectory path. The indicators keep which markers
+     * were passed, so their callbacks are not triggered again.
+     */
     private fun redrawPath() {
-        // Clear previous turn indicator entities
-        turnEntityList.forEach {
-            meepMeep.requestToRemoveEntity(it)
-        }
-        turnEntityList.clear()
+        // Invalidate the cached static layer and the highlighted segments drawn with the previous scheme
+        staticLayerVersion++
+        clearSegmentSprites()
+
+        baseSprite = renderBaseSprite(canvasWidth, canvasHeight, colorScheme, drawnOutlines(drawnChunks))
+    }
+
+    /**
+     * Adds the turn indicators of an outline.
+     *
+     * @param outline The outline.
+     */
+    private fun addTurns(outline: TrajectorySequenceOutline) {
+        outline.turns.forEach { indicatorEntity.addTurn(it.position, it.startHeading, it.endHeading) }
+    }
+
+    /**
+     * Adds the marker indicators of an outline.
+     *
+     * @param outline The outline.
+     * @param progress The trajectory progress in seconds, markers before
+     *    which count as passed already.
+     */
+    private fun addMarkers(outline: TrajectorySequenceOutline, progress: Double = 0.0) {
+        outline.markers.forEach { indicatorEntity.addMarker(it.pose, it.callback, it.time, it.time < progress) }
+    }
+
+    /**
+     * Adds a newly built chunk of a lazy sequence to the path and the turn
+     * indicators. Only the new chunk is drawn, onto the sprite of the path
+     * drawn so far. Its markers are indicated once it comes into the window
+     * around the playback cursor.
+     *
+     * @param index The index of the chunk.
+     * @param outline The outline of the chunk.
+     */
+    private fun addChunk(index: Int, outline: TrajectorySequenceOutline) {
+        // Chunks built before the outlines were taken are already drawn
+        if (index < drawnChunks) return
+
+        drawnChunks = index + 1
+        addTurns(outline)
+
+        staticLayerVersion++
+        baseSprite = extendBaseSprite(baseSprite, outline)
+    }
+
+    /**
+     * Indicates the markers of the chunks of a lazy sequence within its
+     * window size of the chunk under the playback cursor, so the indicators
+     * stay bounded however long the routine is. The passed markers of chunks
+     * falling behind the window are released. Once playback jumps back, such
+     * as when looping, the markers of the window are indicated from scratch.
+     *
+     * @param progress The trajectory progress in seconds.
+     */
+    private fun updateMarkerWindow(progress: Double) {
+        val sequence = trajectorySequence as? LazyTrajectorySequence ?: return
+
+        val cursorChunk = sequence.getChunkIndexAt(progress)
+        val start = (cursorChunk - sequence.windowSize + 1).coerceAtLeast(0)
+        val end = (cursorChunk + sequence.windowSize).coerceAtMost(drawnChunks)
+        if (start == markerChunksStart && end <= markerChunksEnd) return
+
+        if (start < markerChunksStart || start >= markerChunksEnd) {
+            // Markers before the cursor count as passed, so their callbacks are not triggered
+            indicatorEntity.clearMarkers()
+            for (i in start until end) addMarkers(sequence.getChunkOutline(i), progress)
 
-        // Clear previous marker indicator entities
-        markerEntityList.forEach {
-            meepMeep.requestToRemoveEntity(it)
+            markerChunksEnd = end
+        } else {
+            if (start > markerChunksStart) indicatorEntity.releasePassedMarkersBefore(sequence.getChunkStartTime(start))
+            for (i in markerChunksEnd until end) addMarkers(sequence.getChunkOutline(i), progress)
+
+            markerChunksEnd = maxOf(end, markerChunksEnd)
         }
-        markerEntityList.clear()
-
-        // Get the default screen device and configuration
-        val environment = GraphicsEnvironment.getLocalGraphicsEnvironment()
-        val device = environment.defaultScreenDevice
-        val config = device.defaultConfiguration
-
-        // Create a compatible image for the trajectory sequence
-        baseBufferedImage =
-                config.createCompatibleImage(
-                    canvasWidth.toInt(),
-                    canvasHeight.toInt(),
-                    Transparency.TRANSLUCENT,
-                )
-        val gfx = baseBufferedImage.createGraphics()
 
-        // Set rendering hints for the graphics
-        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
-        gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
+        markerChunksStart = start
+    }
+
+    /** Drops the highlighted segment sprites, so they are rendered again when highlighted. */
+    private fun clearSegmentSprites() {
+        segmentSprites.clear()
+        currentSegmentSprite = null
+        lastSegment = null
+    }
 
+    /**
+     * Renders the unfocused path into a sprite covering only its bounds.
+     *
+     * Only the given arguments are used, so the path can be rendered for
+     * another canvas size off the loop thread.
+     *
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     * @param scheme The color scheme to draw with.
+     * @param outlines The outlines of the path.
+     * @return The sprite, or null if there is no path to draw.
+     */
+    private fun renderBaseSprite(
+        canvasWidth: Double,
+        canvasHeight: Double,
+        scheme: ColorScheme,
+        outlines: List<TrajectorySequenceOutline>,
+    ): PathSprite? {
         // Create a path for the trajectory sequence
         val trajectoryDrawnPath = Path2D.Double()
 
         // Create strokes for the inner path
         val innerStroke =
                 BasicStroke(
-                    FieldUtil.scaleInchesToPixel(PATH_INNER_STROKE_WIDTH).toFloat(),
+                    FieldUtil.scaleInchesToPixel(PATH_INNER_STROKE_WIDTH, canvasWidth, canvasHeight).toFloat(),
                     BasicStroke.CAP_BUTT,
                     BasicStroke.JOIN_ROUND,
                 )
 
-        var currentEndPose = trajectorySequence.start()
-        val firstVec = trajectorySequence.start().vec().toScreenCoord()
+        val firstVec = FieldUtil.fieldCoordsToScreenCoords(outlines.first().start.vec(), canvasWidth, canvasHeight)
         trajectoryDrawnPath.moveTo(firstVec.x, firstVec.y)
 
-        // Draw the trajectory path
-        for (i in 0 until trajectorySequence.size()) {
-            when (val step = trajectorySequence.get(i)) {
-                is TrajectorySegment -> {
-                    // Get the trajectory from the segment
-                    val trajectory = step.trajectory
-
-                    // Calculate the number of samples based on the trajectory length and sample resolution
-                    val displacementSamples =
-                            (trajectory.path.length() / SAMPLE_RESOLUTION).roundToInt()
-
-                    // Generate a list of displacements along the trajectory path
-                    val displacements =
-                            (0..displacementSamples).map {
-                                it / displacementSamples.toDouble() * trajectory.path.length()
-                            }
-
-                    // Map the displacements to poses along the trajectory path
-                    val poses = displacements.map { trajectory.path[it] }
-
-                    // Draw the trajectory path by connecting the poses
-                    for (pose in poses.drop(1)) {
-                        val coord = pose.vec().toScreenCoord()
-                        trajectoryDrawnPath.lineTo(coord.x, coord.y)
-                    }
+        // Draw the trajectory path by connecting the points of the outlines, each starting where the previous one ends
+        for (outline in outlines) {
+            for (i in 0 until outline.pathPointCount) {
+                val coord = FieldUtil.fieldCoordsToScreenCoords(
+                    Vector2d(outline.getPathX(i), outline.getPathY(i)), canvasWidth, canvasHeight
+                )
+                trajectoryDrawnPath.lineTo(coord.x, coord.y)
+            }
+        }
 
-                    // Update the current end pose to the end of the trajectory
-                    currentEndPose = step.trajectory.end()
-                }
+        // Draw the unfocused path into a sprite covering only its bounds
+        return createPathSprite(trajectoryDrawnPath, innerStroke, PATH_UNFOCUSED_OPACITY.toFloat(), drawBasePath(innerStroke, scheme))
+    }
 
-                is TurnSegment -> {
-                    // Create a turn indicator entity for the turn segment
-                    val turnEntity =
-                            TurnIndicatorEntity(
-                                meepMeep,
-                                colorScheme,
-                                currentEndPose.vec(),
-                                currentEndPose.heading,
-                                currentEndPose.heading + step.totalRotation,
-                            )
-
-                    // Add the turn entity to the list and request to add it to MeepMeep
-                    turnEntityList.add(turnEntity)
-                    meepMeep.requestToAddEntity(turnEntity)
-                }
+    /**
+     * Draws a newly built chunk onto the sprite of the unfocused path, growing
+     * the sprite if the chunk reaches past its bounds. The sprite is drawn
+     * into in place if the chunk fits, so adding a chunk only costs drawing
+     * the chunk itself.
+     *
+     * @param sprite The sprite of the path drawn so far, or null if nothing
+     *    was drawn yet.
+     * @param outline The outline of the chunk.
+     * @return The sprite of the extended path, or null if there is still no
+     *    path to draw.
+     */
+    private fun extendBaseSprite(sprite: PathSprite?, outline: TrajectorySequenceOutline): PathSprite? {
+        val innerStroke =
+                BasicStroke(
+                    FieldUtil.scaleInchesToPixel(PATH_INNER_STROKE_WIDTH, canvasWidth, canvasHeight).toFloat(),
+                    BasicStroke.CAP_BUTT,
+                    BasicStroke.JOIN_ROUND,
+                )
 
-                is WaitSegment -> {
-                    // No action needed for WaitSegment
-                }
-            }
+        // The chunk starts where the previous one ends
+        val chunkPath = Path2D.Double()
+        val firstVec = FieldUtil.fieldCoordsToScreenCoords(outline.start.vec(), canvasWidth, canvasHeight)
+        chunkPath.moveTo(firstVec.x, firstVec.y)
+
+        for (i in 0 until outline.pathPointCount) {
+            val coord = FieldUtil.fieldCoordsToScreenCoords(
+                Vector2d(outline.getPathX(i), outline.getPathY(i)), canvasWidth, canvasHeight
+            )
+            chunkPath.lineTo(coord.x, coord.y)
         }
 
-        var currentTime = 0.0
-
-        // Draw the markers along the trajectory sequence
-        for (i in 0 until trajectorySequence.size()) {
-            val segment = trajectorySequence.get(i)
-            if (segment is WaitSegment || segment is TurnSegment) {
-                // Iterate through each marker in the segment
-                segment.markers.forEach { marker ->
-                    // Determine the pose based on the segment type
-                    val pose =
-                            when (segment) {
-                                is WaitSegment -> segment.startPose
-                                is TurnSegment -> segment.startPose.copy(heading = segment.motionProfile[marker.time].x)
-                                else -> Pose2d()
-                            }
-
-                    // Create a new marker entity with the determined pose and add it to the list
-                    val markerEntity =
-                            MarkerIndicatorEntity(
-                                meepMeep,
-                                colorScheme,
-                                pose,
-                                marker.callback,
-                                currentTime + marker.time,
-                            )
-                    markerEntityList.add(markerEntity)
-                    meepMeep.requestToAddEntity(markerEntity)
-                }
-            } else if (segment is TrajectorySegment) {
-                // Iterate through each marker in the trajectory segment
-                segment.trajectory.markers.forEach { marker ->
-                    // Get the pose at the marker time
-                    val pose = segment.trajectory[marker.time]
-
-                    // Create a new marker entity with the determined pose and add it to the list
-                    val markerEntity =
-                            MarkerIndicatorEntity(
-                                meepMeep,
-                                colorScheme,
-                                pose,
-                                marker.callback,
-                                currentTime + marker.time,
-                            )
-                    markerEntityList.add(markerEntity)
-                    meepMeep.requestToAddEntity(markerEntity)
-                }
-            }
+        if (sprite == null) {
+            return createPathSprite(chunkPath, innerStroke, PATH_UNFOCUSED_OPACITY.toFloat(), drawBasePath(innerStroke, colorScheme))
+        }
 
-            // Update the current time based on the segment duration
-            currentTime += segment.duration
+        val bounds = innerStroke.createStrokedShape(chunkPath).bounds
+        if (bounds.isEmpty) return sprite
+
+        bounds.grow(SPRITE_MARGIN, SPRITE_MARGIN)
+        val spriteBounds = Rectangle(sprite.x, sprite.y, sprite.image.width, sprite.image.height)
+
+        // Grow the image to cover the chunk, copying the path drawn so far
+        var image = sprite.image
+        val imageBounds = if (spriteBounds.contains(bounds)) spriteBounds else spriteBounds.union(bounds)
+        if (imageBounds != spriteBounds) {
+            image = ImageUtil.createCompatibleImage(imageBounds.width, imageBounds.height, Transparency.TRANSLUCENT)
+            val copyGfx = image.createGraphics()
+            copyGfx.drawImage(sprite.image, null, sprite.x - imageBounds.x, sprite.y - imageBounds.y)
+            copyGfx.dispose()
         }
 
+        val gfx = image.createGraphics()
+        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
+        gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
+        gfx.translate(-imageBounds.x, -imageBounds.y)
+        sprite.draw(gfx, chunkPath)
+        gfx.dispose()
+
+        return PathSprite(image, imageBounds.x, imageBounds.y, sprite.parts + PathPart(chunkPath, innerStroke), sprite.opacity, sprite.draw)
+    }
+
+    /**
+     * Returns the function drawing the unfocused path, opaque so it is
+     * blended with [PATH_UNFOCUSED_OPACITY] as a whole.
+     *
+     * @param innerStroke The stroke of the path.
+     * @param scheme The color scheme to draw with.
+     * @return The function drawing a shape of the path.
+     */
+    private fun drawBasePath(innerStroke: BasicStroke, scheme: ColorScheme): (Graphics2D, Shape) -> Unit = { gfx, shape ->
         gfx.stroke = innerStroke
-        gfx.color = colorScheme.trajectoryPathColor
-        gfx.color =
-                Color(
-                    colorScheme.trajectoryPathColor.red,
-                    colorScheme.trajectoryPathColor.green,
-                    colorScheme.trajectoryPathColor.blue,
-                    (PATH_UNFOCUSED_OPACITY * 255).toInt(),
-                )
-        gfx.draw(trajectoryDrawnPath)
+        gfx.color = scheme.trajectoryPathColor
+        gfx.draw(shape)
     }
 
-    /** Redraws the current segment of the trajectory. */
-    private fun redrawCurrentSegment() {
-        // If there is no current segment, clear the current segment image and return
-        if (currentSegment == null) {
-            currentSegmentImage = null
-            return
-        }
+    /**
+     * Draws a path into a sprite cropped to the bounds of the path stroked
+     * with the given stroke.
+     *
+     * @param path The path, in canvas coordinates.
+     * @param stroke The widest stroke the path is drawn with.
+     * @param opacity The opacity the sprite is drawn with.
+     * @param draw Draws a shape with the strokes and colors of the path. The
+     *    graphics of the sprite are translated so canvas coordinates can be
+     *    used.
+     * @return The sprite, or null if the path covers no pixels.
+     */
+    private fun createPathSprite(
+        path: Path2D,
+        stroke: BasicStroke,
+        opacity: Float,
+        draw: (Graphics2D, Shape) -> Unit,
+    ): PathSprite? {
+        val bounds = stroke.createStrokedShape(path).bounds
+        if (bounds.isEmpty) return null
 
-        // Get the default screen device and configuration
-        val environment = GraphicsEnvironment.getLocalGraphicsEnvironment()
-        val device = environment.defaultScreenDevice
-        val config = device.defaultConfiguration
-
-        // Create a compatible image for the current segment
-        currentSegmentImage =
-                config.createCompatibleImage(
-                    canvasWidth.toInt(),
-                    canvasHeight.toInt(),
-                    Transparency.TRANSLUCENT,
-                )
-        val gfx = currentSegmentImage!!.createGraphics()
+        bounds.grow(SPRITE_MARGIN, SPRITE_MARGIN)
+
+        val image = ImageUtil.createCompatibleImage(bounds.width, bounds.height, Transparency.TRANSLUCENT)
+        val gfx = image.createGraphics()
 
         // Set rendering hints for the graphics
         gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
         gfx.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY)
 
+        // Offset the drawing so the top left corner of the bounds lands at the origin of the image
+        gfx.translate(-bounds.x, -bounds.y)
+        draw(gfx, path)
+        gfx.dispose()
+
+        return PathSprite(image, bounds.x, bounds.y, listOf(PathPart(path, stroke)), opacity, draw)
+    }
+
+    /**
+     * Draws a sprite, or the pieces of its path within the viewport while the
+     * camera is zoomed in.
+     *
+     * @param gfx The graphics context, transformed by the camera.
+     * @param sprite The sprite to draw.
+     */
+    private fun drawSprite(gfx: Graphics2D, sprite: PathSprite) {
+        val camera = meepMeep.camera
+
+        val composite = gfx.composite
+        if (sprite.opacity < 1f) gfx.composite = AlphaComposite.SrcOver.derive(sprite.opacity)
+
+        if (camera.isIdentity) {
+            gfx.drawImage(sprite.image, null, sprite.x, sprite.y)
+        } else {
+            // Rasterize the visible pieces at the zoom of the camera instead of scaling the sprite up
+            for (part in sprite.parts) {
+                for (piece in part.pieces) {
+                    if (piece.bounds.intersects(camera.viewport)) sprite.draw(gfx, piece.path)
+                }
+            }
+        }
+
+        gfx.composite = composite
+    }
+
+    /**
+     * Switches the highlight to the current segment of the trajectory,
+     * rendering its sprite the first time it is highlighted.
+     */
+    private fun redrawCurrentSegment() {
+        val segment = currentSegment
+        if (segment == null) {
+            currentSegmentSprite = null
+            return
+        }
+
+        // Reuse the sprite of the segment if it was highlighted before
+        currentSegmentSprite = segmentSprites[currentSegmentIndex]
+            ?: renderSegmentSprite(segment)?.also { segmentSprites[currentSegmentIndex] = it }
+    }
+
+    /**
+     * Renders the highlighted path of a segment into a sprite.
+     *
+     * @param segment The segment to render.
+     * @return The sprite, or null if the segment covers no pixels.
+     */
+    private fun renderSegmentSprite(segment: TrajectorySegment): PathSprite? {
         // Create a path for the trajectory segment
         val trajectoryDrawnPath = Path2D.Double()
 
@@ -287,11 +582,11 @@ class TrajectorySequenceEntity(
                     BasicStroke.JOIN_ROUND,
                 )
 
-        // Get the trajectory from the current segment
-        val trajectory = currentSegment!!.trajectory
+        // Get the trajectory from the segment
+        val trajectory = segment.trajectory
 
         // Move to the starting position of the trajectory
-        val firstVec = currentSegment!!.startPose.vec().toScreenCoord()
+        val firstVec = segment.startPose.vec().toScreenCoord()
         trajectoryDrawnPath.moveTo(firstVec.x, firstVec.y)
 
         // Calculate the number of samples based on the trajectory length and sample resolution
@@ -312,21 +607,23 @@ class TrajectorySequenceEntity(
             trajectoryDrawnPath.lineTo(coord.x, coord.y)
         }
 
-        // Draw the outer path with the specified opacity and color
-        gfx.stroke = outerStroke
-        gfx.color =
-                Color(
-                    colorScheme.trajectoryPathColor.red,
-                    colorScheme.trajectoryPathColor.green,
-                    colorScheme.trajectoryPathColor.blue,
-                    (PATH_OUTER_OPACITY * 255).toInt(),
-                )
-        gfx.draw(trajectoryDrawnPath)
-
-        // Draw the inner path with the full color
-        gfx.stroke = innerStroke
-        gfx.color = colorScheme.trajectoryPathColor
-        gfx.draw(trajectoryDrawnPath)
+        return createPathSprite(trajectoryDrawnPath, outerStroke, 1f) { gfx, shape ->
+            // Draw the outer path with the specified opacity and color
+            gfx.stroke = outerStroke
+            gfx.color =
+                    Color(
+                        colorScheme.trajectoryPathColor.red,
+                        colorScheme.trajectoryPathColor.green,
+                        colorScheme.trajectoryPathColor.blue,
+                        (PATH_OUTER_OPACITY * 255).toInt(),
+                    )
+            gfx.draw(shape)
+
+            // Draw the inner path with the full color
+            gfx.stroke = innerStroke
+            gfx.color = colorScheme.trajectoryPathColor
+            gfx.draw(shape)
+        }
     }
 
     /**
@@ -339,20 +636,19 @@ class TrajectorySequenceEntity(
         if (trajectoryProgress == null) {
             // If there is no trajectory progress, set the current segment to null
             currentSegment = null
+            currentSegmentIndex = -1
         } else {
-            var currentTime = 0.0
-            for (i in 0 until trajectorySequence.size()) {
-                val seg = trajectorySequence.get(i)
-
-                if (currentTime + seg.duration > trajectoryProgress!!) {
-                    // If the current time plus the segment duration exceeds the trajectory progress,
-                    // set the current segment to this segment
-                    if (seg is TrajectorySegment) currentSegment = seg
-
-                    break
-                } else {
-                    // Otherwise, add the segment duration to the current time
-                    currentTime += seg.duration
+            updateMarkerWindow(trajectoryProgress!!)
+
+            // Look up the segment active at the trajectory progress
+            val index = trajectorySequence.segmentIndexAt(trajectoryProgress!!)
+
+            // Only trajectory segments are highlighted, other segments keep the previous one
+            if (index != -1) {
+                val seg = trajectorySequence.get(index)
+                if (seg is TrajectorySegment) {
+                    currentSegment = seg
+                    currentSegmentIndex = index
                 }
             }
         }
@@ -367,22 +663,50 @@ class TrajectorySequenceEntity(
     }
 
     /**
-     * Renders the trajectory sequence entity on the given graphics context.
+     * Renders the unfocused trajectory path on the given graphics context.
      *
      * @param gfx The graphics context to render on.
      * @param canvasWidth The width of the canvas.
      * @param canvasHeight The height of the canvas.
      */
-    override fun render(
+    override fun renderStaticLayer(
         gfx: Graphics2D,
         canvasWidth: Int,
         canvasHeight: Int,
     ) {
-        // Draw the base buffered image
-        gfx.drawImage(baseBufferedImage, null, 0, 0)
+        // Draw the unfocused path sprite at its position on the canvas
+        baseSprite?.let { drawSprite(gfx, it) }
+    }
 
-        // Draw the current segment image if it exists
-        if (currentSegmentImage != null) gfx.drawImage(currentSegmentImage, null, 0, 0)
+    /**
+     * Renders the highlighted current segment on the given graphics context.
+     *
+     * @param gfx The graphics context to render on.
+     * @param canvasWidth The width of the canvas.
+     * @param canvasHeight The height of the canvas.
+     */
+    override fun renderDynamicLayer(
+        gfx: Graphics2D,
+        canvasWidth: Int,
+        canvasHeight: Int,
+    ) {
+        // Draw the current segment sprite at its position on the canvas if it exists
+        currentSegmentSprite?.let { drawSprite(gfx, it) }
+    }
+
+    /**
+     * Checks whether the path lies within the viewport. The unfocused path
+     * covers every highlighted segment, so its bounds are used.
+     *
+     * @param viewport The visible part of the canvas.
+     * @return True if the bounds of the path intersect the viewport.
+     */
+    override fun isInViewport(viewport: Rectangle2D): Boolean {
+        val sprite = baseSprite ?: return false
+
+        return viewport.intersects(
+            sprite.x.toDouble(), sprite.y.toDouble(), sprite.image.width.toDouble(), sprite.image.height.toDouble()
+        )
     }
 
     /**
@@ -397,13 +721,42 @@ class TrajectorySequenceEntity(
         canvasHeight: Double,
     ) {
         // Check if the canvas dimensions have changed
-        if (this.canvasWidth != canvasWidth || this.canvasHeight != canvasHeight) {
-            // Redraw the path if the dimensions have changed
-            redrawPath()
-        }
+        if (this.canvasWidth == canvasWidth && this.canvasHeight == canvasHeight) return
+
         // Update the canvas dimensions
         this.canvasWidth = canvasWidth
         this.canvasHeight = canvasHeight
+
+        // Redraw the path at the new size, the indicators do not depend on it
+        staticLayerVersion++
+        clearSegmentSprites()
+        baseSprite = renderBaseSprite(canvasWidth, canvasHeight, colorScheme, drawnOutlines(drawnChunks))
+    }
+
+    /**
+     * Renders the unfocused path for a new canvas size off the loop thread.
+     * The highlighted segments are rendered again when they are highlighted.
+     *
+     * @param canvasWidth The new width of the canvas.
+     * @param canvasHeight The new height of the canvas.
+     * @param renderScale The render scale at the new size.
+     * @return The task swapping in the rendered path.
+     */
+    override fun prepareCanvasDimensions(canvasWidth: Double, canvasHeight: Double, renderScale: Double): Runnable {
+        val scheme = colorScheme
+        val chunks = drawnChunks
+        val sprite = renderBaseSprite(canvasWidth, canvasHeight, scheme, drawnOutlines(chunks))
+
+        return Runnable {
+            // Paths whose scheme was switched or which grew in the meantime are redrawn once the size is set instead
+            if (colorScheme != scheme || drawnChunks != chunks) return@Runnable
+
+            this.canvasWidth = canvasWidth
+            this.canvasHeight = canvasHeight
+            staticLayerVersion++
+            clearSegmentSprites()
+            baseSprite = sprite
+        }
     }
 
     /**
@@ -416,6 +769,7 @@ class TrajectorySequenceEntity(
         if (this.colorScheme != scheme) {
             // Update the color scheme
             this.colorScheme = scheme
+            indicatorEntity.switchScheme(scheme)
             // Redraw the path with the new color scheme
             redrawPath()
         }
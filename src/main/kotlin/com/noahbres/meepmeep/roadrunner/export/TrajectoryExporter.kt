@@ -0,0 +1,263 @@
+package com.noahbres.meepmeep.roadrunner.export
+
+import com.noahbres.meepmeep.roadrunner.entity.RoadRunnerBotEntity
+import java.awt.image.BufferedImage
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import javax.imageio.IIOImage
+import javax.imageio.ImageIO
+import javax.imageio.ImageTypeSpecifier
+import javax.imageio.ImageWriter
+import javax.imageio.metadata.IIOMetadata
+import javax.imageio.metadata.IIOMetadataNode
+import kotlin.math.floor
+import kotlin.math.roundToInt
+
+// Constant for nanoseconds in a second
+private const val NANOSECONDS_IN_SECOND = 1_000_000_000L
+
+// Highest GIF frame rate whose frame delays viewers play back unclamped, every frame lasting 2 hundredths
+private const val MAX_GIF_FRAME_RATE = 50
+
+/**
+ * Exports the playback of a [RoadRunnerBotEntity]'s trajectory sequence to
+ * an animated GIF or a sequence of PNG images.
+ *
+ * The bot's timeline is stepped at a fixed frame rate through the headless
+ * [com.noahbres.meepmeep.MeepMeep.renderFrame], so every frame is rendered
+ * by the same entity render path as the window. Rendering happens on the
+ * calling thread while frames are encoded on a worker pool and written in
+ * order on a single writer thread, allowing all three to overlap.
+ *
+ * The bot's [com.noahbres.meepmeep.MeepMeep] instance has to be headless
+ * and started. Other entities in the scene are stepped along with the bot.
+ *
+ * @property frameRate The number of frames exported per second of
+ *    playback.
+ * @property threads The number of worker threads used to encode frames.
+ */
+class TrajectoryExporter @JvmOverloads constructor(
+    private val frameRate: Int = 30,
+    private val threads: Int = Runtime.getRuntime().availableProcessors()
+) {
+    /**
+     * Exports the bot's trajectory sequence to an animated GIF.
+     *
+     * GIF frame delays are stored in hundredths of a second, so frame delays
+     * are alternated to keep the overall playback speed correct at frame
+     * rates that do not divide evenly. Most viewers slow down frames shorter
+     * than 2 hundredths of a second, so GIFs are exported at 50 fps at most.
+     *
+     * @param bot The [RoadRunnerBotEntity] whose trajectory sequence to
+     *    export.
+     * @param file The file to write the GIF to.
+     * @throws IOException If the GIF could not be written.
+     */
+    @Throws(IOException::class)
+    fun exportGif(bot: RoadRunnerBotEntity, file: File) {
+        val writer = ImageIO.getImageWritersByFormatName("gif").next()
+
+        // Image output streams do not truncate existing files
+        file.delete()
+
+        val gifFrameRate = frameRate.coerceAtMost(MAX_GIF_FRAME_RATE)
+
+        ImageIO.createImageOutputStream(file).use { output ->
+            writer.output = output
+            writer.prepareWriteSequence(null)
+
+            // Convert frames to the indexed GIF palette on the workers and compress them in order on the writer
+            exportFrames(bot, gifFrameRate, { _, frame -> toIndexedImage(frame) }) { index, image ->
+                writer.writeToSequence(IIOImage(image, null, createGifMetadata(writer, image, index, gifFrameRate)), null)
+            }
+
+            writer.endWriteSequence()
+        }
+
+        writer.dispose()
+    }
+
+    /**
+     * Exports the bot's trajectory sequence to a sequence of numbered PNG
+     * images.
+     *
+     * @param bot The [RoadRunnerBotEntity] whose trajectory sequence to
+     *    export.
+     * @param directory The directory to write the images to. Created if it
+     *    does not exist.
+     * @throws IOException If an image could not be written.
+     */
+    @Throws(IOException::class)
+    fun exportPngSequence(bot: RoadRunnerBotEntity, directory: File) {
+        if (!directory.isDirectory && !directory.mkdirs()) throw IOException("Could not create directory $directory")
+
+        // Every frame is independent, so the workers write them straight to disk
+        exportFrames(bot, frameRate, { index, frame ->
+            ImageIO.write(frame, "png", File(directory, "frame_%05d.png".format(index)))
+        }) { _, _ -> }
+    }
+
+    /**
+     * Steps the bot's trajectory sequence frame by frame and pipelines the
+     * rendered frames through the worker pool and the writer thread.
+     *
+     * @param bot The [RoadRunnerBotEntity] whose trajectory sequence to step.
+     * @param frameRate The number of frames stepped per second of playback.
+     * @param encode Encodes a frame on a worker thread.
+     * @param consume Consumes the result of each encoded frame in order, on
+     *    the writer thread.
+     */
+    private fun <T> exportFrames(
+        bot: RoadRunnerBotEntity,
+        frameRate: Int,
+        encode: (index: Int, frame: BufferedImage) -> T,
+        consume: (index: Int, result: T) -> Unit
+    ) {
+        val meepMeep = bot.meepMeep
+        val sequence = bot.currentTrajectorySequence
+            ?: throw IllegalStateException("Bot is not following a trajectory sequence")
+
+        check(meepMeep.isHeadless) { "Trajectories can only be exported from a headless MeepMeep instance" }
+
+        val frameCount = floor(sequence.duration() * frameRate).toInt() + 1
+        val frameTime = NANOSECONDS_IN_SECOND / frameRate
+
+        // Limit the number of frames in flight so memory use stays bounded
+        val maxFramesInFlight = threads * 2
+        val framesInFlight = ArrayDeque<Future<Unit>>()
+
+        val executor = createExecutor()
+        val writerExecutor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "MeepMeep-Exporter-Writer").apply { isDaemon = true }
+        }
+
+        try {
+            // Rewind the bot and let it get past its skipped startup loops without advancing
+            bot.start()
+            repeat(RoadRunnerBotEntity.SKIP_LOOPS) { meepMeep.renderFrame(0) }
+
+            for (index in 0 until frameCount) {
+                // Copy the frame, as the offscreen image is reused by the next render
+                val rendered = meepMeep.renderFrame(if (index == 0) 0 else frameTime)
+                val frame = BufferedImage(rendered.colorModel, rendered.copyData(null), false, null)
+
+                val encoded = executor.submit<T> { encode(index, frame) }
+
+                // The writer runs its tasks one by one, so frames are consumed in order
+                framesInFlight.addLast(writerExecutor.submit<Unit> { consume(index, awaitFrame(encoded)) })
+
+                // Wait on the oldest frame once the pipeline is full
+                if (framesInFlight.size >= maxFramesInFlight) awaitFrame(framesInFlight.removeFirst())
+            }
+
+            // Drain the remaining frames
+            while (framesInFlight.isNotEmpty()) awaitFrame(framesInFlight.removeFirst())
+        } finally {
+            writerExecutor.shutdownNow()
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * Waits for a frame to finish encoding, rethrowing any I/O failure.
+     *
+     * @param future The future of the encoded frame.
+     * @return The result of encoding the frame.
+     */
+    private fun <T> awaitFrame(future: Future<T>): T {
+        try {
+            return future.get()
+        } catch (e: ExecutionException) {
+            throw e.cause as? IOException ?: IOException("Failed to encode frame", e.cause)
+        }
+    }
+
+    /**
+     * Creates the worker pool used to encode frames.
+     *
+     * @return The created [ExecutorService].
+     */
+    private fun createExecutor(): ExecutorService = Executors.newFixedThreadPool(threads) { runnable ->
+        Thread(runnable, "MeepMeep-Exporter").apply { isDaemon = true }
+    }
+
+    /**
+     * Converts a frame to an image using the default indexed 256 color
+     * palette, which the GIF writer can encode without building its own.
+     *
+     * @param frame The frame to convert.
+     * @return The converted image.
+     */
+    private fun toIndexedImage(frame: BufferedImage): BufferedImage {
+        val image = BufferedImage(frame.width, frame.height, BufferedImage.TYPE_BYTE_INDEXED)
+
+        val gfx = image.createGraphics()
+        gfx.drawImage(frame, 0, 0, null)
+        gfx.dispose()
+
+        return image
+    }
+
+    /**
+     * Creates the GIF metadata for a frame, setting its delay and making the
+     * animation loop forever.
+     *
+     * @param writer The GIF [ImageWriter].
+     * @param image The frame to create the metadata for.
+     * @param index The index of the frame.
+     * @param frameRate The number of frames per second of the GIF.
+     * @return The created metadata.
+     */
+    private fun createGifMetadata(writer: ImageWriter, image: BufferedImage, index: Int, frameRate: Int): IIOMetadata {
+        val metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null)
+        val format = metadata.nativeMetadataFormatName
+        val root = metadata.getAsTree(format) as IIOMetadataNode
+
+        // Frame delays are in hundredths of a second, so round the frame's end time instead of its length
+        val delay = (100.0 * (index + 1) / frameRate).roundToInt() - (100.0 * index / frameRate).roundToInt()
+
+        getOrCreateNode(root, "GraphicControlExtension").apply {
+            setAttribute("disposalMethod", "none")
+            setAttribute("userInputFlag", "FALSE")
+            setAttribute("transparentColorFlag", "FALSE")
+            setAttribute("delayTime", delay.toString())
+            setAttribute("transparentColorIndex", "0")
+        }
+
+        // Only the first frame needs the looping extension
+        if (index == 0) {
+            val loopExtension = IIOMetadataNode("ApplicationExtension").apply {
+                setAttribute("applicationID", "NETSCAPE")
+                setAttribute("authenticationCode", "2.0")
+                userObject = byteArrayOf(1, 0, 0)
+            }
+
+            getOrCreateNode(root, "ApplicationExtensions").appendChild(loopExtension)
+        }
+
+        metadata.setFromTree(format, root)
+
+        return metadata
+    }
+
+    /**
+     * Finds the child node with the given name, creating it if it does not
+     * exist.
+     *
+     * @param root The node to search.
+     * @param name The name of the child node.
+     * @return The found or created node.
+     */
+    private fun getOrCreateNode(root: IIOMetadataNode, name: String): IIOMetadataNode {
+        for (i in 0 until root.length) {
+            val node = root.item(i)
+            if (node.nodeName.equals(name, ignoreCase = true)) return node as IIOMetadataNode
+        }
+
+        return IIOMetadataNode(name).also { root.appendChild(it) }
+    }
+}
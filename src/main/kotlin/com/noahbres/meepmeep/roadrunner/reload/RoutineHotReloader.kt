@@ -0,0 +1,322 @@
+package com.noahbres.meepmeep.roadrunner.reload
+
+import com.noahbres.meepmeep.MeepMeep
+import com.noahbres.meepmeep.roadrunner.AddTrajectorySequenceCallback
+import com.noahbres.meepmeep.roadrunner.entity.RoadRunnerBotEntity
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.TrajectorySequence
+import java.io.File
+import java.net.URL
+import java.net.URLClassLoader
+import java.nio.file.ClosedWatchServiceException
+import java.nio.file.FileSystems
+import java.nio.file.FileVisitResult
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.SimpleFileVisitor
+import java.nio.file.StandardWatchEventKinds
+import java.nio.file.WatchService
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reloads the [AddTrajectorySequenceCallback] implementations of running
+ * bots from a directory of compiled classes whenever they are recompiled,
+ * without restarting MeepMeep.
+ *
+ * Every reload loads the classes into a fresh, isolated class loader. The
+ * sequences of the affected bots are rebuilt in parallel off the loop
+ * thread, then swapped into the bots together on the loop thread. If any of
+ * them fails to build, the error is printed and all bots keep their current
+ * sequences.
+ *
+ * A bot is affected when its callback class or one of its nested classes
+ * changed. When any other class changed, such as a shared helper, every
+ * watched bot is reloaded.
+ *
+ * @property meepMeep The [MeepMeep] instance running the bots.
+ * @property classesDirectory The root directory of the compiled classes,
+ *    such as `build/classes/java/main`.
+ * @property debounceMillis How long the directory has to stay unchanged
+ *    before reloading, so a compilation writing many classes triggers a
+ *    single reload.
+ */
+class RoutineHotReloader @JvmOverloads constructor(
+    private val meepMeep: MeepMeep,
+    private val classesDirectory: File,
+    private val debounceMillis: Long = 250
+) {
+    companion object {
+        /** Packages always loaded by the parent class loader. */
+        private val SHARED_PACKAGES = listOf("java.", "javax.", "kotlin.", "com.noahbres.meepmeep.", "com.acmerobotics.roadrunner.")
+    }
+
+    /**
+     * A bot whose trajectory sequence is rebuilt on reloads.
+     *
+     * @property bot The bot following the sequence.
+     * @property className The binary name of the callback class building the
+     *    sequence.
+     */
+    private class Watch(val bot: RoadRunnerBotEntity, val className: String) {
+        /** The binary name of the top level class enclosing the callback class. */
+        val topLevelClassName = className.substringBefore('$')
+    }
+
+    /**
+     * Class loader loading the classes of the [classesDirectory] itself
+     * before asking its parent, so recompiled classes replace the ones
+     * loaded at startup. MeepMeep and Road Runner classes always come from
+     * the parent, so the callbacks implement the same interface MeepMeep
+     * calls.
+     *
+     * @param urls The URLs to load classes from.
+     * @param parent The class loader of MeepMeep and Road Runner.
+     */
+    private class ChildFirstClassLoader(urls: Array<URL>, parent: ClassLoader) : URLClassLoader(urls, parent) {
+        override fun loadClass(name: String, resolve: Boolean): Class<*> = synchronized(getClassLoadingLock(name)) {
+            if (SHARED_PACKAGES.any { name.startsWith(it) }) return super.loadClass(name, resolve)
+
+            val type = findLoadedClass(name) ?: try {
+                findClass(name)
+            } catch (e: ClassNotFoundException) {
+                return super.loadClass(name, resolve)
+            }
+
+            if (resolve) resolveClass(type)
+            type
+        }
+    }
+
+    /** The watched bots. */
+    private val watches = CopyOnWriteArrayList<Watch>()
+
+    /** The class loader of MeepMeep, Road Runner and every class outside the [classesDirectory]. */
+    private val parentClassLoader = Thread.currentThread().contextClassLoader ?: RoutineHotReloader::class.java.classLoader
+
+    /** Watches the [classesDirectory] and its subdirectories for changes. */
+    private var watchService: WatchService? = null
+
+    /** The thread waiting for changes and reloading. */
+    private var watchThread: Thread? = null
+
+    /**
+     * Watches the callback class building the trajectory sequence of a bot.
+     *
+     * @param bot The bot following the sequence.
+     * @param className The binary name of the callback class, which needs a
+     *    constructor without parameters or to be a Kotlin `object`.
+     * @return The current instance of [RoutineHotReloader] for chaining.
+     */
+    fun watch(bot: RoadRunnerBotEntity, className: String): RoutineHotReloader {
+        watches.add(Watch(bot, className))
+
+        return this
+    }
+
+    /**
+     * Starts watching the [classesDirectory] on a background thread.
+     *
+     * @return The current instance of [RoutineHotReloader] for chaining.
+     * @throws IllegalStateException If the reloader is already started.
+     */
+    fun start(): RoutineHotReloader {
+        check(watchThread == null) { "RoutineHotReloader is already started" }
+
+        val service = FileSystems.getDefault().newWatchService()
+        registerRecursively(service, classesDirectory.toPath())
+        watchService = service
+
+        watchThread = Thread({ watchLoop(service) }, "MeepMeep-HotReload").apply {
+            isDaemon = true
+            start()
+        }
+
+        return this
+    }
+
+    /** Stops watching the [classesDirectory]. */
+    fun stop() {
+        watchService?.close()
+        watchThread?.interrupt()
+
+        watchService = null
+        watchThread = null
+    }
+
+    /**
+     * Reloads every watched bot, whether or not its classes changed.
+     *
+     * @return A future completing once the reloaded sequences are queued to
+     *    be swapped in.
+     */
+    fun reloadAll(): CompletableFuture<Void> = reload(watches.toList())
+
+    /**
+     * Waits for changes and reloads the affected bots once the directory
+     * settles for [debounceMillis].
+     *
+     * @param service The watch service of the directory.
+     */
+    private fun watchLoop(service: WatchService) {
+        val changedClasses = mutableSetOf<String>()
+
+        try {
+            while (!Thread.currentThread().isInterrupted) {
+                // Block until the first change, then keep collecting until the directory settles
+                val key = if (changedClasses.isEmpty()) service.take()
+                else service.poll(debounceMillis, TimeUnit.MILLISECONDS)
+
+                if (key == null) {
+                    reload(affectedWatches(changedClasses))
+                    changedClasses.clear()
+                    continue
+                }
+
+                val directory = key.watchable() as Path
+                for (event in key.pollEvents()) {
+                    val path = directory.resolve(event.context() as? Path ?: continue)
+
+                    // Watch directories created after the start, such as new packages
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                        registerRecursively(service, path)
+                    }
+
+                    if (path.toString().endsWith(".class")) changedClasses += classNameOf(path)
+                }
+
+                key.reset()
+            }
+        } catch (e: InterruptedException) {
+            // Stopped
+        } catch (e: ClosedWatchServiceException) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Returns the watches affected by the changed classes.
+     *
+     * @param changedClasses The binary names of the changed classes.
+     * @return The affected watches.
+     */
+    private fun affectedWatches(changedClasses: Set<String>): List<Watch> {
+        val changedTopLevelClasses = changedClasses.map { it.substringBefore('$') }.toSet()
+        val watched = watches.toList()
+
+        // A changed class no callback encloses may be used by any of them
+        if (changedTopLevelClasses.any { changed -> watched.none { it.topLevelClassName == changed } }) return watched
+
+        return watched.filter { it.topLevelClassName in changedTopLevelClasses }
+    }
+
+    /**
+     * Rebuilds the sequences of the given watches in a fresh class loader and
+     * swaps them into their bots on the loop thread.
+     *
+     * @param affected The watches to reload.
+     * @return A future completing once the sequences are queued to be
+     *    swapped in.
+     */
+    private fun reload(affected: List<Watch>): CompletableFuture<Void> {
+        if (affected.isEmpty()) return CompletableFuture.completedFuture(null)
+
+        val classLoader = ChildFirstClassLoader(arrayOf(classesDirectory.toURI().toURL()), parentClassLoader)
+
+        // Build the sequences in parallel, as they are independent of each other
+        val builds = affected.map { watch ->
+            CompletableFuture.supplyAsync({ build(classLoader, watch) }, ForkJoinPool.commonPool())
+        }
+
+        return CompletableFuture.allOf(*builds.toTypedArray()).handle { _, error ->
+            if (error != null) {
+                error.printStackTrace()
+                return@handle null
+            }
+
+            val sequences = builds.map { it.join() }
+
+            // Swap every sequence in the same frame
+            meepMeep.runOnLoopThread {
+                affected.forEachIndexed { index, watch -> watch.bot.replaceTrajectorySequence(sequences[index]) }
+            }
+
+            null
+        }
+    }
+
+    /**
+     * Loads the callback class of a watch and builds its sequence.
+     *
+     * @param classLoader The class loader to load the callback class with.
+     * @param watch The watch to build the sequence of.
+     * @return The built sequence.
+     */
+    private fun build(classLoader: ClassLoader, watch: Watch): TrajectorySequence {
+        val thread = Thread.currentThread()
+        val previousClassLoader = thread.contextClassLoader
+
+        // Let the routine load its resources through the new class loader as well
+        thread.contextClassLoader = classLoader
+
+        try {
+            return instantiate(classLoader, watch.className).buildTrajectorySequence(watch.bot.drive)
+        } finally {
+            thread.contextClassLoader = previousClassLoader
+        }
+    }
+
+    /**
+     * Creates an instance of a callback class.
+     *
+     * @param classLoader The class loader to load the class with.
+     * @param className The binary name of the class.
+     * @return The callback.
+     * @throws IllegalArgumentException If the class is not an
+     *    [AddTrajectorySequenceCallback].
+     */
+    private fun instantiate(classLoader: ClassLoader, className: String): AddTrajectorySequenceCallback {
+        val type = Class.forName(className, true, classLoader)
+
+        // Kotlin objects expose their only instance through a static INSTANCE field
+        val instance = runCatching { type.getField("INSTANCE").get(null) }.getOrNull()
+            ?: type.getDeclaredConstructor().apply { isAccessible = true }.newInstance()
+
+        return instance as? AddTrajectorySequenceCallback
+            ?: throw IllegalArgumentException("$className does not implement AddTrajectorySequenceCallback")
+    }
+
+    /**
+     * Returns the binary name of the class compiled into the given file.
+     *
+     * @param path The path of the class file.
+     * @return The binary class name.
+     */
+    private fun classNameOf(path: Path): String = classesDirectory.toPath().relativize(path).toString()
+        .removeSuffix(".class")
+        .replace(File.separatorChar, '.')
+
+    /**
+     * Registers a directory and all of its subdirectories with a watch
+     * service.
+     *
+     * @param service The watch service.
+     * @param root The directory to register.
+     */
+    private fun registerRecursively(service: WatchService, root: Path) {
+        Files.walkFileTree(root, object : SimpleFileVisitor<Path>() {
+            override fun preVisitDirectory(dir: Path, attrs: BasicFileAttributes): FileVisitResult {
+                dir.register(
+                    service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE
+                )
+
+                return FileVisitResult.CONTINUE
+            }
+        })
+    }
+}
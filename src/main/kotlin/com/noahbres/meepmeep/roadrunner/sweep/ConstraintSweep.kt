@@ -0,0 +1,213 @@
+package com.noahbres.meepmeep.roadrunner.sweep
+
+import com.acmerobotics.roadrunner.geometry.Pose2d
+import com.noahbres.meepmeep.roadrunner.AddTrajectorySequenceCallback
+import com.noahbres.meepmeep.roadrunner.Constraints
+import com.noahbres.meepmeep.roadrunner.DriveShim
+import com.noahbres.meepmeep.roadrunner.DriveTrainType
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+
+/**
+ * Builds a routine headlessly with many variants of [Constraints] and
+ * [DriveTrainType] to find out how they affect its duration.
+ *
+ * Variants are added one by one, as a grid of every combination of the
+ * given values, or as random samples between two bounds. [run] builds all
+ * of them in parallel on the common [ForkJoinPool] and returns their
+ * results from fastest to slowest, which [formatTable] turns into a table.
+ *
+ * Marker callbacks are never run, as the sequences are only built.
+ *
+ * @property callback The callback building the routine.
+ */
+class ConstraintSweep(private val callback: AddTrajectorySequenceCallback) {
+    companion object {
+        /**
+         * Returns the fastest successful results.
+         *
+         * @param results The results of a sweep.
+         * @param k The maximum number of results to return.
+         * @return Up to [k] successful results, from fastest to slowest.
+         */
+        @JvmStatic
+        fun top(results: List<SweepResult>, k: Int): List<SweepResult> =
+            results.filter { it.isSuccess }.sortedBy { it.duration }.take(k)
+
+        /**
+         * Formats results as a plain text table, one row per result with its
+         * constraints, total duration and segment durations. Angular
+         * constraints are shown in degrees.
+         *
+         * @param results The results to format, in the order to list them.
+         * @return The table.
+         */
+        @JvmStatic
+        fun formatTable(results: List<SweepResult>): String {
+            val table = StringBuilder()
+            table.append(
+                "%4s  %-7s  %7s  %8s  %9s  %11s  %10s  %9s  %s%n".format(
+                    "rank", "drive", "maxVel", "maxAccel", "maxAngVel", "maxAngAccel", "trackWidth", "duration", "segments"
+                )
+            )
+
+            results.forEachIndexed { index, result ->
+                val constraints = result.constraints
+                val duration = if (result.isSuccess) "%9.3f".format(result.duration) else "%9s".format("failed")
+
+                table.append(
+                    "%4d  %-7s  %7.2f  %8.2f  %9.1f  %11.1f  %10.2f  %s  %s%n".format(
+                        index + 1,
+                        result.driveTrainType,
+                        constraints.maxVel,
+                        constraints.maxAccel,
+                        Math.toDegrees(constraints.maxAngVel),
+                        Math.toDegrees(constraints.maxAngAccel),
+                        constraints.trackWidth,
+                        duration,
+                        result.error?.toString() ?: result.segmentDurations.joinToString(" ") { "%.3f".format(it) }
+                    )
+                )
+            }
+
+            return table.toString()
+        }
+    }
+
+    /** The variants to build the routine with. */
+    private val variants = mutableListOf<Pair<Constraints, DriveTrainType>>()
+
+    /** The pose estimate of the drive the routine is built with. */
+    private var startPose = Pose2d()
+
+    /**
+     * Sets the pose estimate of the drive the routine is built with.
+     *
+     * @param pose The pose estimate.
+     * @return The current instance of [ConstraintSweep] for chaining.
+     */
+    fun setStartPose(pose: Pose2d): ConstraintSweep {
+        this.startPose = pose
+
+        return this
+    }
+
+    /**
+     * Adds a single variant.
+     *
+     * @param constraints The constraints to build the routine with.
+     * @param driveTrainType The drive train type to build the routine with.
+     * @return The current instance of [ConstraintSweep] for chaining.
+     */
+    @JvmOverloads
+    fun addVariant(constraints: Constraints, driveTrainType: DriveTrainType = DriveTrainType.MECANUM): ConstraintSweep {
+        variants += constraints to driveTrainType
+
+        return this
+    }
+
+    /**
+     * Adds a variant for every combination of the given values.
+     *
+     * @param maxVel The maximum velocities to try.
+     * @param maxAccel The maximum accelerations to try.
+     * @param maxAngVel The maximum angular velocities to try, in radians.
+     * @param maxAngAccel The maximum angular accelerations to try, in
+     *    radians.
+     * @param trackWidth The track widths to try.
+     * @param driveTrainTypes The drive train types to try.
+     * @return The current instance of [ConstraintSweep] for chaining.
+     */
+    @JvmOverloads
+    fun addGrid(
+        maxVel: DoubleArray,
+        maxAccel: DoubleArray,
+        maxAngVel: DoubleArray,
+        maxAngAccel: DoubleArray,
+        trackWidth: DoubleArray,
+        driveTrainTypes: Array<DriveTrainType> = arrayOf(DriveTrainType.MECANUM)
+    ): ConstraintSweep {
+        for (driveTrainType in driveTrainTypes)
+            for (vel in maxVel)
+                for (accel in maxAccel)
+                    for (angVel in maxAngVel)
+                        for (angAccel in maxAngAccel)
+                            for (width in trackWidth)
+                                variants += Constraints(vel, accel, angVel, angAccel, width) to driveTrainType
+
+        return this
+    }
+
+    /**
+     * Adds variants with every constraint sampled uniformly between two
+     * bounds.
+     *
+     * @param count The number of variants to add.
+     * @param min The lower bound of every constraint.
+     * @param max The upper bound of every constraint.
+     * @param driveTrainTypes The drive train types to pick from uniformly.
+     * @param seed The seed of the random samples, so sweeps can be repeated.
+     * @return The current instance of [ConstraintSweep] for chaining.
+     */
+    @JvmOverloads
+    fun addRandomSamples(
+        count: Int,
+        min: Constraints,
+        max: Constraints,
+        driveTrainTypes: Array<DriveTrainType> = arrayOf(DriveTrainType.MECANUM),
+        seed: Long = 0L
+    ): ConstraintSweep {
+        val random = Random(seed)
+
+        // Sample a value between two bounds, allowing them to be equal
+        fun sample(from: Double, to: Double) = if (from == to) from else from + (to - from) * random.nextDouble()
+
+        repeat(count) {
+            val constraints = Constraints(
+                sample(min.maxVel, max.maxVel),
+                sample(min.maxAccel, max.maxAccel),
+                sample(min.maxAngVel, max.maxAngVel),
+                sample(min.maxAngAccel, max.maxAngAccel),
+                sample(min.trackWidth, max.trackWidth)
+            )
+
+            variants += constraints to driveTrainTypes[random.nextInt(driveTrainTypes.size)]
+        }
+
+        return this
+    }
+
+    /**
+     * Builds the routine with every variant in parallel.
+     *
+     * @return The results of all variants, from fastest to slowest, followed
+     *    by the variants that failed to build.
+     */
+    fun run(): List<SweepResult> {
+        val builds = variants.map { (constraints, driveTrainType) ->
+            CompletableFuture.supplyAsync({ build(constraints, driveTrainType) }, ForkJoinPool.commonPool())
+        }
+
+        return builds.map { it.join() }.sortedWith(compareBy<SweepResult> { !it.isSuccess }.thenBy { it.duration })
+    }
+
+    /**
+     * Builds the routine with a single variant.
+     *
+     * @param constraints The constraints to build the routine with.
+     * @param driveTrainType The drive train type to build the routine with.
+     * @return The result of the variant.
+     */
+    private fun build(constraints: Constraints, driveTrainType: DriveTrainType): SweepResult {
+        return try {
+            // Every variant is built once, so its constraints are not worth interning
+            val sequence = callback.buildTrajectorySequence(DriveShim(driveTrainType, constraints, startPose, null, false))
+            val segmentDurations = DoubleArray(sequence.size()) { sequence.get(it).duration }
+
+            SweepResult(constraints, driveTrainType, sequence.duration(), segmentDurations, null)
+        } catch (e: Exception) {
+            SweepResult(constraints, driveTrainType, Double.NaN, DoubleArray(0), e)
+        }
+    }
+}
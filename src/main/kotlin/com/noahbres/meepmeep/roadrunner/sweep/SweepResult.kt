@@ -0,0 +1,28 @@
+package com.noahbres.meepmeep.roadrunner.sweep
+
+import com.noahbres.meepmeep.roadrunner.Constraints
+import com.noahbres.meepmeep.roadrunner.DriveTrainType
+
+/**
+ * The outcome of building a routine with one variant of a
+ * [ConstraintSweep].
+ *
+ * @property constraints The constraints the routine was built with.
+ * @property driveTrainType The drive train type the routine was built with.
+ * @property duration The total duration of the built sequence in seconds,
+ *    or [Double.NaN] if it failed to build.
+ * @property segmentDurations The duration of every segment of the built
+ *    sequence in seconds, in order. Empty if it failed to build.
+ * @property error The error the routine failed to build with, or null if
+ *    it was built.
+ */
+class SweepResult(
+    val constraints: Constraints,
+    val driveTrainType: DriveTrainType,
+    val duration: Double,
+    val segmentDurations: DoubleArray,
+    val error: Throwable?
+) {
+    /** Whether the routine was built with this variant. */
+    val isSuccess get() = error == null
+}
@@ -0,0 +1,647 @@
+package com.noahbres.meepmeep.roadrunner.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.SequenceSegment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * A trajectory sequence that is built in chunks on demand, for very long or
+ * generated routines.
+ * <p>
+ * The routine is split into chunks by a {@link ChunkSource}. Each chunk is
+ * built with its own {@link TrajectorySequenceBuilder}, starting at the end
+ * pose of the previous chunk. Chunks are built the first time playback
+ * reaches them, and a few more ahead of the playback cursor are built in the
+ * background. Only a bounded window of recently used chunks is kept in
+ * memory. Evicted chunks are rebuilt from their start pose, outside the lock
+ * of the sequence, when they are needed again, so the chunk source has to be
+ * deterministic. The
+ * {@link TrajectorySequenceOutline} of every chunk is kept though, so the
+ * whole routine can be drawn without rebuilding any chunk, and
+ * {@link ChunkListener}s are told about every chunk as it is built.
+ * <p>
+ * The duration and the number of segments only cover the chunks built so
+ * far, until {@link #isComplete()} returns true. As every chunk starts with a
+ * new builder, paths never continue across chunk boundaries.
+ */
+public class LazyTrajectorySequence extends TrajectorySequence {
+    /**
+     * Builds the chunks of a routine.
+     */
+    @FunctionalInterface
+    public interface ChunkSource {
+        /**
+         * Adds the path primitives, turns, waits and markers of a chunk to the builder.
+         *
+         * @param index   The index of the chunk.
+         * @param builder The builder of the chunk, starting at the end pose of the previous chunk.
+         * @return True if the chunk was added, or false if the routine has no chunk with this index.
+         */
+        boolean buildChunk(int index, TrajectorySequenceBuilder builder);
+    }
+
+    /**
+     * Listens for the chunks of a routine being built for the first time.
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        /**
+         * Called once a chunk was built for the first time, on the thread that
+         * built it while the sequence is locked. Listeners should only hand
+         * the outline off, such as to the thread drawing it.
+         *
+         * @param index   The index of the chunk.
+         * @param outline The outline of the chunk, with the times of its markers
+         *                since the start of the sequence.
+         */
+        void onChunkBuilt(int index, TrajectorySequenceOutline outline);
+    }
+
+    /**
+     * Creates the builder of a chunk from its start pose.
+     */
+    private final Function<Pose2d, TrajectorySequenceBuilder> builderFactory;
+
+    /**
+     * Builds the chunks of the routine.
+     */
+    private final ChunkSource source;
+
+    /**
+     * The maximum number of chunks kept in memory.
+     */
+    private final int windowSize;
+
+    /**
+     * The number of chunks built ahead of the playback cursor.
+     */
+    private final int lookahead;
+
+    /**
+     * The start pose of every chunk built so far, followed by the end pose of the last one.
+     */
+    private final List<Pose2d> chunkStartPoses = new ArrayList<>();
+
+    /**
+     * The start time of every chunk built so far, followed by their total duration.
+     */
+    private final List<Double> chunkStartTimes = new ArrayList<>();
+
+    /**
+     * The index of the first segment of every chunk built so far, followed by their total
+     * number of segments.
+     */
+    private final List<Integer> chunkFirstSegments = new ArrayList<>();
+
+    /**
+     * The outline of every chunk built so far.
+     */
+    private final List<TrajectorySequenceOutline> chunkOutlines = new ArrayList<>();
+
+    /**
+     * The listeners told about every newly built chunk.
+     */
+    private final List<ChunkListener> chunkListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The chunks kept in memory by index, ordered from least to most recently used.
+     */
+    private final LinkedHashMap<Integer, TrajectorySequence> window;
+
+    /**
+     * Flag indicating that the chunk source has no more chunks.
+     */
+    private boolean isComplete = false;
+
+    /**
+     * The background build of the chunks ahead of the cursor, if one is running.
+     */
+    private CompletableFuture<Void> lookaheadBuild = null;
+
+    /**
+     * The spatial index over the chunks, created the first time a point is projected.
+     */
+    private ChunkedSpatialIndex chunkedSpatialIndex = null;
+
+    /**
+     * Spatial index searching the spatial indices of the chunks near a point.
+     */
+    private final class ChunkedSpatialIndex extends PathSpatialIndex {
+        /**
+         * Finds the closest point on the paths of the chunks built so far to the
+         * specified point. Ties are resolved in favor of the earliest chunk.
+         *
+         * @param point The point to project.
+         * @return The closest point, or null if the chunks have no paths.
+         */
+        @Override
+        public Projection nearest(Vector2d point) {
+            int count;
+            double[] distancesSquared;
+            int[] firstSegments;
+            double[] startTimes;
+            double closestSquared = Double.POSITIVE_INFINITY;
+
+            // Measure the outlines under the lock, the chunks are projected onto after releasing it
+            synchronized (LazyTrajectorySequence.this) {
+                count = chunkCount();
+                distancesSquared = new double[count];
+                firstSegments = new int[count];
+                startTimes = new double[count];
+
+                for (int i = 0; i < count; i++) {
+                    distancesSquared[i] = chunkOutlines.get(i).pathDistanceSquared(point.getX(), point.getY());
+                    firstSegments[i] = chunkFirstSegments.get(i);
+                    startTimes[i] = chunkStartTimes.get(i);
+                    closestSquared = Math.min(closestSquared, distancesSquared[i]);
+                }
+            }
+
+            if (closestSquared == Double.POSITIVE_INFINITY) return null;
+
+            // Paths come within the sample spacing of their outline, so farther chunks cannot hold the closest point
+            double radius = Math.sqrt(closestSquared) + TrajectorySequenceOutline.SAMPLE_SPACING;
+
+            Projection closest = null;
+            for (int i = 0; i < count; i++) {
+                if (distancesSquared[i] > radius * radius) continue;
+
+                Projection projection = chunk(i).getSpatialIndex().nearest(point);
+                if (projection != null && (closest == null || projection.getDistance() < closest.getDistance())) {
+                    closest = projection.offset(firstSegments[i], startTimes[i]);
+                }
+            }
+
+            return closest;
+        }
+    }
+
+    /**
+     * Constructs a new LazyTrajectorySequence, building its first chunk immediately.
+     *
+     * @param builderFactory Creates the builder of a chunk from its start pose, such as
+     *                       {@code drive::trajectorySequenceBuilder}.
+     * @param startPose      The start pose of the routine.
+     * @param source         Builds the chunks of the routine.
+     * @param windowSize     The maximum number of chunks kept in memory.
+     * @param lookahead      The number of chunks built ahead of the playback cursor.
+     * @throws EmptySequenceException if the routine has no chunks.
+     */
+    public LazyTrajectorySequence(Function<Pose2d, TrajectorySequenceBuilder> builderFactory, Pose2d startPose, ChunkSource source, int windowSize, int lookahead) {
+        this(buildChunk(builderFactory, startPose, source, 0), builderFactory, startPose, source, windowSize, lookahead);
+    }
+
+    /**
+     * Constructs a new LazyTrajectorySequence keeping 8 chunks in memory and building 3 ahead.
+     *
+     * @param builderFactory Creates the builder of a chunk from its start pose.
+     * @param startPose      The start pose of the routine.
+     * @param source         Builds the chunks of the routine.
+     * @throws EmptySequenceException if the routine has no chunks.
+     */
+    public LazyTrajectorySequence(Function<Pose2d, TrajectorySequenceBuilder> builderFactory, Pose2d startPose, ChunkSource source) {
+        this(builderFactory, startPose, source, 8, 3);
+    }
+
+    /**
+     * Constructs a new LazyTrajectorySequence from its already built first chunk.
+     *
+     * @param firstChunk     The first chunk, or null if the routine has no chunks.
+     * @param builderFactory Creates the builder of a chunk from its start pose.
+     * @param startPose      The start pose of the routine.
+     * @param source         Builds the chunks of the routine.
+     * @param windowSize     The maximum number of chunks kept in memory.
+     * @param lookahead      The number of chunks built ahead of the playback cursor.
+     */
+    private LazyTrajectorySequence(TrajectorySequence firstChunk, Function<Pose2d, TrajectorySequenceBuilder> builderFactory, Pose2d startPose, ChunkSource source, int windowSize, int lookahead) {
+        super(segmentsOf(firstChunk));
+
+        if (windowSize < 1) throw new IllegalArgumentException("Window size must be at least 1");
+        if (lookahead < 0 || lookahead >= windowSize) throw new IllegalArgumentException("Lookahead must be between 0 and the window size");
+
+        this.builderFactory = builderFactory;
+        this.source = source;
+        this.windowSize = windowSize;
+        this.lookahead = lookahead;
+
+        this.window = new LinkedHashMap<>(windowSize + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, TrajectorySequence> eldest) {
+                return size() > LazyTrajectorySequence.this.windowSize;
+            }
+        };
+
+        chunkStartPoses.add(startPose);
+        chunkStartTimes.add(0.0);
+        chunkFirstSegments.add(0);
+        publishChunk(firstChunk, new TrajectorySequenceOutline(firstChunk));
+    }
+
+    /**
+     * Returns whether every chunk of the routine was built at least once, so the
+     * duration and the number of segments are final.
+     *
+     * @return True if the routine is completely known.
+     */
+    public synchronized boolean isComplete() {
+        return isComplete;
+    }
+
+    /**
+     * Returns the maximum number of chunks kept in memory.
+     *
+     * @return The window size.
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Returns the index of the built chunk active at the specified time.
+     *
+     * @param time The time in seconds since the start of the sequence.
+     * @return The index of the chunk, or the index of the last built chunk if the time is past it.
+     */
+    public synchronized int getChunkIndexAt(double time) {
+        return chunkIndexAt(time);
+    }
+
+    /**
+     * Returns the time a built chunk starts at.
+     *
+     * @param index The index of the chunk.
+     * @return The start time in seconds since the start of the sequence.
+     */
+    public synchronized double getChunkStartTime(int index) {
+        return chunkStartTimes.get(index);
+    }
+
+    /**
+     * Returns the outline of a built chunk, with the times of its markers
+     * since the start of the sequence.
+     *
+     * @param index The index of the chunk.
+     * @return The outline.
+     */
+    public synchronized TrajectorySequenceOutline getChunkOutline(int index) {
+        return chunkOutlines.get(index);
+    }
+
+    /**
+     * Returns the outlines of the chunks built so far, with the times of their
+     * markers since the start of the sequence.
+     *
+     * @return The outlines, by chunk index.
+     */
+    public synchronized List<TrajectorySequenceOutline> getChunkOutlines() {
+        return Collections.unmodifiableList(new ArrayList<>(chunkOutlines));
+    }
+
+    /**
+     * Adds a listener told about every chunk built from now on. Chunks built
+     * before are returned by {@link #getChunkOutlines()}, so add the listener
+     * first to never miss a chunk.
+     *
+     * @param listener The listener.
+     */
+    public void addChunkListener(ChunkListener listener) {
+        chunkListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added through {@link #addChunkListener(ChunkListener)}.
+     *
+     * @param listener The listener.
+     */
+    public void removeChunkListener(ChunkListener listener) {
+        chunkListeners.remove(listener);
+    }
+
+    /**
+     * Moves the playback cursor, building the chunks up to it synchronously and
+     * the chunks ahead of it in the background.
+     *
+     * @param time The time of the playback cursor in seconds since the start of the sequence.
+     */
+    public void advanceTo(double time) {
+        // Build synchronously until the cursor is covered, in case the background build fell behind
+        while (!isCursorCovered(time)) {
+            if (!buildNextChunk()) break;
+        }
+
+        // Make sure the chunk under the cursor is in memory, rebuilding it outside the lock if it was evicted
+        chunk(getChunkIndexAt(time));
+
+        synchronized (this) {
+            if (isComplete || lookaheadBuild != null) return;
+
+            int target = chunkIndexAt(time) + lookahead;
+            if (chunkCount() > target) return;
+
+            // Build the chunks ahead of the cursor one by one, off the calling thread
+            lookaheadBuild = CompletableFuture.runAsync(() -> {
+                while (chunkCountSynchronized() <= target && buildNextChunk()) {
+                    // Keep building
+                }
+            }, ForkJoinPool.commonPool()).whenComplete((result, error) -> {
+                if (error != null) error.printStackTrace();
+
+                synchronized (this) {
+                    lookaheadBuild = null;
+                }
+            });
+        }
+    }
+
+    @Override
+    public synchronized Pose2d end() {
+        return chunkStartPoses.get(chunkCount());
+    }
+
+    @Override
+    public synchronized double duration() {
+        return chunkStartTimes.get(chunkCount());
+    }
+
+    // The chunk lists only ever grow, so the values read from them under the lock stay valid after releasing it
+
+    @Override
+    public int segmentIndexAt(double time) {
+        int chunkIndex;
+        double chunkStartTime;
+        double nextChunkStartTime;
+        int firstSegment;
+
+        synchronized (this) {
+            if (time >= duration()) return -1;
+
+            chunkIndex = chunkIndexAt(time);
+            chunkStartTime = chunkStartTimes.get(chunkIndex);
+            nextChunkStartTime = chunkStartTimes.get(chunkIndex + 1);
+            firstSegment = chunkFirstSegments.get(chunkIndex);
+        }
+
+        int localIndex = chunk(chunkIndex).segmentIndexAt(time - chunkStartTime);
+
+        // Times past the last active segment of a chunk fall into the next one
+        if (localIndex == -1) return segmentIndexAt(nextChunkStartTime);
+
+        return firstSegment + localIndex;
+    }
+
+    @Override
+    public double offsetInSegment(double time) {
+        int index = segmentIndexAt(time);
+
+        return time - segmentStartTime(index == -1 ? size() - 1 : index);
+    }
+
+    @Override
+    public double segmentStartTime(int i) {
+        int chunkIndex;
+        double chunkStartTime;
+        int firstSegment;
+
+        synchronized (this) {
+            chunkIndex = chunkIndexOfSegment(i);
+            chunkStartTime = chunkStartTimes.get(chunkIndex);
+            firstSegment = chunkFirstSegments.get(chunkIndex);
+        }
+
+        return chunkStartTime + chunk(chunkIndex).segmentStartTime(i - firstSegment);
+    }
+
+    @Override
+    public SequenceSegment get(int i) {
+        int chunkIndex;
+        int firstSegment;
+
+        synchronized (this) {
+            chunkIndex = chunkIndexOfSegment(i);
+            firstSegment = chunkFirstSegments.get(chunkIndex);
+        }
+
+        return chunk(chunkIndex).get(i - firstSegment);
+    }
+
+    @Override
+    public synchronized int size() {
+        return chunkFirstSegments.get(chunkCount());
+    }
+
+    /**
+     * Returns the spatial index over the paths of the chunks built so far.
+     * <p>
+     * The chunks near a queried point are found from their outlines first,
+     * and only those are projected onto exactly through their own spatial
+     * index, rebuilding them if they were evicted.
+     *
+     * @return The spatial index.
+     */
+    @Override
+    public synchronized PathSpatialIndex getSpatialIndex() {
+        if (chunkedSpatialIndex == null) chunkedSpatialIndex = new ChunkedSpatialIndex();
+
+        return chunkedSpatialIndex;
+    }
+
+    /**
+     * Returns whether the chunks built so far reach past the specified time, or
+     * the routine has no more chunks.
+     *
+     * @param time The time in seconds since the start of the sequence.
+     * @return True if the time is covered.
+     */
+    private synchronized boolean isCursorCovered(double time) {
+        return isComplete || time < duration();
+    }
+
+    /**
+     * Builds the chunk following the last built one.
+     *
+     * @return True if a chunk was built, or false if the routine has no more chunks.
+     */
+    private boolean buildNextChunk() {
+        int index;
+        Pose2d startPose;
+        double startTime;
+
+        synchronized (this) {
+            if (isComplete) return false;
+
+            index = chunkCount();
+            startPose = chunkStartPoses.get(index);
+            startTime = chunkStartTimes.get(index);
+        }
+
+        // Build and outline outside the lock, so playback is never blocked by a background build
+        TrajectorySequence built = buildChunk(builderFactory, startPose, source, index);
+        TrajectorySequenceOutline outline = built == null ? null : new TrajectorySequenceOutline(built, startTime);
+
+        synchronized (this) {
+            // Another thread may have built the same chunk in the meantime
+            if (chunkCount() != index) return !isComplete;
+
+            if (built == null) {
+                isComplete = true;
+                return false;
+            }
+
+            publishChunk(built, outline);
+            return true;
+        }
+    }
+
+    /**
+     * Records a newly built chunk after the last one, keeps it in memory and
+     * tells the listeners about it.
+     *
+     * @param chunk   The chunk.
+     * @param outline The outline of the chunk.
+     */
+    private void publishChunk(TrajectorySequence chunk, TrajectorySequenceOutline outline) {
+        int index = chunkCount();
+
+        chunkStartPoses.add(chunk.end());
+        chunkStartTimes.add(chunkStartTimes.get(index) + chunk.duration());
+        chunkFirstSegments.add(chunkFirstSegments.get(index) + chunk.size());
+        chunkOutlines.add(outline);
+
+        window.put(index, chunk);
+
+        for (ChunkListener listener : chunkListeners) listener.onChunkBuilt(index, outline);
+    }
+
+    /**
+     * Returns a built chunk, rebuilding it if it was evicted from memory. The
+     * chunk is rebuilt outside the lock, like {@link #buildNextChunk()}, so
+     * must not be called while holding it.
+     *
+     * @param index The index of the chunk.
+     * @return The chunk.
+     */
+    private TrajectorySequence chunk(int index) {
+        Pose2d startPose;
+
+        synchronized (this) {
+            TrajectorySequence chunk = window.get(index);
+            if (chunk != null) return chunk;
+
+            startPose = chunkStartPoses.get(index);
+        }
+
+        TrajectorySequence rebuilt = buildChunk(builderFactory, startPose, source, index);
+        if (rebuilt == null) throw new IllegalStateException("Chunk " + index + " is no longer provided by its source");
+
+        synchronized (this) {
+            // Another thread may have rebuilt the same chunk in the meantime
+            TrajectorySequence chunk = window.get(index);
+            if (chunk != null) return chunk;
+
+            window.put(index, rebuilt);
+            return rebuilt;
+        }
+    }
+
+    /**
+     * Returns the number of chunks built so far.
+     *
+     * @return The number of chunks.
+     */
+    private int chunkCount() {
+        return chunkStartTimes.size() - 1;
+    }
+
+    /**
+     * Returns the number of chunks built so far, synchronizing with other threads.
+     *
+     * @return The number of chunks.
+     */
+    private synchronized int chunkCountSynchronized() {
+        return chunkCount();
+    }
+
+    /**
+     * Returns the index of the built chunk active at the specified time, or the last
+     * built chunk if the time is past it.
+     *
+     * @param time The time in seconds since the start of the sequence.
+     * @return The index of the chunk.
+     */
+    private int chunkIndexAt(double time) {
+        int low = 0;
+        int high = chunkCount() - 1;
+
+        // Find the last chunk starting at or before the time
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (chunkStartTimes.get(mid) <= time) low = mid;
+            else high = mid - 1;
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the index of the built chunk holding the specified segment.
+     *
+     * @param segmentIndex The index of the segment in the whole sequence.
+     * @return The index of the chunk.
+     */
+    private int chunkIndexOfSegment(int segmentIndex) {
+        int low = 0;
+        int high = chunkCount() - 1;
+
+        // Find the last chunk starting at or before the segment
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (chunkFirstSegments.get(mid) <= segmentIndex) low = mid;
+            else high = mid - 1;
+        }
+
+        return low;
+    }
+
+    /**
+     * Builds a single chunk of a routine.
+     *
+     * @param builderFactory Creates the builder of the chunk from its start pose.
+     * @param startPose      The start pose of the chunk.
+     * @param source         Builds the chunks of the routine.
+     * @param index          The index of the chunk.
+     * @return The built chunk, or null if the routine has no chunk with this index.
+     */
+    private static TrajectorySequence buildChunk(Function<Pose2d, TrajectorySequenceBuilder> builderFactory, Pose2d startPose, ChunkSource source, int index) {
+        TrajectorySequenceBuilder builder = builderFactory.apply(startPose);
+
+        return source.buildChunk(index, builder) ? builder.build() : null;
+    }
+
+    /**
+     * Returns the segments of a chunk as a list.
+     *
+     * @param chunk The chunk, or null if the routine has no chunks.
+     * @return The segments of the chunk.
+     * @throws EmptySequenceException if the chunk is null.
+     */
+    private static List<SequenceSegment> segmentsOf(TrajectorySequence chunk) {
+        if (chunk == null) throw new EmptySequenceException();
+
+        List<SequenceSegment> segments = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) segments.add(chunk.get(i));
+
+        return segments;
+    }
+}
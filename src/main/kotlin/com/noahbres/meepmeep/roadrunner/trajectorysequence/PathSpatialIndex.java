@@ -0,0 +1,523 @@
+package com.noahbres.meepmeep.roadrunner.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.acmerobotics.roadrunner.path.Path;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.SequenceSegment;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TrajectorySegment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uniform grid over points sampled along the paths of a trajectory sequence.
+ * <p>
+ * Projecting a point onto a Road Runner path is expensive, so the grid is used
+ * to find the paths that pass near a point first. Only those candidates are
+ * projected exactly. Every path comes within half a sample spacing of its
+ * samples, so a path can only be the closest if one of its samples lies within
+ * the distance to the nearest sample plus one sample spacing.
+ * <p>
+ * Road Runner projects a point by iterating from an initial displacement guess,
+ * so each candidate is projected starting from its sample closest to the point.
+ * <p>
+ * Subclasses may search other indices instead by overriding {@link #nearest(Vector2d)}.
+ */
+public class PathSpatialIndex {
+    /**
+     * The default distance between two consecutive samples along a path in inches.
+     */
+    public static final double DEFAULT_SAMPLE_SPACING = 2.0;
+
+    /**
+     * The default width and height of a grid cell in inches.
+     */
+    public static final double DEFAULT_CELL_SIZE = 8.0;
+
+    /**
+     * The closest point on the paths of a trajectory sequence to a queried point.
+     */
+    public static final class Projection {
+        /**
+         * The index of the segment in the trajectory sequence.
+         */
+        private final int segmentIndex;
+
+        /**
+         * The displacement along the path of the segment.
+         */
+        private final double displacement;
+
+        /**
+         * The time in seconds since the start of the sequence the point is reached at.
+         */
+        private final double time;
+
+        /**
+         * The distance from the queried point to the path.
+         */
+        private final double distance;
+
+        /**
+         * Constructs a new Projection.
+         *
+         * @param segmentIndex The index of the segment in the trajectory sequence.
+         * @param displacement The displacement along the path of the segment.
+         * @param time         The time the point is reached at.
+         * @param distance     The distance from the queried point to the path.
+         */
+        private Projection(int segmentIndex, double displacement, double time, double distance) {
+            this.segmentIndex = segmentIndex;
+            this.displacement = displacement;
+            this.time = time;
+            this.distance = distance;
+        }
+
+        /**
+         * Returns this projection for a sequence holding the projected one
+         * after the specified segments and time.
+         *
+         * @param segmentOffset The number of segments before the projected sequence.
+         * @param timeOffset    The time the projected sequence starts at.
+         * @return The offset projection.
+         */
+        Projection offset(int segmentOffset, double timeOffset) {
+            return new Projection(segmentIndex + segmentOffset, displacement, time + timeOffset, distance);
+        }
+
+        /**
+         * Gets the index of the segment in the trajectory sequence.
+         *
+         * @return The segment index.
+         */
+        public int getSegmentIndex() {
+            return segmentIndex;
+        }
+
+        /**
+         * Gets the displacement along the path of the segment.
+         *
+         * @return The displacement in inches.
+         */
+        public double getDisplacement() {
+            return displacement;
+        }
+
+        /**
+         * Gets the time the projected point is reached at.
+         *
+         * @return The time in seconds since the start of the sequence.
+         */
+        public double getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the distance from the queried point to the path.
+         *
+         * @return The distance in inches.
+         */
+        public double getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * The trajectory segments of the sequence, in order.
+     */
+    private final TrajectorySegment[] paths;
+
+    /**
+     * The index in the sequence of each trajectory segment.
+     */
+    private final int[] pathSegmentIndices;
+
+    /**
+     * The time each trajectory segment starts at.
+     */
+    private final double[] pathStartTimes;
+
+    /**
+     * The distance between two consecutive samples along a path.
+     */
+    private final double sampleSpacing;
+
+    /**
+     * The width and height of a grid cell.
+     */
+    private final double cellSize;
+
+    /**
+     * The x-coordinate of the left edge of the grid.
+     */
+    private final double minX;
+
+    /**
+     * The y-coordinate of the bottom edge of the grid.
+     */
+    private final double minY;
+
+    /**
+     * The number of grid columns.
+     */
+    private final int columns;
+
+    /**
+     * The number of grid rows.
+     */
+    private final int rows;
+
+    /**
+     * The x positions of the samples, grouped by grid cell.
+     */
+    private final double[] sampleX;
+
+    /**
+     * The y positions of the samples, grouped by grid cell.
+     */
+    private final double[] sampleY;
+
+    /**
+     * The trajectory segment each sample belongs to, grouped by grid cell.
+     */
+    private final int[] samplePaths;
+
+    /**
+     * The displacement of each sample along its path, grouped by grid cell.
+     */
+    private final double[] sampleDisplacements;
+
+    /**
+     * The index of the first sample of each grid cell, followed by the total number of samples.
+     * The samples of cell {@code i} span from {@code cellStarts[i]} to {@code cellStarts[i + 1]}.
+     */
+    private final int[] cellStarts;
+
+    /**
+     * Scratch buffer holding, for each path, the squared distance from the queried point to
+     * its closest sample within the candidate radius, or infinity if it is not a candidate.
+     */
+    private final double[] candidateDistances;
+
+    /**
+     * Scratch buffer holding the displacement of the closest sample of each candidate path,
+     * used as the initial guess of its projection.
+     */
+    private final double[] candidateGuesses;
+
+    /**
+     * Builds an empty spatial index, for subclasses searching other indices.
+     */
+    protected PathSpatialIndex() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * Builds a spatial index over the paths of the specified segments with the default
+     * sample spacing and cell size.
+     *
+     * @param sequenceSegments The segments of the trajectory sequence.
+     */
+    public PathSpatialIndex(List<SequenceSegment> sequenceSegments) {
+        this(sequenceSegments, DEFAULT_SAMPLE_SPACING, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Builds a spatial index over the paths of the specified segments.
+     *
+     * @param sequenceSegments The segments of the trajectory sequence.
+     * @param sampleSpacing    The distance between two consecutive samples along a path in inches.
+     * @param cellSize         The width and height of a grid cell in inches.
+     */
+    public PathSpatialIndex(List<SequenceSegment> sequenceSegments, double sampleSpacing, double cellSize) {
+        if (sampleSpacing <= 0) throw new IllegalArgumentException("Sample spacing must be greater than 0");
+        if (cellSize <= 0) throw new IllegalArgumentException("Cell size must be greater than 0");
+
+        this.sampleSpacing = sampleSpacing;
+        this.cellSize = cellSize;
+
+        // Collect the trajectory segments and the times they start at
+        List<TrajectorySegment> paths = new ArrayList<>();
+        int[] pathSegmentIndices = new int[sequenceSegments.size()];
+        double[] pathStartTimes = new double[sequenceSegments.size()];
+
+        double currentTime = 0.0;
+        for (int i = 0; i < sequenceSegments.size(); i++) {
+            SequenceSegment segment = sequenceSegments.get(i);
+
+            if (segment instanceof TrajectorySegment thisSegment) {
+                pathSegmentIndices[paths.size()] = i;
+                pathStartTimes[paths.size()] = currentTime;
+                paths.add(thisSegment);
+            }
+
+            currentTime += segment.getDuration();
+        }
+
+        this.paths = paths.toArray(new TrajectorySegment[0]);
+        this.pathSegmentIndices = pathSegmentIndices;
+        this.pathStartTimes = pathStartTimes;
+        this.candidateDistances = new double[this.paths.length];
+        this.candidateGuesses = new double[this.paths.length];
+        Arrays.fill(candidateDistances, Double.POSITIVE_INFINITY);
+
+        // Sample every path at an even spacing, always keeping both ends
+        int sampleCount = 0;
+        for (TrajectorySegment path : this.paths) sampleCount += samplesAlong(path) + 1;
+
+        double[] x = new double[sampleCount];
+        double[] y = new double[sampleCount];
+        int[] owners = new int[sampleCount];
+        double[] displacements = new double[sampleCount];
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        int sample = 0;
+        for (int p = 0; p < this.paths.length; p++) {
+            Path path = this.paths[p].getTrajectory().getPath();
+            int intervals = samplesAlong(this.paths[p]);
+
+            for (int i = 0; i <= intervals; i++) {
+                double displacement = path.length() * i / intervals;
+                Vector2d point = path.get(displacement).vec();
+
+                x[sample] = point.getX();
+                y[sample] = point.getY();
+                owners[sample] = p;
+                displacements[sample] = displacement;
+                sample++;
+
+                minX = Math.min(minX, point.getX());
+                minY = Math.min(minY, point.getY());
+                maxX = Math.max(maxX, point.getX());
+                maxY = Math.max(maxY, point.getY());
+            }
+        }
+
+        if (sampleCount == 0) {
+            minX = 0.0;
+            minY = 0.0;
+            maxX = 0.0;
+            maxY = 0.0;
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = (int) Math.floor((maxX - minX) / cellSize) + 1;
+        this.rows = (int) Math.floor((maxY - minY) / cellSize) + 1;
+
+        // Bucket the samples by cell with a counting sort, so each cell is a contiguous range
+        int[] cellOfSample = new int[sampleCount];
+        int[] cellStarts = new int[columns * rows + 1];
+
+        for (int i = 0; i < sampleCount; i++) {
+            cellOfSample[i] = cellIndex(column(x[i]), row(y[i]));
+            cellStarts[cellOfSample[i] + 1]++;
+        }
+
+        for (int i = 0; i < columns * rows; i++) cellStarts[i + 1] += cellStarts[i];
+
+        int[] cursor = cellStarts.clone();
+        this.sampleX = new double[sampleCount];
+        this.sampleY = new double[sampleCount];
+        this.samplePaths = new int[sampleCount];
+        this.sampleDisplacements = new double[sampleCount];
+
+        for (int i = 0; i < sampleCount; i++) {
+            int slot = cursor[cellOfSample[i]]++;
+
+            sampleX[slot] = x[i];
+            sampleY[slot] = y[i];
+            samplePaths[slot] = owners[i];
+            sampleDisplacements[slot] = displacements[i];
+        }
+
+        this.cellStarts = cellStarts;
+    }
+
+    /**
+     * Finds the closest point on the paths of the sequence to the specified point.
+     * Ties are resolved in favor of the earliest path.
+     *
+     * @param point The point to project.
+     * @return The closest point, or null if the sequence has no paths.
+     */
+    public synchronized Projection nearest(Vector2d point) {
+        if (paths.length == 0) return null;
+
+        double px = point.getX();
+        double py = point.getY();
+
+        // Narrow the candidates down to the paths with a sample near the closest sample
+        double radius = Math.sqrt(nearestSampleDistanceSquared(px, py)) + sampleSpacing;
+        double radiusSquared = radius * radius;
+
+        int firstColumn = column(px - radius);
+        int lastColumn = column(px + radius);
+        int firstRow = row(py - radius);
+        int lastRow = row(py + radius);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = cellIndex(c, r);
+
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    double dx = sampleX[i] - px;
+                    double dy = sampleY[i] - py;
+                    double distanceSquared = dx * dx + dy * dy;
+
+                    // Remember the closest sample of each candidate as its projection guess
+                    int path = samplePaths[i];
+                    if (distanceSquared <= radiusSquared && distanceSquared < candidateDistances[path]) {
+                        candidateDistances[path] = distanceSquared;
+                        candidateGuesses[path] = sampleDisplacements[i];
+                    }
+                }
+            }
+        }
+
+        // Project exactly onto the candidates only
+        int closestPath = -1;
+        double closestDisplacement = 0.0;
+        double closestDistance = Double.POSITIVE_INFINITY;
+
+        for (int p = 0; p < paths.length; p++) {
+            if (candidateDistances[p] == Double.POSITIVE_INFINITY) continue;
+            candidateDistances[p] = Double.POSITIVE_INFINITY;
+
+            Path path = paths[p].getTrajectory().getPath();
+            double displacement = path.project(point, candidateGuesses[p]);
+            double distance = point.minus(path.get(displacement).vec()).norm();
+
+            if (distance < closestDistance) {
+                closestPath = p;
+                closestDisplacement = displacement;
+                closestDistance = distance;
+            }
+        }
+
+        double time = pathStartTimes[closestPath] + paths[closestPath].displacementToTime(closestDisplacement);
+
+        return new Projection(pathSegmentIndices[closestPath], closestDisplacement, time, closestDistance);
+    }
+
+    /**
+     * Finds the closest point on the paths of the sequence to the specified point, if it is
+     * within the specified distance. Used to pick a path with the mouse.
+     *
+     * @param point       The point to project.
+     * @param maxDistance The maximum distance from the point to the path in inches.
+     * @return The closest point, or null if no path is within the maximum distance.
+     */
+    public Projection pick(Vector2d point, double maxDistance) {
+        Projection projection = nearest(point);
+
+        return projection != null && projection.getDistance() <= maxDistance ? projection : null;
+    }
+
+    /**
+     * Converts a point to the time the sequence passes closest to it.
+     *
+     * @param point The point to convert to time.
+     * @return The time in seconds since the start of the sequence, or 0.0 if the sequence
+     * has no paths.
+     */
+    public double pointToTime(Vector2d point) {
+        Projection projection = nearest(point);
+
+        return projection != null ? projection.getTime() : 0.0;
+    }
+
+    /**
+     * Finds the squared distance to the closest sample by searching rings of cells around the
+     * point, until no unvisited cell can hold a closer sample.
+     *
+     * @param px The x-coordinate of the point.
+     * @param py The y-coordinate of the point.
+     * @return The squared distance to the closest sample.
+     */
+    private double nearestSampleDistanceSquared(double px, double py) {
+        int centerColumn = column(px);
+        int centerRow = row(py);
+        int maxRing = Math.max(columns, rows);
+
+        double best = Double.POSITIVE_INFINITY;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+
+                // Only the edges of the ring are new, the inside was visited by the previous rings
+                boolean isEdgeRow = r == centerRow - ring || r == centerRow + ring;
+                int step = isEdgeRow ? 1 : Math.max(1, 2 * ring);
+
+                for (int c = centerColumn - ring; c <= centerColumn + ring; c += step) {
+                    if (c < 0 || c >= columns) continue;
+
+                    int cell = cellIndex(c, r);
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        double dx = sampleX[i] - px;
+                        double dy = sampleY[i] - py;
+
+                        best = Math.min(best, dx * dx + dy * dy);
+                    }
+                }
+            }
+
+            // Distance from the point to the outside of the visited square of cells
+            double visitedMargin = Math.min(
+                    Math.min(px - (minX + (centerColumn - ring) * cellSize), minX + (centerColumn + ring + 1) * cellSize - px),
+                    Math.min(py - (minY + (centerRow - ring) * cellSize), minY + (centerRow + ring + 1) * cellSize - py)
+            );
+
+            if (visitedMargin > 0 && best <= visitedMargin * visitedMargin) break;
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the number of intervals the specified path is sampled in.
+     *
+     * @param path The trajectory segment.
+     * @return The number of intervals, at least 1.
+     */
+    private int samplesAlong(TrajectorySegment path) {
+        return Math.max(1, (int) Math.ceil(path.getLength() / sampleSpacing));
+    }
+
+    /**
+     * Returns the grid column of an x-coordinate, clamped to the grid.
+     *
+     * @param x The x-coordinate.
+     * @return The column.
+     */
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    /**
+     * Returns the grid row of a y-coordinate, clamped to the grid.
+     *
+     * @param y The y-coordinate.
+     * @return The row.
+     */
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+    /**
+     * Returns the index of a grid cell.
+     *
+     * @param column The column of the cell.
+     * @param row    The row of the cell.
+     * @return The cell index.
+     */
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+}
@@ -0,0 +1,204 @@
+package com.noahbres.meepmeep.roadrunner.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.profile.MotionState;
+import com.acmerobotics.roadrunner.util.Angle;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.SequenceSegment;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TrajectorySegment;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TurnSegment;
+
+/**
+ * Pose and velocity samples of a trajectory sequence, baked at a fixed rate
+ * into packed primitive arrays.
+ * <p>
+ * Evaluating a Road Runner trajectory walks its spline and profile objects
+ * and allocates several poses. Sampling a baked cache instead interpolates
+ * between the two nearest samples without allocating anything.
+ */
+public final class PoseSampleCache {
+    /**
+     * The duration of the baked trajectory sequence in seconds.
+     */
+    private final double duration;
+
+    /**
+     * The time between two consecutive samples in seconds.
+     */
+    private final double sampleInterval;
+
+    /**
+     * The x positions of the samples.
+     */
+    private final double[] x;
+
+    /**
+     * The y positions of the samples.
+     */
+    private final double[] y;
+
+    /**
+     * The headings of the samples, unwrapped so consecutive samples never jump
+     * by a full turn.
+     */
+    private final double[] heading;
+
+    /**
+     * The field-relative x velocities of the samples.
+     */
+    private final double[] velocityX;
+
+    /**
+     * The field-relative y velocities of the samples.
+     */
+    private final double[] velocityY;
+
+    /**
+     * The angular velocities of the samples.
+     */
+    private final double[] velocityHeading;
+
+    /**
+     * Bakes the specified trajectory sequence into a new PoseSampleCache.
+     *
+     * @param sequence   The trajectory sequence to bake.
+     * @param sampleRate The number of samples per second.
+     */
+    public PoseSampleCache(TrajectorySequence sequence, double sampleRate) {
+        if (sampleRate <= 0) throw new IllegalArgumentException("Sample rate must be greater than 0");
+
+        this.duration = sequence.duration();
+
+        // Always keep a sample at both ends, and space the rest evenly between them
+        int sampleCount = Math.max(2, (int) Math.ceil(duration * sampleRate) + 1);
+        this.sampleInterval = duration / (sampleCount - 1);
+
+        this.x = new double[sampleCount];
+        this.y = new double[sampleCount];
+        this.heading = new double[sampleCount];
+        this.velocityX = new double[sampleCount];
+        this.velocityY = new double[sampleCount];
+        this.velocityHeading = new double[sampleCount];
+
+        for (int i = 0; i < sampleCount; i++) {
+            double time = Math.min(i * sampleInterval, duration);
+
+            bakeSample(sequence, time, i);
+
+            // Unwrap the heading against the previous sample so interpolation takes the short way around
+            if (i > 0) heading[i] = heading[i - 1] + Angle.normDelta(heading[i] - heading[i - 1]);
+        }
+    }
+
+    /**
+     * Evaluates the trajectory sequence at the specified time and stores the
+     * result as the sample at the specified index.
+     *
+     * @param sequence The trajectory sequence to evaluate.
+     * @param time     The time in seconds since the start of the sequence.
+     * @param i        The index of the sample.
+     */
+    private void bakeSample(TrajectorySequence sequence, double time, int i) {
+        int segmentIndex = sequence.segmentIndexAt(time);
+
+        // Past the end of the sequence, the bot rests at its end pose
+        if (segmentIndex == -1) {
+            Pose2d end = sequence.end();
+
+            x[i] = end.getX();
+            y[i] = end.getY();
+            heading[i] = end.getHeading();
+
+            return;
+        }
+
+        SequenceSegment segment = sequence.get(segmentIndex);
+        double offsetTime = time - sequence.segmentStartTime(segmentIndex);
+
+        if (segment instanceof TrajectorySegment trajectorySegment) {
+            Pose2d pose = trajectorySegment.getTrajectory().get(offsetTime);
+            Pose2d velocity = trajectorySegment.getTrajectory().velocity(offsetTime);
+
+            x[i] = pose.getX();
+            y[i] = pose.getY();
+            heading[i] = pose.getHeading();
+            velocityX[i] = velocity.getX();
+            velocityY[i] = velocity.getY();
+            velocityHeading[i] = velocity.getHeading();
+        } else if (segment instanceof TurnSegment turnSegment) {
+            MotionState state = turnSegment.getMotionProfile().get(offsetTime);
+
+            x[i] = segment.getStartPose().getX();
+            y[i] = segment.getStartPose().getY();
+            heading[i] = state.getX();
+            velocityHeading[i] = state.getV();
+        } else {
+            // Wait segments hold the start pose without moving
+            x[i] = segment.getStartPose().getX();
+            y[i] = segment.getStartPose().getY();
+            heading[i] = segment.getStartPose().getHeading();
+        }
+    }
+
+    /**
+     * Interpolates the pose at the specified time.
+     *
+     * @param time The time in seconds since the start of the sequence. Clamped
+     *             to the duration of the sequence.
+     * @param out  The array to store the x, y and heading of the pose in.
+     */
+    public void samplePose(double time, double[] out) {
+        interpolate(time, x, y, heading, out);
+
+        out[2] = Angle.norm(out[2]);
+    }
+
+    /**
+     * Interpolates the field-relative velocity at the specified time.
+     *
+     * @param time The time in seconds since the start of the sequence. Clamped
+     *             to the duration of the sequence.
+     * @param out  The array to store the x, y and angular velocity in.
+     */
+    public void sampleVelocity(double time, double[] out) {
+        interpolate(time, velocityX, velocityY, velocityHeading, out);
+    }
+
+    /**
+     * Linearly interpolates three sample arrays at the specified time.
+     *
+     * @param time The time in seconds since the start of the sequence.
+     * @param a    The samples to interpolate into {@code out[0]}.
+     * @param b    The samples to interpolate into {@code out[1]}.
+     * @param c    The samples to interpolate into {@code out[2]}.
+     * @param out  The array to store the interpolated values in.
+     */
+    private void interpolate(double time, double[] a, double[] b, double[] c, double[] out) {
+        double position = sampleInterval > 0 ? Math.max(0.0, Math.min(time, duration)) / sampleInterval : 0.0;
+
+        // Find the two samples surrounding the time and how far between them it lies
+        int i = Math.min((int) position, a.length - 2);
+        double fraction = position - i;
+
+        out[0] = a[i] + (a[i + 1] - a[i]) * fraction;
+        out[1] = b[i] + (b[i + 1] - b[i]) * fraction;
+        out[2] = c[i] + (c[i + 1] - c[i]) * fraction;
+    }
+
+    /**
+     * Returns the duration of the baked trajectory sequence.
+     *
+     * @return The duration in seconds.
+     */
+    public double duration() {
+        return duration;
+    }
+
+    /**
+     * Returns the number of baked samples.
+     *
+     * @return The number of samples.
+     */
+    public int size() {
+        return x.length;
+    }
+}
@@ -0,0 +1,507 @@
+package com.noahbres.meepmeep.roadrunner.trajectorysequence;
+
+import com.acmerobotics.roadrunner.path.Path;
+import com.acmerobotics.roadrunner.profile.MotionProfileGenerator;
+import com.acmerobotics.roadrunner.profile.MotionProfile;
+import com.acmerobotics.roadrunner.profile.MotionSegment;
+import com.acmerobotics.roadrunner.profile.MotionState;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Persistent, content-addressed cache of the motion profiles of built paths.
+ * <p>
+ * Generating the motion profile of a path is by far the most expensive part of
+ * building a trajectory sequence. The {@link TrajectorySequenceBuilder} records
+ * the start pose and the builder calls of every path together with the
+ * constraints of the drive into a key, and looks the profile up here before
+ * generating it. Each profile is stored in its own file, named after the
+ * SHA-256 digest of its key, in a compact binary format that is memory-mapped
+ * when loaded. The most recently used profiles are also kept in memory.
+ * <p>
+ * The files on disk are bounded by their total size. Loading a profile from
+ * its file marks it as used, and once the files outgrow the bound, the least
+ * recently used ones are deleted until they take up three quarters of it.
+ * The directory is first checked when a profile is stored, which also prunes
+ * the files left by earlier launches.
+ * <p>
+ * Marker callbacks cannot be stored, so paths are still built from the
+ * builder calls on every launch and only their profiles are cached. Changes
+ * that do not affect the path geometry or the constraints, such as markers,
+ * waits and colors, never invalidate the cache. Profiles generated by another
+ * version of Road Runner are never reused.
+ */
+public final class TrajectoryProfileCache {
+    /**
+     * Magic number at the start of every cache file, "MMPC".
+     */
+    private static final int MAGIC = 0x4D4D5043;
+
+    /**
+     * Version of the cache file format. Files of other versions are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The Road Runner version assumed when its jar does not declare one. Keep
+     * in sync with the Road Runner dependency.
+     */
+    private static final String DEFAULT_GENERATOR_VERSION = "0.5.6";
+
+    /**
+     * The version of the Road Runner profile generator, part of every key so
+     * profiles generated by another version are not reused.
+     */
+    private static final String GENERATOR_VERSION = generatorVersion();
+
+    /**
+     * The default number of profiles kept in memory.
+     */
+    public static final int DEFAULT_MEMORY_CAPACITY = 256;
+
+    /**
+     * The default maximum total size of the profile files on disk, in bytes.
+     */
+    public static final long DEFAULT_DISK_CAPACITY = 32L * 1024 * 1024;
+
+    /**
+     * The fraction of the disk capacity the files are pruned down to, so
+     * storing more profiles does not prune again right away.
+     */
+    private static final double PRUNE_TARGET = 0.75;
+
+    /**
+     * The interval profiles are scanned at for segment boundaries, in seconds.
+     */
+    private static final double SCAN_INTERVAL = 0.002;
+
+    /**
+     * The precision segment boundaries are located to, in seconds.
+     */
+    private static final double BOUNDARY_PRECISION = 1e-9;
+
+    /**
+     * The tolerance of motion states that are considered equal.
+     */
+    private static final double STATE_TOLERANCE = 1e-6;
+
+    /**
+     * The directory the cache files are stored in.
+     */
+    private final File directory;
+
+    /**
+     * The maximum number of profiles kept in memory.
+     */
+    private final int memoryCapacity;
+
+    /**
+     * The maximum total size of the profile files on disk, in bytes.
+     */
+    private final long diskCapacity;
+
+    /**
+     * Guards {@link #diskUsage} and the pruning of the files.
+     */
+    private final Object diskLock = new Object();
+
+    /**
+     * The total size of the profile files on disk in bytes, or -1 if the
+     * directory was not checked yet.
+     */
+    private long diskUsage = -1;
+
+    /**
+     * Profiles recently loaded or stored by this cache by key digest, ordered
+     * from least to most recently used. Evicted profiles are loaded from their
+     * files again. Guarded by its own monitor.
+     */
+    private final LinkedHashMap<String, MotionProfile> profiles;
+
+    /**
+     * Constructs a new TrajectoryProfileCache storing its files in the specified directory.
+     *
+     * @param directory The directory to store the cache files in. Created when the first profile is stored.
+     */
+    public TrajectoryProfileCache(File directory) {
+        this(directory, DEFAULT_MEMORY_CAPACITY);
+    }
+
+    /**
+     * Constructs a new TrajectoryProfileCache storing its files in the specified directory.
+     *
+     * @param directory      The directory to store the cache files in. Created when the first profile is stored.
+     * @param memoryCapacity The maximum number of profiles kept in memory.
+     */
+    public TrajectoryProfileCache(File directory, int memoryCapacity) {
+        this(directory, memoryCapacity, DEFAULT_DISK_CAPACITY);
+    }
+
+    /**
+     * Constructs a new TrajectoryProfileCache storing its files in the specified directory.
+     *
+     * @param directory      The directory to store the cache files in. Created when the first profile is stored.
+     * @param memoryCapacity The maximum number of profiles kept in memory.
+     * @param diskCapacity   The maximum total size of the profile files on disk, in bytes.
+     */
+    public TrajectoryProfileCache(File directory, int memoryCapacity, long diskCapacity) {
+        if (memoryCapacity < 0) throw new IllegalArgumentException("The memory capacity must not be negative");
+        if (diskCapacity < 0) throw new IllegalArgumentException("The disk capacity must not be negative");
+
+        this.directory = directory;
+        this.memoryCapacity = memoryCapacity;
+        this.diskCapacity = diskCapacity;
+
+        this.profiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MotionProfile> eldest) {
+                return size() > TrajectoryProfileCache.this.memoryCapacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the default cache directory, {@code .meepmeep/profile-cache} in the user's home directory.
+     *
+     * @return The default cache directory.
+     */
+    public static File defaultDirectory() {
+        return new File(System.getProperty("user.home"), ".meepmeep" + File.separator + "profile-cache");
+    }
+
+    /**
+     * Gets the trajectory of a path from its cached profile, building and caching it if there is none.
+     *
+     * @param key     The key identifying the path and its constraints.
+     * @param path    The path of the trajectory.
+     * @param builder Builds the trajectory if its profile is not cached.
+     * @return The trajectory.
+     */
+    public Trajectory getOrBuild(String key, Path path, Supplier<Trajectory> builder) {
+        String digest = digest(key);
+
+        MotionProfile profile = load(digest);
+        if (profile != null) return new Trajectory(path, profile, Collections.emptyList());
+
+        Trajectory trajectory = builder.get();
+        store(digest, trajectory.getProfile());
+
+        return trajectory;
+    }
+
+    /**
+     * Removes all cached profiles, from memory and from disk.
+     */
+    public void clear() {
+        synchronized (profiles) {
+            profiles.clear();
+        }
+
+        synchronized (diskLock) {
+            diskUsage = -1;
+
+            File[] files = listProfileFiles();
+            if (files == null) return;
+
+            for (File file : files) {
+                if (!file.delete()) file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Loads a cached profile.
+     *
+     * @param digest The digest of the key of the profile.
+     * @return The profile, or null if it is not cached or its file is unreadable.
+     */
+    private MotionProfile load(String digest) {
+        MotionProfile profile;
+        synchronized (profiles) {
+            profile = profiles.get(digest);
+        }
+        if (profile != null) return profile;
+
+        File file = fileOf(digest);
+        if (!file.isFile()) return null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) return null;
+
+            int segmentCount = buffer.getInt();
+            List<MotionSegment> segments = new ArrayList<>(segmentCount);
+
+            for (int i = 0; i < segmentCount; i++) {
+                MotionState start = new MotionState(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+                segments.add(new MotionSegment(start, buffer.getDouble()));
+            }
+
+            profile = new MotionProfile(segments);
+        } catch (IOException | BufferUnderflowException e) {
+            // Unreadable or truncated files are rebuilt and overwritten
+            return null;
+        }
+
+        // Mark the file as used, so it is pruned after the files that were not
+        file.setLastModified(System.currentTimeMillis());
+
+        synchronized (profiles) {
+            profiles.put(digest, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * Stores a profile in memory and on disk. Failing to write the file only
+     * prints the error, as the profile can always be generated again.
+     *
+     * @param digest  The digest of the key of the profile.
+     * @param profile The profile to store.
+     */
+    private void store(String digest, MotionProfile profile) {
+        synchronized (profiles) {
+            profiles.put(digest, profile);
+        }
+
+        List<MotionSegment> segments = decompose(profile);
+
+        try {
+            Files.createDirectories(directory.toPath());
+
+            // Write to a temporary file first, so other processes never read a partially written profile
+            File temporaryFile = File.createTempFile(digest, ".tmp", directory);
+
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temporaryFile))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(segments.size());
+
+                for (MotionSegment segment : segments) {
+                    MotionState start = segment.getStart();
+
+                    output.writeDouble(start.getX());
+                    output.writeDouble(start.getV());
+                    output.writeDouble(start.getA());
+                    output.writeDouble(start.getJ());
+                    output.writeDouble(segment.getDt());
+                }
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), fileOf(digest).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile.toPath(), fileOf(digest).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        recordStored(fileOf(digest).length());
+    }
+
+    /**
+     * Counts a stored file towards the disk usage, pruning the files if they
+     * outgrew the disk capacity. The directory is checked on the first call.
+     *
+     * @param size The size of the stored file in bytes.
+     */
+    private void recordStored(long size) {
+        synchronized (diskLock) {
+            // The first check counts the stored file along with the files of earlier launches
+            if (diskUsage < 0) {
+                prune();
+                return;
+            }
+
+            diskUsage += size;
+            if (diskUsage > diskCapacity) prune();
+        }
+    }
+
+    /**
+     * Counts the size of the profile files on disk and, if they outgrew the
+     * disk capacity, deletes the least recently used ones until they take up
+     * {@link #PRUNE_TARGET} of it. Must hold {@link #diskLock}.
+     */
+    private void prune() {
+        File[] files = listProfileFiles();
+        diskUsage = 0;
+        if (files == null) return;
+
+        // Snapshot the sizes and times, as other processes may touch the files while they are sorted
+        List<ProfileFile> profileFiles = new ArrayList<>(files.length);
+        for (File file : files) {
+            ProfileFile profileFile = new ProfileFile(file, file.length(), file.lastModified());
+
+            profileFiles.add(profileFile);
+            diskUsage += profileFile.size();
+        }
+
+        if (diskUsage <= diskCapacity) return;
+
+        profileFiles.sort(Comparator.comparingLong(ProfileFile::lastModified));
+
+        long target = (long) (diskCapacity * PRUNE_TARGET);
+        for (ProfileFile profileFile : profileFiles) {
+            if (diskUsage <= target) break;
+
+            if (profileFile.file().delete()) diskUsage -= profileFile.size();
+        }
+    }
+
+    /**
+     * Lists the profile files in the cache directory.
+     *
+     * @return The profile files, or null if the directory does not exist.
+     */
+    private File[] listProfileFiles() {
+        return directory.listFiles((dir, name) -> name.endsWith(".profile"));
+    }
+
+    /**
+     * A profile file on disk, as it was when the files were pruned.
+     *
+     * @param file         The file.
+     * @param size         The size of the file in bytes.
+     * @param lastModified The time the file was last used at, in milliseconds since the epoch.
+     */
+    private record ProfileFile(File file, long size, long lastModified) {
+    }
+
+    /**
+     * Splits a profile back into its segments of constant jerk.
+     * <p>
+     * Road Runner does not expose the segments of a profile, so the profile is
+     * scanned at a fixed interval instead. Whenever its state stops following
+     * the current segment, the boundary is located by bisection and a new
+     * segment is started there.
+     *
+     * @param profile The profile to split.
+     * @return The segments of the profile.
+     */
+    private static List<MotionSegment> decompose(MotionProfile profile) {
+        List<MotionSegment> segments = new ArrayList<>();
+        double duration = profile.duration();
+
+        double segmentStartTime = 0.0;
+        MotionState segmentStart = profile.get(0.0);
+
+        double previousTime = 0.0;
+        while (previousTime < duration) {
+            double time = Math.min(previousTime + SCAN_INTERVAL, duration);
+
+            // A single scan interval may hold several boundaries
+            while (!follows(profile, segmentStart, segmentStartTime, time)) {
+                double lo = Math.max(previousTime, segmentStartTime);
+                double hi = time;
+
+                while (hi - lo > BOUNDARY_PRECISION) {
+                    double mid = 0.5 * (lo + hi);
+
+                    if (follows(profile, segmentStart, segmentStartTime, mid)) lo = mid;
+                    else hi = mid;
+                }
+
+                // Always make progress, even when the boundary is closer to the segment start than the precision
+                if (lo <= segmentStartTime) lo = hi;
+
+                segments.add(new MotionSegment(segmentStart, lo - segmentStartTime));
+
+                segmentStartTime = lo;
+                segmentStart = profile.get(lo);
+            }
+
+            previousTime = time;
+        }
+
+        segments.add(new MotionSegment(segmentStart, duration - segmentStartTime));
+
+        return segments;
+    }
+
+    /**
+     * Checks whether a profile still follows the segment starting at the specified state.
+     *
+     * @param profile          The profile.
+     * @param segmentStart     The state at the start of the segment.
+     * @param segmentStartTime The time the segment starts at.
+     * @param time             The time to check at.
+     * @return True if the state of the profile matches the segment at the time.
+     */
+    private static boolean follows(MotionProfile profile, MotionState segmentStart, double segmentStartTime, double time) {
+        MotionState actual = profile.get(time);
+        MotionState expected = segmentStart.get(time - segmentStartTime);
+
+        return Math.abs(actual.getX() - expected.getX()) < STATE_TOLERANCE
+                && Math.abs(actual.getV() - expected.getV()) < STATE_TOLERANCE
+                && Math.abs(actual.getA() - expected.getA()) < STATE_TOLERANCE;
+    }
+
+    /**
+     * Returns the file a profile is stored in.
+     *
+     * @param digest The digest of the key of the profile.
+     * @return The cache file.
+     */
+    private File fileOf(String digest) {
+        return new File(directory, digest + ".profile");
+    }
+
+    /**
+     * Returns the version of the Road Runner jar generating the profiles.
+     *
+     * @return The version declared by the jar, or {@link #DEFAULT_GENERATOR_VERSION} if it declares none.
+     */
+    private static String generatorVersion() {
+        Package generatorPackage = MotionProfileGenerator.class.getPackage();
+        String version = generatorPackage == null ? null : generatorPackage.getImplementationVersion();
+
+        return version == null ? DEFAULT_GENERATOR_VERSION : version;
+    }
+
+    /**
+     * Computes the hexadecimal SHA-256 digest of a key, qualified with the
+     * version of the profile generator.
+     *
+     * @param key The key.
+     * @return The digest.
+     */
+    private static String digest(String key) {
+        try {
+            String versionedKey = "roadrunner " + GENERATOR_VERSION + "\n" + key;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(versionedKey.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) hex.append(String.format("%02x", b));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
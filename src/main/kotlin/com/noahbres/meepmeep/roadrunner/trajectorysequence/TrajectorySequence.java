@@ -1,6 +1,7 @@
 package com.noahbres.meepmeep.roadrunner.trajectorysequence;
 
 import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.geometry.Vector2d;
 import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.SequenceSegment;
 
 import java.util.Collections;
@@ -15,6 +16,19 @@ public class TrajectorySequence {
      */
     private final List<SequenceSegment> sequenceList;
 
+    /**
+     * The time each segment starts at, followed by the total duration of the
+     * sequence. Segment {@code i} spans from {@code segmentStartTimes[i]} to
+     * {@code segmentStartTimes[i + 1]}.
+     */
+    private final double[] segmentStartTimes;
+
+    /**
+     * The spatial index over the paths of the sequence. Built lazily the first
+     * time a point is projected onto the sequence.
+     */
+    private PathSpatialIndex spatialIndex;
+
     /**
      * Constructs a new TrajectorySequence.
      *
@@ -24,6 +38,12 @@ public class TrajectorySequence {
     public TrajectorySequence(List<SequenceSegment> sequenceList) {
         if (sequenceList.isEmpty()) throw new EmptySequenceException();
         this.sequenceList = Collections.unmodifiableList(sequenceList);
+
+        // Accumulate the start time of each segment once, so lookups don't re-sum the durations
+        this.segmentStartTimes = new double[sequenceList.size() + 1];
+        for (int i = 0; i < sequenceList.size(); i++) {
+            segmentStartTimes[i + 1] = segmentStartTimes[i] + sequenceList.get(i).getDuration();
+        }
     }
 
     /**
@@ -50,14 +70,62 @@ public class TrajectorySequence {
      * @return The total duration in seconds.
      */
     public double duration() {
-        double total = 0.0;
+        return segmentStartTimes[sequenceList.size()];
+    }
 
-        // Sum the duration of each segment in the sequence
-        for (SequenceSegment segment : sequenceList) {
-            total += segment.getDuration();
+    /**
+     * Returns the index of the segment active at the specified time, using a
+     * binary search over the segment start times.
+     * <p>
+     * The active segment is the first one ending after the specified time, so
+     * segments without a duration are never active.
+     *
+     * @param time The time in seconds since the start of the sequence.
+     * @return The index of the active segment, or -1 if the time is at or past
+     * the end of the sequence.
+     */
+    public int segmentIndexAt(double time) {
+        int low = 0;
+        int high = sequenceList.size();
+
+        // Find the first segment whose end time is after the specified time
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (segmentStartTimes[mid + 1] > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
         }
 
-        return total;
+        return low < sequenceList.size() ? low : -1;
+    }
+
+    /**
+     * Returns the time elapsed since the start of the segment active at the
+     * specified time.
+     *
+     * @param time The time in seconds since the start of the sequence.
+     * @return The time in seconds since the start of the active segment, or
+     * the time since the start of the last segment if the time is at or past
+     * the end of the sequence.
+     * @see #segmentIndexAt(double)
+     */
+    public double offsetInSegment(double time) {
+        int index = segmentIndexAt(time);
+
+        return time - segmentStartTimes[index == -1 ? sequenceList.size() - 1 : index];
+    }
+
+    /**
+     * Returns the time the segment at the specified index starts at.
+     *
+     * @param i The index of the sequence segment.
+     * @return The start time of the segment in seconds.
+     */
+    public double segmentStartTime(int i) {
+        return segmentStartTimes[i];
     }
 
     /**
@@ -78,4 +146,28 @@ public class TrajectorySequence {
     public int size() {
         return sequenceList.size();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the spatial index over the paths of the trajectory sequence,
+     * building it on first use.
+     *
+     * @return The spatial index.
+     */
+    public synchronized PathSpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) spatialIndex = new PathSpatialIndex(sequenceList);
+
+        return spatialIndex;
+    }
+
+    /**
+     * Returns the time the trajectory sequence passes closest to the specified
+     * point.
+     *
+     * @param point The point on the field.
+     * @return The time in seconds since the start of the sequence, or 0.0 if the
+     * sequence has no paths.
+     */
+    public double pointToTime(Vector2d point) {
+        return getSpatialIndex().pointToTime(point);
+    }
+}
@@ -2,6 +2,8 @@ package com.noahbres.meepmeep.roadrunner.trajectorysequence;
 
 import com.acmerobotics.roadrunner.geometry.Pose2d;
 import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.acmerobotics.roadrunner.path.Path;
+import com.acmerobotics.roadrunner.path.PathBuilder;
 import com.acmerobotics.roadrunner.path.PathContinuityViolationException;
 import com.acmerobotics.roadrunner.profile.MotionProfile;
 import com.acmerobotics.roadrunner.profile.MotionProfileGenerator;
@@ -25,6 +27,7 @@ import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.WaitS
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import kotlin.Deprecated;
@@ -121,24 +124,50 @@ public class TrajectorySequenceBuilder {
     private TrajectoryBuilder currentTrajectoryBuilder;
 
     /**
-     * Current duration of the trajectory.
+     * Path builder mirroring the current trajectory builder. Used to track the
+     * end pose and length of the current path without generating its motion
+     * profile after every path primitive.
      */
-    private double currentDuration;
+    private PathBuilder currentPathBuilder;
 
     /**
-     * Current displacement of the trajectory.
+     * The current path, as built after the last path primitive was added.
      */
-    private double currentDisplacement;
+    private Path currentPath;
 
     /**
-     * Last duration of the trajectory segment.
+     * The trajectory of the current path, if it was built since the last path
+     * primitive was added.
      */
-    private double lastDurationTraj;
+    private Trajectory currentTrajectory;
 
     /**
-     * Last displacement of the trajectory segment.
+     * Duration of the segments pushed to the sequence so far, excluding the
+     * current path.
      */
-    private double lastDisplacementTraj;
+    private double pushedDuration;
+
+    /**
+     * Displacement of the paths pushed to the sequence so far, excluding the
+     * current path.
+     */
+    private double pushedDisplacement;
+
+    /**
+     * Cache of the motion profiles of built paths, or null to always generate them.
+     */
+    private TrajectoryProfileCache profileCache;
+
+    /**
+     * Key identifying the base constraints in the profile cache.
+     */
+    private String profileCacheConstraintsKey;
+
+    /**
+     * Key of the current path in the profile cache, recording its start and every path
+     * primitive added to it. Null if the current path cannot be cached.
+     */
+    private StringBuilder currentPathKey;
 
     /**
      * Constructs a new TrajectorySequenceBuilder.
@@ -177,12 +206,12 @@ public class TrajectorySequenceBuilder {
         absoluteTangent = startTangent != null ? startTangent : 0.0;
 
         currentTrajectoryBuilder = null;
+        currentPathBuilder = null;
+        currentPath = null;
+        currentTrajectory = null;
 
-        currentDuration = 0.0;
-        currentDisplacement = 0.0;
-
-        lastDurationTraj = 0.0;
-        lastDisplacementTraj = 0.0;
+        pushedDuration = 0.0;
+        pushedDisplacement = 0.0;
     }
 
     /**
@@ -202,182 +231,286 @@ public class TrajectorySequenceBuilder {
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineTo(Vector2d endPosition) {
-        return addPath(() -> currentTrajectoryBuilder.lineTo(endPosition, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "lineTo", endPosition);
+            currentPathBuilder.lineTo(endPosition);
+            currentTrajectoryBuilder.lineTo(endPosition, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineTo(Vector2d endPosition, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.lineTo(endPosition, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "lineTo", endPosition);
+            currentPathBuilder.lineTo(endPosition);
+            currentTrajectoryBuilder.lineTo(endPosition, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineToConstantHeading(Vector2d endPosition) {
-        return addPath(() -> currentTrajectoryBuilder.lineToConstantHeading(endPosition, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "lineToConstantHeading", endPosition);
+            currentPathBuilder.lineToConstantHeading(endPosition);
+            currentTrajectoryBuilder.lineToConstantHeading(endPosition, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineToConstantHeading(Vector2d endPosition, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.lineToConstantHeading(endPosition, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "lineToConstantHeading", endPosition);
+            currentPathBuilder.lineToConstantHeading(endPosition);
+            currentTrajectoryBuilder.lineToConstantHeading(endPosition, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineToLinearHeading(Pose2d endPose) {
-        return addPath(() -> currentTrajectoryBuilder.lineToLinearHeading(endPose, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "lineToLinearHeading", endPose);
+            currentPathBuilder.lineToLinearHeading(endPose);
+            currentTrajectoryBuilder.lineToLinearHeading(endPose, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineToLinearHeading(Pose2d endPose, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.lineToLinearHeading(endPose, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "lineToLinearHeading", endPose);
+            currentPathBuilder.lineToLinearHeading(endPose);
+            currentTrajectoryBuilder.lineToLinearHeading(endPose, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineToSplineHeading(Pose2d endPose) {
-        return addPath(() -> currentTrajectoryBuilder.lineToSplineHeading(endPose, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "lineToSplineHeading", endPose);
+            currentPathBuilder.lineToSplineHeading(endPose);
+            currentTrajectoryBuilder.lineToSplineHeading(endPose, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder lineToSplineHeading(Pose2d endPose, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.lineToSplineHeading(endPose, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "lineToSplineHeading", endPose);
+            currentPathBuilder.lineToSplineHeading(endPose);
+            currentTrajectoryBuilder.lineToSplineHeading(endPose, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder strafeTo(Vector2d endPosition) {
-        return addPath(() -> currentTrajectoryBuilder.strafeTo(endPosition, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "strafeTo", endPosition);
+            currentPathBuilder.strafeTo(endPosition);
+            currentTrajectoryBuilder.strafeTo(endPosition, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder strafeTo(Vector2d endPosition, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.strafeTo(endPosition, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "strafeTo", endPosition);
+            currentPathBuilder.strafeTo(endPosition);
+            currentTrajectoryBuilder.strafeTo(endPosition, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder forward(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.forward(distance, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "forward", distance);
+            currentPathBuilder.forward(distance);
+            currentTrajectoryBuilder.forward(distance, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder forward(double distance, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.forward(distance, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "forward", distance);
+            currentPathBuilder.forward(distance);
+            currentTrajectoryBuilder.forward(distance, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder back(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.back(distance, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "back", distance);
+            currentPathBuilder.back(distance);
+            currentTrajectoryBuilder.back(distance, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder back(double distance, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.back(distance, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "back", distance);
+            currentPathBuilder.back(distance);
+            currentTrajectoryBuilder.back(distance, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder strafeLeft(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.strafeLeft(distance, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "strafeLeft", distance);
+            currentPathBuilder.strafeLeft(distance);
+            currentTrajectoryBuilder.strafeLeft(distance, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder strafeLeft(double distance, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.strafeLeft(distance, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "strafeLeft", distance);
+            currentPathBuilder.strafeLeft(distance);
+            currentTrajectoryBuilder.strafeLeft(distance, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder strafeRight(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.strafeRight(distance, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "strafeRight", distance);
+            currentPathBuilder.strafeRight(distance);
+            currentTrajectoryBuilder.strafeRight(distance, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder strafeRight(double distance, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.strafeRight(distance, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "strafeRight", distance);
+            currentPathBuilder.strafeRight(distance);
+            currentTrajectoryBuilder.strafeRight(distance, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineTo(Vector2d endPosition, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineTo(endPosition, endHeading, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "splineTo", endPosition, endHeading);
+            currentPathBuilder.splineTo(endPosition, endHeading);
+            currentTrajectoryBuilder.splineTo(endPosition, endHeading, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineTo(Vector2d endPosition, double endHeading, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.splineTo(endPosition, endHeading, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "splineTo", endPosition, endHeading);
+            currentPathBuilder.splineTo(endPosition, endHeading);
+            currentTrajectoryBuilder.splineTo(endPosition, endHeading, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineToConstantHeading(Vector2d endPosition, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineToConstantHeading(endPosition, endHeading, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "splineToConstantHeading", endPosition, endHeading);
+            currentPathBuilder.splineToConstantHeading(endPosition, endHeading);
+            currentTrajectoryBuilder.splineToConstantHeading(endPosition, endHeading, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineToConstantHeading(Vector2d endPosition, double endHeading, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.splineToConstantHeading(endPosition, endHeading, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "splineToConstantHeading", endPosition, endHeading);
+            currentPathBuilder.splineToConstantHeading(endPosition, endHeading);
+            currentTrajectoryBuilder.splineToConstantHeading(endPosition, endHeading, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineToLinearHeading(Pose2d endPose, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineToLinearHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "splineToLinearHeading", endPose, endHeading);
+            currentPathBuilder.splineToLinearHeading(endPose, endHeading);
+            currentTrajectoryBuilder.splineToLinearHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineToLinearHeading(Pose2d endPose, double endHeading, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.splineToLinearHeading(endPose, endHeading, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "splineToLinearHeading", endPose, endHeading);
+            currentPathBuilder.splineToLinearHeading(endPose, endHeading);
+            currentTrajectoryBuilder.splineToLinearHeading(endPose, endHeading, velConstraint, accelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineToSplineHeading(Pose2d endPose, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineToSplineHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint));
+        return addPath(() -> {
+            recordPrimitive(currentVelConstraint, currentAccelConstraint, "splineToSplineHeading", endPose, endHeading);
+            currentPathBuilder.splineToSplineHeading(endPose, endHeading);
+            currentTrajectoryBuilder.splineToSplineHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint);
+        });
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder splineToSplineHeading(Pose2d endPose, double endHeading, TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
-        return addPath(() -> currentTrajectoryBuilder.splineToSplineHeading(endPose, endHeading, velConstraint, accelConstraint));
+        return addPath(() -> {
+            recordPrimitive(velConstraint, accelConstraint, "splineToSplineHeading", endPose, endHeading);
+            currentPathBuilder.splineToSplineHeading(endPose, endHeading);
+            currentTrajectoryBuilder.splineToSplineHeading(endPose, endHeading, velConstraint, accelConstraint);
+        });
     }
 
     /**
@@ -491,7 +624,7 @@ public class TrajectorySequenceBuilder {
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder addTemporalMarker(MarkerCallback callback) {
-        return this.addTemporalMarker(currentDuration, callback);
+        return this.addTemporalMarker(currentDuration(), callback);
     }
 
     /**
@@ -499,7 +632,7 @@ public class TrajectorySequenceBuilder {
      */
     @Deprecated(message = "This be an experiment.")
     public TrajectorySequenceBuilder addTemporalMarkerOffset(double offset, MarkerCallback callback) {
-        return this.addTemporalMarker(currentDuration + offset, callback);
+        return this.addTemporalMarker(currentDuration() + offset, callback);
     }
 
     /**
@@ -536,14 +669,14 @@ public class TrajectorySequenceBuilder {
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder addDisplacementMarker(MarkerCallback callback) {
-        return this.addDisplacementMarker(currentDisplacement, callback);
+        return this.addDisplacementMarker(currentDisplacement(), callback);
     }
 
     /**
      * For documentation on this function, see the <a href="https://learnroadrunner.com">Roadrunner documentation</a>.
      */
     public TrajectorySequenceBuilder UNSTABLE_addDisplacementMarkerOffset(double offset, MarkerCallback callback) {
-        return this.addDisplacementMarker(currentDisplacement + offset, callback);
+        return this.addDisplacementMarker(currentDisplacement() + offset, callback);
     }
 
     /**
@@ -588,7 +721,7 @@ public class TrajectorySequenceBuilder {
 
         lastPose = new Pose2d(lastPose.getX(), lastPose.getY(), Angle.norm(lastPose.getHeading() + angle));
 
-        currentDuration += turnProfile.duration();
+        pushedDuration += turnProfile.duration();
 
         return this;
     }
@@ -599,7 +732,7 @@ public class TrajectorySequenceBuilder {
     public TrajectorySequenceBuilder waitSeconds(double seconds) {
         pushPath();
         sequenceSegments.add(new WaitSegment(lastPose, seconds, Collections.emptyList()));
-        currentDuration += seconds;
+        pushedDuration += seconds;
 
         return this;
     }
@@ -619,14 +752,127 @@ public class TrajectorySequenceBuilder {
      * If there is a current trajectory builder, it builds the trajectory
      * and adds it to the sequence segments. Then, it resets the current
      * trajectory builder to null.
+     * <p>
+     * This is the only place the motion profile of a path is generated,
+     * unless a temporal marker needs the duration of the path before it is
+     * finished.
      */
     private void pushPath() {
         if (currentTrajectoryBuilder != null) {
-            Trajectory builtTraj = currentTrajectoryBuilder.build();
+            Trajectory builtTraj = buildCurrentTrajectory();
             sequenceSegments.add(new TrajectorySegment(builtTraj));
+
+            pushedDuration += builtTraj.duration();
+            pushedDisplacement += builtTraj.getPath().length();
         }
 
         currentTrajectoryBuilder = null;
+        currentPathBuilder = null;
+        currentPath = null;
+        currentTrajectory = null;
+        currentPathKey = null;
+    }
+
+    /**
+     * Builds the trajectory of the current path, reusing the previously built
+     * trajectory if no path primitive was added since.
+     *
+     * @return The trajectory of the current path.
+     */
+    private Trajectory buildCurrentTrajectory() {
+        if (currentTrajectory == null) {
+            currentTrajectory = currentPathKey != null
+                    ? profileCache.getOrBuild(currentPathKey.toString(), currentPath, currentTrajectoryBuilder::build)
+                    : currentTrajectoryBuilder.build();
+        }
+
+        return currentTrajectory;
+    }
+
+    /**
+     * Sets the cache to look up the motion profiles of built paths in, instead of
+     * generating them every time the sequence is built.
+     * <p>
+     * Paths are keyed by their start and their path primitives, together with the
+     * specified key of the base constraints. Paths using other constraints are never
+     * cached, as constraints cannot be compared by value.
+     *
+     * @param cache          The profile cache, or null to always generate the profiles.
+     * @param constraintsKey A key uniquely identifying the base velocity and acceleration
+     *                       constraints, such as the drive train type and its limits.
+     * @return The `TrajectorySequenceBuilder` instance.
+     */
+    public TrajectorySequenceBuilder setProfileCache(TrajectoryProfileCache cache, String constraintsKey) {
+        this.profileCache = cache;
+        this.profileCacheConstraintsKey = constraintsKey;
+
+        return this;
+    }
+
+    /**
+     * Records a path primitive into the profile cache key of the current path.
+     * The current path becomes uncacheable if the primitive uses constraints other
+     * than the base constraints, or arguments that cannot be recorded.
+     *
+     * @param velConstraint   The velocity constraint of the primitive.
+     * @param accelConstraint The acceleration constraint of the primitive.
+     * @param name            The name of the primitive.
+     * @param args            The arguments of the primitive.
+     */
+    private void recordPrimitive(TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint, String name, Object... args) {
+        if (currentPathKey == null) return;
+
+        if (velConstraint != baseVelConstraint || accelConstraint != baseAccelConstraint) {
+            currentPathKey = null;
+            return;
+        }
+
+        currentPathKey.append('|').append(name);
+
+        for (Object arg : args) {
+            if (arg instanceof Double value) {
+                appendKey(value);
+            } else if (arg instanceof Vector2d vector) {
+                appendKey(vector.getX());
+                appendKey(vector.getY());
+            } else if (arg instanceof Pose2d pose) {
+                appendKey(pose.getX());
+                appendKey(pose.getY());
+                appendKey(pose.getHeading());
+            } else {
+                currentPathKey = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends the exact bits of a value to the profile cache key of the current path.
+     *
+     * @param value The value to append.
+     */
+    private void appendKey(double value) {
+        currentPathKey.append(',').append(Long.toHexString(Double.doubleToLongBits(value)));
+    }
+
+    /**
+     * Returns the duration of the sequence built so far, including the
+     * current path.
+     *
+     * @return The duration in seconds.
+     */
+    private double currentDuration() {
+        return pushedDuration + (currentTrajectoryBuilder != null ? buildCurrentTrajectory().duration() : 0.0);
+    }
+
+    /**
+     * Returns the displacement of the sequence built so far, including the
+     * current path.
+     *
+     * @return The displacement in inches.
+     */
+    private double currentDisplacement() {
+        return pushedDisplacement + (currentPath != null ? currentPath.length() : 0.0);
     }
 
     private void newPath() {
@@ -637,10 +883,20 @@ public class TrajectorySequenceBuilder {
             pushPath();
         }
 
-        lastDurationTraj = 0.0;
-        lastDisplacementTraj = 0.0;
         tangent = setAbsoluteTangent ? absoluteTangent : Angle.norm(lastPose.getHeading() + tangentOffset);
         currentTrajectoryBuilder = new TrajectoryBuilder(lastPose, tangent, currentVelConstraint, currentAccelConstraint, resolution);
+        currentPathBuilder = new PathBuilder(lastPose, tangent);
+
+        // Start the profile cache key of the new path from its start and the base constraints
+        currentPathKey = null;
+        if (profileCache != null) {
+            currentPathKey = new StringBuilder(profileCacheConstraintsKey);
+            appendKey(resolution);
+            appendKey(lastPose.getX());
+            appendKey(lastPose.getY());
+            appendKey(lastPose.getHeading());
+            appendKey(tangent);
+        }
     }
 
     /**
@@ -664,6 +920,11 @@ public class TrajectorySequenceBuilder {
      * If the current trajectory builder is null, a new path is initialized.
      * If a `PathContinuityViolationException` is thrown, a new path is initialized
      * and the callback is run again.
+     * <p>
+     * The callback adds the path primitive to both the current path builder
+     * and the current trajectory builder, path builder first. The end pose
+     * and length are read from the path alone, so the motion profile is only
+     * generated once the path is pushed.
      *
      * @param callback The callback to add the path.
      * @return The `TrajectorySequenceBuilder` instance.
@@ -678,17 +939,11 @@ public class TrajectorySequenceBuilder {
             callback.run();
         }
 
-        Trajectory builtTraj = currentTrajectoryBuilder.build();
-
-        double durationDifference = builtTraj.duration() - lastDurationTraj;
-        double displacementDifference = builtTraj.getPath().length() - lastDisplacementTraj;
+        // The previously built trajectory no longer covers the whole path
+        currentTrajectory = null;
 
-        lastPose = builtTraj.end();
-        currentDuration += durationDifference;
-        currentDisplacement += displacementDifference;
-
-        lastDurationTraj = builtTraj.duration();
-        lastDisplacementTraj = builtTraj.getPath().length();
+        currentPath = currentPathBuilder.build();
+        lastPose = currentPath.end();
 
         return this;
     }
@@ -705,21 +960,26 @@ public class TrajectorySequenceBuilder {
     private List<TrajectoryMarker> convertMarkersToGlobal(List<SequenceSegment> sequenceSegments, List<TemporalMarker> temporalMarkers, List<DisplacementMarker> displacementMarkers, List<SpatialMarker> spatialMarkers) {
         ArrayList<TrajectoryMarker> trajectoryMarkers = new ArrayList<>();
 
+        // Index the cumulative displacement of the paths once for all displacement markers
+        DisplacementTimeline timeline = new DisplacementTimeline(sequenceSegments);
+
         // Convert temporal markers.
         for (TemporalMarker marker : temporalMarkers) {
-            trajectoryMarkers.add(new TrajectoryMarker(marker.getProducer().produce(currentDuration), marker.getCallback()));
+            trajectoryMarkers.add(new TrajectoryMarker(marker.getProducer().produce(pushedDuration), marker.getCallback()));
         }
 
         // Convert displacement markers.
         for (DisplacementMarker marker : displacementMarkers) {
-            double time = displacementToTime(sequenceSegments, marker.getProducer().produce(currentDisplacement));
+            double time = timeline.displacementToTime(marker.getProducer().produce(pushedDisplacement));
 
             trajectoryMarkers.add(new TrajectoryMarker(time, marker.getCallback()));
         }
 
-        // Convert spatial markers.
+        // Convert spatial markers, indexing the paths once for all of them
+        PathSpatialIndex spatialIndex = spatialMarkers.isEmpty() ? null : new PathSpatialIndex(sequenceSegments);
+
         for (SpatialMarker marker : spatialMarkers) {
-            trajectoryMarkers.add(new TrajectoryMarker(pointToTime(sequenceSegments, marker.getPoint()), marker.getCallback()));
+            trajectoryMarkers.add(new TrajectoryMarker(spatialIndex.pointToTime(marker.getPoint()), marker.getCallback()));
         }
 
         return trajectoryMarkers;
@@ -729,8 +989,9 @@ public class TrajectorySequenceBuilder {
      * Projects global trajectory markers to local sequence segments.
      * <p>
      * This method takes a list of global trajectory markers and projects them onto the local sequence segments.
-     * It iterates through the sequence segments and calculates the appropriate segment and offset time for each marker.
-     * The markers are then added to the corresponding segment, creating new segments with the updated markers.
+     * The markers are sorted by time and swept once against the segment timeline. A marker belongs to the first
+     * segment ending at or after its time, and markers past the end of the sequence belong to the last segment.
+     * Every segment receiving markers is rebuilt once with all of them.
      *
      * @param markers          The list of global trajectory markers.
      * @param sequenceSegments The list of sequence segments in the trajectory.
@@ -745,176 +1006,140 @@ public class TrajectorySequenceBuilder {
             totalSequenceDuration += segment.getDuration();
         }
 
-        for (TrajectoryMarker marker : markers) {
-            SequenceSegment segment = null;
-            int segmentIndex = 0;
-            double segmentOffsetTime = 0;
+        // Stable sort, so markers at the same time keep the order they were added in
+        List<TrajectoryMarker> sortedMarkers = new ArrayList<>(markers);
+        sortedMarkers.sort(Comparator.comparingDouble(TrajectoryMarker::getTime));
 
-            double currentTime = 0;
-            for (int i = 0; i < sequenceSegments.size(); i++) {
-                SequenceSegment seg = sequenceSegments.get(i);
+        int markerIndex = 0;
+        double currentTime = 0;
 
-                double markerTime = Math.min(marker.getTime(), totalSequenceDuration);
+        for (int i = 0; i < sequenceSegments.size() && markerIndex < sortedMarkers.size(); i++) {
+            SequenceSegment segment = sequenceSegments.get(i);
+            boolean isLastSegment = i == sequenceSegments.size() - 1;
 
-                if (currentTime + seg.getDuration() >= markerTime) {
-                    segment = seg;
-                    segmentIndex = i;
-                    segmentOffsetTime = markerTime - currentTime;
-
-                    break;
-                } else {
-                    currentTime += seg.getDuration();
-                }
-            }
+            List<TrajectoryMarker> segmentMarkers = new ArrayList<>();
 
-            SequenceSegment newSegment = null;
-
-            if (segment instanceof WaitSegment thisSegment) {
-                List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
-
-                newMarkers.addAll(sequenceSegments.get(segmentIndex).getMarkers());
-                newMarkers.add(new TrajectoryMarker(segmentOffsetTime, marker.getCallback()));
-
-                newSegment = new WaitSegment(thisSegment.getStartPose(), thisSegment.getDuration(), newMarkers);
-            } else if (segment instanceof TurnSegment thisSegment) {
-                List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
-
-                newMarkers.addAll(sequenceSegments.get(segmentIndex).getMarkers());
-                newMarkers.add(new TrajectoryMarker(segmentOffsetTime, marker.getCallback()));
-
-                newSegment = new TurnSegment(thisSegment.getStartPose(), thisSegment.getTotalRotation(), thisSegment.getMotionProfile(), newMarkers);
-            } else if (segment instanceof TrajectorySegment thisSegment) {
+            // Collect the markers ending up in this segment as local markers
+            while (markerIndex < sortedMarkers.size()) {
+                TrajectoryMarker marker = sortedMarkers.get(markerIndex);
+                double markerTime = Math.min(marker.getTime(), totalSequenceDuration);
 
-                List<TrajectoryMarker> newMarkers = new ArrayList<>(thisSegment.getTrajectory().getMarkers());
-                newMarkers.add(new TrajectoryMarker(segmentOffsetTime, marker.getCallback()));
+                if (!isLastSegment && currentTime + segment.getDuration() < markerTime) break;
 
-                newSegment = new TrajectorySegment(new Trajectory(thisSegment.getTrajectory().getPath(), thisSegment.getTrajectory().getProfile(), newMarkers));
+                segmentMarkers.add(new TrajectoryMarker(markerTime - currentTime, marker.getCallback()));
+                markerIndex++;
             }
 
-            sequenceSegments.set(segmentIndex, newSegment);
+            if (!segmentMarkers.isEmpty()) sequenceSegments.set(i, withAddedMarkers(segment, segmentMarkers));
+
+            currentTime += segment.getDuration();
         }
 
         return sequenceSegments;
     }
 
-    // Taken from Road Runner's TrajectoryGenerator.displacementToTime() since it's private
-    // note: this assumes that the profile position is monotonic increasing
-
     /**
-     * Converts a displacement value to a time value using a binary search algorithm.
-     * This method assumes that the profile position is monotonically increasing.
+     * Creates a copy of a sequence segment with the given local markers added to its existing markers.
      *
-     * @param profile The motion profile to search within.
-     * @param s       The displacement value to convert to time.
-     * @return The time value corresponding to the given displacement.
-     */
-    private Double motionProfileDisplacementToTime(MotionProfile profile, double s) {
-        double tLo = 0.0;
-        double tHi = profile.duration();
-        while (!(Math.abs(tLo - tHi) < 1e-6)) {
-            double tMid = 0.5 * (tLo + tHi);
-            if (profile.get(tMid).getX() > s) {
-                tHi = tMid;
-            } else {
-                tLo = tMid;
-            }
-        }
-        return 0.5 * (tLo + tHi);
-    }
-
-    /**
-     * Converts a displacement value to a time value based on the sequence segments.
-     * This method iterates through the sequence segments and calculates the time
-     * corresponding to the given displacement.
-     *
-     * @param sequenceSegments The list of sequence segments in the trajectory.
-     * @param s                The displacement value to convert to time.
-     * @return The time value corresponding to the given displacement.
+     * @param segment The sequence segment to copy.
+     * @param markers The local markers to add, with times relative to the start of the segment.
+     * @return The new sequence segment.
      */
-    private Double displacementToTime(List<SequenceSegment> sequenceSegments, double s) {
-        double currentTime = 0.0;
-        double currentDisplacement = 0.0;
+    private SequenceSegment withAddedMarkers(SequenceSegment segment, List<TrajectoryMarker> markers) {
+        if (segment instanceof TrajectorySegment thisSegment) {
+            Trajectory trajectory = thisSegment.getTrajectory();
 
-        for (SequenceSegment segment : sequenceSegments) {
-            if (segment instanceof TrajectorySegment thisSegment) {
+            List<TrajectoryMarker> newMarkers = new ArrayList<>(trajectory.getMarkers());
+            newMarkers.addAll(markers);
 
-                double segmentLength = thisSegment.getTrajectory().getPath().length();
+            return new TrajectorySegment(new Trajectory(trajectory.getPath(), trajectory.getProfile(), newMarkers));
+        }
 
-                if (currentDisplacement + segmentLength > s) {
-                    double target = s - currentDisplacement;
-                    double timeInSegment = motionProfileDisplacementToTime(thisSegment.getTrajectory().getProfile(), target);
+        List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
+        newMarkers.addAll(markers);
 
-                    return currentTime + timeInSegment;
-                } else {
-                    currentDisplacement += segmentLength;
-                    currentTime += thisSegment.getTrajectory().duration();
-                }
-            } else {
-                currentTime += segment.getDuration();
-            }
+        if (segment instanceof TurnSegment thisSegment) {
+            return new TurnSegment(thisSegment.getStartPose(), thisSegment.getTotalRotation(), thisSegment.getMotionProfile(), newMarkers);
         }
 
-        return 0.0;
+        return new WaitSegment(segment.getStartPose(), segment.getDuration(), newMarkers);
     }
 
     /**
-     * Converts a point to a time value based on the sequence segments.
-     * This method iterates through the sequence segments and calculates the time
-     * corresponding to the given point by projecting the point onto the path
-     * and finding the closest point.
-     *
-     * @param sequenceSegments The list of sequence segments in the trajectory.
-     * @param point            The point to convert to time.
-     * @return The time value corresponding to the given point.
-     */
-    private Double pointToTime(List<SequenceSegment> sequenceSegments, Vector2d point) {
-        class ComparingPoints {
-            private final double distanceToPoint;
-            private final double totalDisplacement;
-            private final double thisPathDisplacement;
-
-            public ComparingPoints(double distanceToPoint, double totalDisplacement, double thisPathDisplacement) {
-                this.distanceToPoint = distanceToPoint;
-                this.totalDisplacement = totalDisplacement;
-                this.thisPathDisplacement = thisPathDisplacement;
-            }
-        }
-
-        List<ComparingPoints> projectedPoints = new ArrayList<>();
-
-        for (SequenceSegment segment : sequenceSegments) {
-            if (segment instanceof TrajectorySegment thisSegment) {
-
-                double displacement = thisSegment.getTrajectory().getPath().project(point, 0.25);
-                Vector2d projectedPoint = thisSegment.getTrajectory().getPath().get(displacement).vec();
-                double distanceToPoint = point.minus(projectedPoint).norm();
-
-                double totalDisplacement = 0.0;
-
-                for (ComparingPoints comparingPoint : projectedPoints) {
-                    totalDisplacement += comparingPoint.totalDisplacement;
+     * Cumulative displacement and time offsets of the trajectory segments of a sequence.
+     * <p>
+     * Converting a displacement binary searches the offsets for its segment, then looks the
+     * time up in the inverse table of that segment.
+     */
+    private static final class DisplacementTimeline {
+        /**
+         * The trajectory segments of the sequence, in order.
+         */
+        private final List<TrajectorySegment> segments = new ArrayList<>();
+
+        /**
+         * The displacement at the end of each trajectory segment, summed over all previous paths.
+         */
+        private final double[] endDisplacements;
+
+        /**
+         * The time at the start of each trajectory segment, including turns and waits.
+         */
+        private final double[] startTimes;
+
+        /**
+         * Computes the cumulative offsets of the given sequence segments.
+         *
+         * @param sequenceSegments The list of sequence segments in the trajectory.
+         */
+        private DisplacementTimeline(List<SequenceSegment> sequenceSegments) {
+            double[] endDisplacements = new double[sequenceSegments.size()];
+            double[] startTimes = new double[sequenceSegments.size()];
+
+            double currentTime = 0.0;
+            double currentDisplacement = 0.0;
+
+            for (SequenceSegment segment : sequenceSegments) {
+                if (segment instanceof TrajectorySegment thisSegment) {
+                    currentDisplacement += thisSegment.getLength();
+
+                    endDisplacements[segments.size()] = currentDisplacement;
+                    startTimes[segments.size()] = currentTime;
+                    segments.add(thisSegment);
                 }
 
-                totalDisplacement += displacement;
-
-                projectedPoints.add(new ComparingPoints(distanceToPoint, displacement, totalDisplacement));
+                currentTime += segment.getDuration();
             }
-        }
 
-        ComparingPoints closestPoint = null;
+            this.endDisplacements = endDisplacements;
+            this.startTimes = startTimes;
+        }
 
-        for (ComparingPoints comparingPoint : projectedPoints) {
-            if (closestPoint == null) {
-                closestPoint = comparingPoint;
-                continue;
+        /**
+         * Converts a displacement along all paths of the sequence to a time value.
+         * Displacements past the end of the last path resolve to the end of that path.
+         *
+         * @param s The displacement value to convert to time.
+         * @return The time value corresponding to the given displacement.
+         */
+        private double displacementToTime(double s) {
+            if (segments.isEmpty()) return 0.0;
+
+            // Find the first segment ending past the displacement
+            int lo = 0;
+            int hi = segments.size() - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if (endDisplacements[mid] > s) hi = mid;
+                else lo = mid + 1;
             }
 
-            if (comparingPoint.distanceToPoint < closestPoint.distanceToPoint)
-                closestPoint = comparingPoint;
-        }
+            TrajectorySegment segment = segments.get(lo);
+            double segmentStart = endDisplacements[lo] - segment.getLength();
 
-        assert closestPoint != null;
-        return displacementToTime(sequenceSegments, closestPoint.thisPathDisplacement);
+            return startTimes[lo] + segment.displacementToTime(s - segmentStart);
+        }
     }
 
     /**
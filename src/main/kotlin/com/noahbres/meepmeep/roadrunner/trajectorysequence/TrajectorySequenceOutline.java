@@ -0,0 +1,357 @@
+package com.noahbres.meepmeep.roadrunner.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.acmerobotics.roadrunner.path.Path;
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.trajectory.TrajectoryMarker;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.SequenceSegment;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TrajectorySegment;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.TurnSegment;
+import com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment.WaitSegment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The drawn geometry of a trajectory sequence: the points its paths pass
+ * through, its markers and its turns.
+ * <p>
+ * An outline holds no trajectories, so it stays cheap to keep around after
+ * the sequence it was taken from is released, such as the evicted chunks of
+ * a {@link LazyTrajectorySequence}. Outlines are immutable.
+ */
+public final class TrajectorySequenceOutline {
+    /**
+     * The distance between two consecutive points along a path in inches,
+     * matching the resolution paths are drawn at.
+     */
+    public static final double SAMPLE_SPACING = 1.2;
+
+    /**
+     * A marker of the sequence.
+     */
+    public static final class Marker {
+        /**
+         * The pose the marker is reached at.
+         */
+        private final Pose2d pose;
+
+        /**
+         * The callback invoked when the marker is reached.
+         */
+        private final MarkerCallback callback;
+
+        /**
+         * The time the marker is reached at.
+         */
+        private final double time;
+
+        /**
+         * Constructs a new Marker.
+         *
+         * @param pose     The pose the marker is reached at.
+         * @param callback The callback invoked when the marker is reached.
+         * @param time     The time the marker is reached at.
+         */
+        private Marker(Pose2d pose, MarkerCallback callback, double time) {
+            this.pose = pose;
+            this.callback = callback;
+            this.time = time;
+        }
+
+        /**
+         * Gets the pose the marker is reached at.
+         *
+         * @return The pose.
+         */
+        public Pose2d getPose() {
+            return pose;
+        }
+
+        /**
+         * Gets the callback invoked when the marker is reached.
+         *
+         * @return The callback.
+         */
+        public MarkerCallback getCallback() {
+            return callback;
+        }
+
+        /**
+         * Gets the time the marker is reached at.
+         *
+         * @return The time in seconds since the start of the outlined sequence, offset by its start time.
+         */
+        public double getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * A turn of the sequence.
+     */
+    public static final class Turn {
+        /**
+         * The position of the turn.
+         */
+        private final Vector2d position;
+
+        /**
+         * The heading at the start of the turn.
+         */
+        private final double startHeading;
+
+        /**
+         * The heading at the end of the turn.
+         */
+        private final double endHeading;
+
+        /**
+         * Constructs a new Turn.
+         *
+         * @param position     The position of the turn.
+         * @param startHeading The heading at the start of the turn.
+         * @param endHeading   The heading at the end of the turn.
+         */
+        private Turn(Vector2d position, double startHeading, double endHeading) {
+            this.position = position;
+            this.startHeading = startHeading;
+            this.endHeading = endHeading;
+        }
+
+        /**
+         * Gets the position of the turn.
+         *
+         * @return The position.
+         */
+        public Vector2d getPosition() {
+            return position;
+        }
+
+        /**
+         * Gets the heading at the start of the turn.
+         *
+         * @return The heading in radians.
+         */
+        public double getStartHeading() {
+            return startHeading;
+        }
+
+        /**
+         * Gets the heading at the end of the turn, unwrapped so the turn goes
+         * from the start heading to it.
+         *
+         * @return The heading in radians.
+         */
+        public double getEndHeading() {
+            return endHeading;
+        }
+    }
+
+    /**
+     * The start pose of the sequence.
+     */
+    private final Pose2d start;
+
+    /**
+     * Flag indicating that the sequence has paths.
+     */
+    private final boolean hasPaths;
+
+    /**
+     * The x positions of the points the paths pass through after the start pose, in order.
+     */
+    private final double[] pathX;
+
+    /**
+     * The y positions of the points the paths pass through after the start pose, in order.
+     */
+    private final double[] pathY;
+
+    /**
+     * The markers, in the order of their segments.
+     */
+    private final List<Marker> markers;
+
+    /**
+     * The turns, in order.
+     */
+    private final List<Turn> turns;
+
+    /**
+     * Outlines a trajectory sequence starting at time 0.
+     *
+     * @param sequence The trajectory sequence.
+     */
+    public TrajectorySequenceOutline(TrajectorySequence sequence) {
+        this(sequence, 0.0);
+    }
+
+    /**
+     * Outlines a trajectory sequence played from the specified time on, such
+     * as a chunk of a longer sequence.
+     *
+     * @param sequence  The trajectory sequence.
+     * @param startTime The time the sequence starts at, added to the times of its markers.
+     */
+    public TrajectorySequenceOutline(TrajectorySequence sequence, double startTime) {
+        this.start = sequence.start();
+
+        // Count the points first, so they are packed into arrays right away
+        int pointCount = 0;
+        boolean hasPaths = false;
+        for (int i = 0; i < sequence.size(); i++) {
+            if (sequence.get(i) instanceof TrajectorySegment segment) {
+                pointCount += intervalsAlong(segment.getTrajectory().getPath());
+                hasPaths = true;
+            }
+        }
+
+        this.hasPaths = hasPaths;
+        this.pathX = new double[pointCount];
+        this.pathY = new double[pointCount];
+
+        List<Marker> markers = new ArrayList<>();
+        List<Turn> turns = new ArrayList<>();
+
+        int point = 0;
+        Pose2d currentEndPose = start;
+        double currentTime = startTime;
+
+        for (int i = 0; i < sequence.size(); i++) {
+            SequenceSegment segment = sequence.get(i);
+
+            if (segment instanceof TrajectorySegment trajectorySegment) {
+                Trajectory trajectory = trajectorySegment.getTrajectory();
+                Path path = trajectory.getPath();
+                int intervals = intervalsAlong(path);
+
+                // The first point of every path is where the previous one ended
+                for (int j = 1; j <= intervals; j++) {
+                    Vector2d position = path.get(j / (double) intervals * path.length()).vec();
+
+                    pathX[point] = position.getX();
+                    pathY[point] = position.getY();
+                    point++;
+                }
+
+                for (TrajectoryMarker marker : trajectory.getMarkers()) {
+                    markers.add(new Marker(trajectory.get(marker.getTime()), marker.getCallback(), currentTime + marker.getTime()));
+                }
+
+                currentEndPose = trajectory.end();
+            } else if (segment instanceof TurnSegment turnSegment) {
+                turns.add(new Turn(currentEndPose.vec(), currentEndPose.getHeading(), currentEndPose.getHeading() + turnSegment.getTotalRotation()));
+
+                for (TrajectoryMarker marker : segment.getMarkers()) {
+                    Pose2d startPose = segment.getStartPose();
+                    double heading = turnSegment.getMotionProfile().get(marker.getTime()).getX();
+
+                    markers.add(new Marker(new Pose2d(startPose.getX(), startPose.getY(), heading), marker.getCallback(), currentTime + marker.getTime()));
+                }
+            } else if (segment instanceof WaitSegment) {
+                for (TrajectoryMarker marker : segment.getMarkers()) {
+                    markers.add(new Marker(segment.getStartPose(), marker.getCallback(), currentTime + marker.getTime()));
+                }
+            }
+
+            currentTime += segment.getDuration();
+        }
+
+        this.markers = Collections.unmodifiableList(markers);
+        this.turns = Collections.unmodifiableList(turns);
+    }
+
+    /**
+     * Returns the start pose of the outlined sequence, where its paths start.
+     *
+     * @return The start pose.
+     */
+    public Pose2d getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the number of points the paths pass through after the start pose.
+     *
+     * @return The number of points.
+     */
+    public int getPathPointCount() {
+        return pathX.length;
+    }
+
+    /**
+     * Returns the x position of a point the paths pass through.
+     *
+     * @param i The index of the point.
+     * @return The x position in inches.
+     */
+    public double getPathX(int i) {
+        return pathX[i];
+    }
+
+    /**
+     * Returns the y position of a point the paths pass through.
+     *
+     * @param i The index of the point.
+     * @return The y position in inches.
+     */
+    public double getPathY(int i) {
+        return pathY[i];
+    }
+
+    /**
+     * Returns the markers of the outlined sequence.
+     *
+     * @return The markers, in the order of their segments.
+     */
+    public List<Marker> getMarkers() {
+        return markers;
+    }
+
+    /**
+     * Returns the turns of the outlined sequence.
+     *
+     * @return The turns, in order.
+     */
+    public List<Turn> getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns the squared distance from a point to the closest point the
+     * paths pass through, including the start pose. Every point on the paths
+     * lies within {@link #SAMPLE_SPACING} of one of them.
+     *
+     * @param x The x position of the point.
+     * @param y The y position of the point.
+     * @return The squared distance, or infinity if the sequence has no paths.
+     */
+    double pathDistanceSquared(double x, double y) {
+        if (!hasPaths) return Double.POSITIVE_INFINITY;
+
+        double best = (start.getX() - x) * (start.getX() - x) + (start.getY() - y) * (start.getY() - y);
+
+        for (int i = 0; i < pathX.length; i++) {
+            double dx = pathX[i] - x;
+            double dy = pathY[i] - y;
+
+            best = Math.min(best, dx * dx + dy * dy);
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the number of intervals a path is split into.
+     *
+     * @param path The path.
+     * @return The number of intervals.
+     */
+    private static int intervalsAlong(Path path) {
+        return (int) Math.round(path.length() / SAMPLE_SPACING);
+    }
+}
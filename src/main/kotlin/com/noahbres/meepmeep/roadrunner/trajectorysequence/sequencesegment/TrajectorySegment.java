@@ -1,7 +1,9 @@
 package com.noahbres.meepmeep.roadrunner.trajectorysequence.sequencesegment;
 
+import com.acmerobotics.roadrunner.profile.MotionProfile;
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 /**
@@ -13,6 +15,22 @@ public final class TrajectorySegment extends SequenceSegment {
      */
     private final Trajectory trajectory;
 
+    /**
+     * The time between two consecutive samples of the inverse lookup table in seconds.
+     */
+    private static final double INVERSE_TABLE_RESOLUTION = 0.005;
+
+    /**
+     * The displacements of the inverse lookup table, sampled from the motion profile.
+     * Built lazily the first time a displacement is converted to a time.
+     */
+    private double[] inverseDisplacements;
+
+    /**
+     * The times of the inverse lookup table, matching {@link #inverseDisplacements}.
+     */
+    private double[] inverseTimes;
+
     /**
      * Constructs a new TrajectorySegment.
      *
@@ -33,4 +51,72 @@ public final class TrajectorySegment extends SequenceSegment {
     public Trajectory getTrajectory() {
         return this.trajectory;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the length of the path of this segment.
+     *
+     * @return The length of the path.
+     */
+    public double getLength() {
+        return this.trajectory.getPath().length();
+    }
+
+    /**
+     * Converts a displacement along this segment to the time the profile reaches it.
+     * <p>
+     * The first call samples the motion profile into an inverse lookup table. Every call then
+     * binary searches the table and interpolates linearly between the two nearest samples.
+     * The profile position is assumed to be monotonically increasing.
+     *
+     * @param s The displacement along this segment.
+     * @return The time in seconds since the start of this segment, clamped to the segment.
+     */
+    public double displacementToTime(double s) {
+        if (inverseDisplacements == null) buildInverseTable();
+
+        int last = inverseDisplacements.length - 1;
+        if (s <= inverseDisplacements[0]) return inverseTimes[0];
+        if (s >= inverseDisplacements[last]) return inverseTimes[last];
+
+        // Find the first sample past the displacement
+        int index = Arrays.binarySearch(inverseDisplacements, s);
+        if (index < 0) index = -index - 1;
+
+        // Exact hits may land anywhere in a run of equal displacements, so step to the end of the run
+        while (index < last && inverseDisplacements[index] <= s) index++;
+
+        double s0 = inverseDisplacements[index - 1];
+        double s1 = inverseDisplacements[index];
+        double t0 = inverseTimes[index - 1];
+        double t1 = inverseTimes[index];
+
+        return s1 == s0 ? t0 : t0 + (t1 - t0) * (s - s0) / (s1 - s0);
+    }
+
+    /**
+     * Samples the motion profile of the trajectory into the inverse lookup table.
+     */
+    private void buildInverseTable() {
+        MotionProfile profile = this.trajectory.getProfile();
+        double duration = profile.duration();
+
+        int sampleCount = Math.max(2, (int) Math.ceil(duration / INVERSE_TABLE_RESOLUTION) + 1);
+
+        double[] displacements = new double[sampleCount];
+        double[] times = new double[sampleCount];
+
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < sampleCount; i++) {
+            double t = duration * i / (sampleCount - 1);
+
+            // Guard against tiny numerical dips so the table stays sorted
+            previous = Math.max(previous, profile.get(t).getX());
+
+            displacements[i] = previous;
+            times[i] = t;
+        }
+
+        this.inverseTimes = times;
+        this.inverseDisplacements = displacements;
+    }
+}
@@ -166,6 +166,31 @@ class TrajectoryProgressSliderMaster(
         }
     }
 
+    /**
+     * Recomputes the maximum trajectory duration from the current trajectory
+     * sequences of all bots and updates every slider. Called when the
+     * sequence of a bot is replaced while running.
+     */
+    fun refreshDurations() {
+        maxTrajectoryDuration = 0.0
+        maxTrajectoryIndex = 0
+
+        // Find the longest sequence, preferring later bots on ties like addRoadRunnerBot does
+        botList.forEachIndexed { index, (bot, _) ->
+            val duration = bot.currentTrajectorySequence?.duration() ?: 0.0
+
+            if (duration >= maxTrajectoryDuration) {
+                maxTrajectoryDuration = duration
+                maxTrajectoryIndex = index
+            }
+        }
+
+        for ((_, slider) in botList) {
+            slider.maxTrajectoryDuration = maxTrajectoryDuration
+            slider.redraw()
+        }
+    }
+
     /**
      * Reports that the bot at the given index has completed its trajectory. If
      * the bot is the one with the maximum trajectory duration, it starts all